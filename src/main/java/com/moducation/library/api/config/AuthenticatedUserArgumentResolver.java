@@ -0,0 +1,58 @@
+package com.moducation.library.api.config;
+
+import com.moducation.library.api.dto.AuthenticatedUser;
+import com.moducation.library.api.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Fills controller parameters of type {@link AuthenticatedUser} with the logged in user, or null
+ * when the session has no user or the user no longer exists. The user is looked up once per
+ * request through {@link UserService#getPrincipal}, which is served from memory in steady state.
+ */
+@Component
+public class AuthenticatedUserArgumentResolver implements HandlerMethodArgumentResolver {
+    private static final String REQUEST_ATTRIBUTE = AuthenticatedUser.class.getName();
+    // marks a request already resolved to nobody
+    private static final Object ANONYMOUS = new Object();
+
+    private final UserService userService;
+
+    @Autowired
+    public AuthenticatedUserArgumentResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return AuthenticatedUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public AuthenticatedUser resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                             NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        return request == null ? null : resolve(request);
+    }
+
+    public AuthenticatedUser resolve(HttpServletRequest request) {
+        Object resolved = request.getAttribute(REQUEST_ATTRIBUTE);
+        if (resolved != null) {
+            return resolved == ANONYMOUS ? null : (AuthenticatedUser) resolved;
+        }
+
+        HttpSession session = request.getSession(false);
+        Object userId = session == null ? null : session.getAttribute("userId");
+        AuthenticatedUser user = userId instanceof Long id ? userService.getPrincipal(id) : null;
+
+        request.setAttribute(REQUEST_ATTRIBUTE, user == null ? ANONYMOUS : user);
+        return user;
+    }
+}
@@ -0,0 +1,33 @@
+package com.moducation.library.api.config;
+
+import com.moducation.library.api.repositories.HttpSessionRecordRepository;
+import com.moducation.library.api.service.FileSessionStore;
+import com.moducation.library.api.service.JpaSessionStore;
+import com.moducation.library.api.service.SessionStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+import java.nio.file.Path;
+
+/**
+ * Replaces the container's in-memory sessions with {@link com.moducation.library.api.service.CachingSessionRepository},
+ * so sessions survive restarts and any node can serve any user. {@code library.sessions.store} picks
+ * the shared store: {@code jpa} for the {@code http_session} table, {@code file} for a local directory.
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    @Bean
+    public SessionStore sessionStore(@Value("${library.sessions.store:jpa}") String store,
+                                     @Value("${library.sessions.file-dir:./sessions}") Path fileDir,
+                                     HttpSessionRecordRepository httpSessionRecordRepository) {
+        return switch (store) {
+            case "jpa" -> new JpaSessionStore(httpSessionRecordRepository);
+            case "file" -> new FileSessionStore(fileDir);
+            default -> throw new IllegalArgumentException("Unknown library.sessions.store " + store + ", use jpa or file");
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.moducation.library.api.config;
+
+import com.moducation.library.api.controller.NotificationSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final NotificationSocketHandler notificationSocketHandler;
+
+    @Autowired
+    public WebSocketConfig(NotificationSocketHandler notificationSocketHandler) {
+        this.notificationSocketHandler = notificationSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(notificationSocketHandler, "/ws/notifications")
+                .addInterceptors(new SessionUserHandshakeInterceptor());
+    }
+
+    // clients never send more than a close frame, so small receive buffers keep idle connections cheap
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${library.notifications.ping-interval-millis:30000}") long pingIntervalMillis) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(1024);
+        container.setMaxBinaryMessageBufferSize(1024);
+        container.setMaxSessionIdleTimeout(pingIntervalMillis * 3);
+        return container;
+    }
+}
@@ -0,0 +1,48 @@
+package com.moducation.library.api.controller;
+
+import com.moducation.library.api.service.BookImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.OK;
+
+@Slf4j
+@RestController
+@RequestMapping("/books")
+public class BookImportController {
+    private final BookImportService bookImportService;
+
+    @Autowired
+    public BookImportController(BookImportService bookImportService) {
+        this.bookImportService = bookImportService;
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<Object> importCsv(HttpServletRequest request) {
+        try {
+            return new ResponseEntity<>(bookImportService.importCsv(request.getInputStream()), OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), BAD_REQUEST);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<Object> importNdjson(HttpServletRequest request) {
+        try {
+            return new ResponseEntity<>(bookImportService.importNdjson(request.getInputStream()), OK);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package com.moducation.library.api.controller;
 
+import com.moducation.library.api.dto.AuthenticatedUser;
+import com.moducation.library.api.dto.LoanReceipt;
+import com.moducation.library.api.dto.ReservationReceipt;
+import com.moducation.library.api.dto.ReturnReceipt;
+import com.moducation.library.api.exceptions.IncorrectFilterException;
 import com.moducation.library.api.models.Book;
-import com.moducation.library.api.models.BookActivityHistory;
-import com.moducation.library.api.models.BookReturn;
-import com.moducation.library.api.models.BookWithdrawal;
-import com.moducation.library.api.models.LibraryUser;
 import com.moducation.library.api.service.BookService;
-import com.moducation.library.api.service.UserService;
 
-import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -20,12 +19,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
-import static com.moducation.library.api.utils.Constants.RETURN_CODE;
+import java.util.List;
+
+import static com.moducation.library.api.utils.Constants.MAX_BATCH_SIZE;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
@@ -34,11 +36,9 @@ import static org.springframework.http.HttpStatus.BAD_REQUEST;
 @RequestMapping("/books")
 public class BookManagementController {
     private final BookService bookService;
-    private final UserService userService;
     @Autowired
-    public BookManagementController(BookService bookService, UserService userService) {
+    public BookManagementController(BookService bookService) {
         this.bookService = bookService;
-        this.userService = userService;
     }
 
     @GetMapping("/get-books")
@@ -50,6 +50,84 @@ public class BookManagementController {
         }
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<Object> getBookPage(@RequestParam(defaultValue = "id") String sort,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer size) {
+        try {
+            return new ResponseEntity<>(bookService.findPage(sort, cursor, size), OK);
+        } catch (IncorrectFilterException | IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Object> searchBooks(@RequestParam String filter, @RequestParam String key) {
+        try {
+            return new ResponseEntity<>(bookService.findBooksByFilter(filter, key), OK);
+        } catch (IncorrectFilterException e) {
+            return new ResponseEntity<>(e.getMessage(), BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/faceted-search")
+    public ResponseEntity<Object> facetedSearch(@RequestParam(required = false) String title,
+                                                @RequestParam(required = false) List<String> genre,
+                                                @RequestParam(required = false) List<String> author,
+                                                @RequestParam(required = false) Boolean available,
+                                                @RequestParam(required = false) Integer offset,
+                                                @RequestParam(required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(bookService.facetedSearch(title, genre, author, available, offset, limit), OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<Object> autocomplete(@RequestParam String prefix, @RequestParam(required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(bookService.autocomplete(prefix, limit), OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/top-rated")
+    public ResponseEntity<Object> getTopRated(@RequestParam(required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(bookService.topRated(limit), OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/trending")
+    public ResponseEntity<Object> getTrending(@RequestParam(required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(bookService.trending(limit), OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/also-borrowed/{id}")
+    public ResponseEntity<Object> getAlsoBorrowed(@PathVariable Long id, @RequestParam(required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(bookService.alsoBorrowed(id, limit), OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @GetMapping("/get-book/{id}")
     public ResponseEntity<Object> getBookById(@PathVariable Long id) {
         try {
@@ -100,66 +178,116 @@ public class BookManagementController {
     }
 
     @PostMapping("/borrow")
-    public ResponseEntity<Object> borrowBook(@RequestBody Book book, HttpSession session) {
+    public ResponseEntity<Object> borrowBook(@RequestBody Book book, AuthenticatedUser user) {
         try {
-            Long userId = (Long) session.getAttribute("userId");
-
-            if (userId == null) {
-                log.error("user id is null: " + userId);
+            if (user == null) {
                 return new ResponseEntity<>("please login", UNAUTHORIZED);
             }
-            
-            LibraryUser user = userService.getUserById(userId);
 
-            if (user == null) {
-                return new ResponseEntity<>("User not found.", UNAUTHORIZED);
+            LoanReceipt receipt = bookService.checkout(user.id(), book.getId());
+
+            if (receipt == null) {
+                return new ResponseEntity<>("book is not available.", BAD_REQUEST);
             }
 
-            boolean bookIsAvailable = bookService.checkIfBookIsAvailable(book.getId());
+            return new ResponseEntity<>(receipt, OK);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            if (!bookIsAvailable) {
-                return new ResponseEntity<>("book is not available.", BAD_REQUEST);
+    @PostMapping("/borrow-batch")
+    public ResponseEntity<Object> borrowBooks(@RequestBody List<Long> bookIds, AuthenticatedUser user) {
+        try {
+            if (user == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
             }
 
-            bookService.borrowBook(book.getId());
+            if (bookIds == null || bookIds.isEmpty() || bookIds.size() > MAX_BATCH_SIZE) {
+                return new ResponseEntity<>("Send between 1 and " + MAX_BATCH_SIZE + " book ids.", BAD_REQUEST);
+            }
 
-            BookActivityHistory bookActivityHistory = bookService.newActivity(book, user, 1);
+            return new ResponseEntity<>(bookService.checkoutBatch(user.id(), bookIds), OK);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            BookWithdrawal withdrawal = bookService.newWithdrawal(bookActivityHistory, user);
+    @PostMapping("/return-batch")
+    public ResponseEntity<Object> returnBooks(@RequestBody List<Long> bookIds, AuthenticatedUser user) {
+        try {
+            if (user == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
 
-            return new ResponseEntity<>(withdrawal, OK);
+            if (bookIds == null || bookIds.isEmpty() || bookIds.size() > MAX_BATCH_SIZE) {
+                return new ResponseEntity<>("Send between 1 and " + MAX_BATCH_SIZE + " book ids.", BAD_REQUEST);
+            }
+
+            return new ResponseEntity<>(bookService.checkinBatch(user.id(), bookIds), OK);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
         }
     }
 
-    @PostMapping("/return")
-    public ResponseEntity<Object> returnBook(@RequestBody Book book, HttpSession session) {
+    @PostMapping("/reserve")
+    public ResponseEntity<Object> reserveBook(@RequestBody Book book, AuthenticatedUser user) {
         try {
-            Long userId = (Long) session.getAttribute("userId");
+            if (user == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
 
-            if (userId == null) {
-                return new ResponseEntity<>("user id is null.", UNAUTHORIZED);
+            ReservationReceipt receipt = bookService.reserve(user.id(), book.getId());
+
+            if (receipt == null) {
+                return new ResponseEntity<>("book is available, borrow it instead.", BAD_REQUEST);
             }
 
-            LibraryUser user = userService.getUserById(userId);
+            return new ResponseEntity<>(receipt, OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), BAD_REQUEST);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
 
+    @DeleteMapping("/reserve/{id}")
+    public ResponseEntity<Object> cancelReservation(@PathVariable Long id, AuthenticatedUser user) {
+        try {
             if (user == null) {
-                return new ResponseEntity<>("User not found.", UNAUTHORIZED);
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
             }
 
-            bookService.returnBook(book.getId());
+            if (!bookService.cancelReservation(user.id(), id)) {
+                return new ResponseEntity<>("You have not reserved this book.", BAD_REQUEST);
+            }
 
-            BookActivityHistory bookActivityHistory = bookService.newActivity(book, user, RETURN_CODE);
+            return new ResponseEntity<>("Reservation cancelled.", OK);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            BookActivityHistory bookActivityHistoryForWithdrawal = bookService.getBookActivityHistory(WITHDRAWAL_CODE, user, book);
+    @PostMapping("/return")
+    public ResponseEntity<Object> returnBook(@RequestBody Book book, AuthenticatedUser user) {
+        try {
+            // null also when the user behind the session no longer exists
+            if (user == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
 
-            BookWithdrawal bookWithdrawal = bookService.getBookWithdrawal(bookActivityHistoryForWithdrawal, user);
+            ReturnReceipt receipt = bookService.checkin(user.id(), book.getId());
 
-            BookReturn bookReturn = bookService.newReturn(bookActivityHistory, user, book, bookWithdrawal);
+            if (receipt == null) {
+                return new ResponseEntity<>("You have not borrowed this book.", BAD_REQUEST);
+            }
 
-            return new ResponseEntity<>(bookReturn, OK);
+            return new ResponseEntity<>(receipt, OK);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
@@ -0,0 +1,123 @@
+package com.moducation.library.api.controller;
+
+import com.moducation.library.api.dto.EventRegistration;
+import com.moducation.library.api.dto.EventRequest;
+import com.moducation.library.api.dto.EventSeats;
+import com.moducation.library.api.models.Event;
+import com.moducation.library.api.service.EventService;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+@Slf4j
+@RestController
+@RequestMapping("/events")
+public class EventController {
+    private final EventService eventService;
+
+    @Autowired
+    public EventController(EventService eventService) {
+        this.eventService = eventService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Object> createEvent(@RequestBody EventRequest request, HttpSession session) {
+        try {
+            Long userId = (Long) session.getAttribute("userId");
+
+            if (userId == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
+
+            if (request.capacity() == null || request.capacity() < 1 || request.description() == null) {
+                return new ResponseEntity<>("An event needs a description and a capacity of at least 1.", BAD_REQUEST);
+            }
+
+            Event event = eventService.create(request.bookId(), request.description(), request.capacity());
+
+            if (event == null) {
+                return new ResponseEntity<>("There is no book with that Id.", NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(event, CREATED);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{id}/seats")
+    public ResponseEntity<Object> getSeats(@PathVariable Long id) {
+        try {
+            EventSeats seats = eventService.seats(id);
+
+            if (seats == null) {
+                return new ResponseEntity<>("There is no event with that Id.", NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(seats, OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/{id}/register")
+    public ResponseEntity<Object> register(@PathVariable Long id, HttpSession session) {
+        try {
+            Long userId = (Long) session.getAttribute("userId");
+
+            if (userId == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
+
+            EventRegistration registration = eventService.register(userId, id);
+
+            if (registration == null) {
+                return new ResponseEntity<>("There is no event with that Id.", NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(registration, OK);
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<>("User not found.", UNAUTHORIZED);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @DeleteMapping("/{id}/register")
+    public ResponseEntity<Object> cancelRegistration(@PathVariable Long id, HttpSession session) {
+        try {
+            Long userId = (Long) session.getAttribute("userId");
+
+            if (userId == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
+
+            if (!eventService.cancel(userId, id)) {
+                return new ResponseEntity<>("You are not registered for this event.", BAD_REQUEST);
+            }
+
+            return new ResponseEntity<>("Registration cancelled.", OK);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+}
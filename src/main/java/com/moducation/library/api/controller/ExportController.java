@@ -0,0 +1,70 @@
+package com.moducation.library.api.controller;
+
+import com.moducation.library.api.service.ActivityArchiveService;
+import com.moducation.library.api.service.ExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+@Slf4j
+@RestController
+@RequestMapping("/export")
+public class ExportController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ExportService exportService;
+    private final ActivityArchiveService activityArchiveService;
+
+    @Autowired
+    public ExportController(ExportService exportService, ActivityArchiveService activityArchiveService) {
+        this.exportService = exportService;
+        this.activityArchiveService = activityArchiveService;
+    }
+
+    @GetMapping("/books")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "false") boolean gzip) {
+        return stream(gzip, out -> exportService.exportBooks(out, gzip));
+    }
+
+    @GetMapping("/activity-history")
+    public ResponseEntity<StreamingResponseBody> exportActivityHistory(@RequestParam(defaultValue = "false") boolean gzip) {
+        return stream(gzip, out -> exportService.exportActivityHistory(out, gzip));
+    }
+
+    @GetMapping("/activity-history/archive")
+    public ResponseEntity<StreamingResponseBody> exportArchivedActivityHistory(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long bookId,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return stream(gzip, out -> activityArchiveService.exportArchived(out, gzip, from, to, userId, bookId));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(boolean gzip, StreamingResponseBody body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return response.body(out -> {
+            try {
+                body.writeTo(out);
+            } catch (Exception e) {
+                // the status line is already sent, all we can do is cut the stream short
+                log.error("Export failed: " + e.getMessage(), e);
+                throw e;
+            }
+        });
+    }
+}
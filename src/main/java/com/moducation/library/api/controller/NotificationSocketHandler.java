@@ -0,0 +1,32 @@
+package com.moducation.library.api.controller;
+
+import com.moducation.library.api.service.NotificationHub;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * Push-only socket at {@code /ws/notifications}. Each notification arrives as one JSON text frame
+ * shaped like {@link com.moducation.library.api.dto.NotificationMessage}. Frames sent by the client are ignored.
+ */
+@Component
+public class NotificationSocketHandler extends TextWebSocketHandler {
+    private final NotificationHub notificationHub;
+
+    @Autowired
+    public NotificationSocketHandler(NotificationHub notificationHub) {
+        this.notificationHub = notificationHub;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        notificationHub.register((Long) session.getAttributes().get("userId"), session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        notificationHub.unregister((Long) session.getAttributes().get("userId"), session.getId());
+    }
+}
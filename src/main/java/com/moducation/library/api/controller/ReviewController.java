@@ -0,0 +1,110 @@
+package com.moducation.library.api.controller;
+
+import com.moducation.library.api.dto.ReviewRequest;
+import com.moducation.library.api.dto.ReviewView;
+import com.moducation.library.api.service.ReviewService;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+@Slf4j
+@RestController
+@RequestMapping("/reviews")
+public class ReviewController {
+    private final ReviewService reviewService;
+
+    @Autowired
+    public ReviewController(ReviewService reviewService) {
+        this.reviewService = reviewService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Object> submitReview(@RequestBody ReviewRequest request, HttpSession session) {
+        try {
+            Long userId = (Long) session.getAttribute("userId");
+
+            if (userId == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
+
+            return new ResponseEntity<>(reviewService.submit(userId, request), CREATED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), BAD_REQUEST);
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<>("There is no book with that Id.", NOT_FOUND);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<Object> editReview(@PathVariable Long id, @RequestBody ReviewRequest request, HttpSession session) {
+        try {
+            Long userId = (Long) session.getAttribute("userId");
+
+            if (userId == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
+
+            ReviewView review = reviewService.edit(userId, id, request);
+
+            if (review == null) {
+                return new ResponseEntity<>("Review not found.", NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(review, OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), BAD_REQUEST);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Object> deleteReview(@PathVariable Long id, HttpSession session) {
+        try {
+            Long userId = (Long) session.getAttribute("userId");
+
+            if (userId == null) {
+                return new ResponseEntity<>("please login", UNAUTHORIZED);
+            }
+
+            if (!reviewService.delete(userId, id)) {
+                return new ResponseEntity<>("Review not found.", NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(id, OK);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{bookId}")
+    public ResponseEntity<Object> getReviews(@PathVariable Long bookId) {
+        try {
+            return new ResponseEntity<>(reviewService.findByBook(bookId), OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), INTERNAL_SERVER_ERROR);
+        }
+    }
+}
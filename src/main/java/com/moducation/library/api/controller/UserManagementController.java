@@ -1,9 +1,15 @@
 package com.moducation.library.api.controller;
 
+import com.moducation.library.api.dto.AuthenticatedUser;
+import com.moducation.library.api.exceptions.PasswordHashingBusyException;
 import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.service.LoanHistoryService;
+import com.moducation.library.api.service.LoginThrottle;
+import com.moducation.library.api.service.NotificationService;
 import com.moducation.library.api.service.UserService;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,7 +18,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.web.bind.annotation.SessionAttribute;
 
@@ -21,15 +29,28 @@ import org.springframework.web.bind.annotation.SessionAttribute;
 @RequestMapping("/users")
 public class UserManagementController {
     private final UserService userService;
+    private final LoanHistoryService loanHistoryService;
+    private final NotificationService notificationService;
+    private final LoginThrottle loginThrottle;
 
     @Autowired
-    public UserManagementController(UserService userService) {
+    public UserManagementController(UserService userService, LoanHistoryService loanHistoryService,
+                                    NotificationService notificationService, LoginThrottle loginThrottle) {
         this.userService = userService;
+        this.loanHistoryService = loanHistoryService;
+        this.notificationService = notificationService;
+        this.loginThrottle = loginThrottle;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<Object> loginUser(@RequestBody LibraryUser libraryUser, HttpSession session) {
+    public ResponseEntity<Object> loginUser(@RequestBody LibraryUser libraryUser, HttpSession session, HttpServletRequest request) {
         try {
+            // turned away before any hashing
+            long retryAfter = loginThrottle.acquire(libraryUser.getUsername(), request.getRemoteAddr());
+            if (retryAfter > 0) {
+                return retryLater("Too many login attempts, please try again later.", retryAfter, HttpStatus.TOO_MANY_REQUESTS);
+            }
+
             LibraryUser libraryUserFromDB = this.userService.getUserByUsername(libraryUser.getUsername());
 
             if (libraryUserFromDB == null) {
@@ -39,11 +60,15 @@ public class UserManagementController {
             boolean validPassword = this.userService.verifyPassword(libraryUser.getPassword(), libraryUserFromDB.getPassword());
 
             if (validPassword) {
+                loginThrottle.succeeded(libraryUser.getUsername(), request.getRemoteAddr());
+                userService.rehashIfNeeded(libraryUserFromDB, libraryUser.getPassword());
                 session.setAttribute("userId", libraryUserFromDB.getId());
                 return new ResponseEntity<>(libraryUserFromDB, HttpStatus.OK);
             }
 
             return new ResponseEntity<>("Incorrect password.", HttpStatus.UNAUTHORIZED);
+        } catch (PasswordHashingBusyException e) {
+            return retryLater(e.getMessage(), 1, HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -67,6 +92,8 @@ public class UserManagementController {
             userService.saveUser(libraryUser);
 
             return new ResponseEntity<>(libraryUser, HttpStatus.CREATED);
+        } catch (PasswordHashingBusyException e) {
+            return retryLater(e.getMessage(), 1, HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -87,6 +114,49 @@ public class UserManagementController {
         }
     }
 
+    @GetMapping("/{id}/history")
+    public ResponseEntity<Object> getLoanHistory(@PathVariable("id") Long id,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer size,
+                                                 AuthenticatedUser user) {
+        try {
+            if (user == null) {
+                return new ResponseEntity<>("please login", HttpStatus.UNAUTHORIZED);
+            }
+
+            if (!id.equals(user.id()) && !user.isStaff()) {
+                return new ResponseEntity<>("You can only read your own loan history.", HttpStatus.FORBIDDEN);
+            }
+
+            return new ResponseEntity<>(loanHistoryService.findPage(id, cursor, size), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // also where a client catches up on notifications its socket missed
+    @GetMapping("/{id}/notifications")
+    public ResponseEntity<Object> getNotifications(@PathVariable("id") Long id,
+                                                   @RequestParam(required = false) Integer size,
+                                                   HttpSession session) {
+        try {
+            Object userId = session.getAttribute("userId");
+            if (userId == null) {
+                return new ResponseEntity<>("please login", HttpStatus.UNAUTHORIZED);
+            }
+
+            if (!id.equals(userId)) {
+                return new ResponseEntity<>("You can only read your own notifications.", HttpStatus.FORBIDDEN);
+            }
+
+            return new ResponseEntity<>(notificationService.latest(id, size), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @GetMapping("/check-user")
     public String checkUser(@SessionAttribute(value = "userId", required = false) String userId) {
         if (userId != null) {
@@ -95,4 +165,10 @@ public class UserManagementController {
             return "No UserId found in session!";
         }
     }
+
+    private static ResponseEntity<Object> retryLater(String message, long seconds, HttpStatus status) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        return new ResponseEntity<>(message, headers, status);
+    }
 }
@@ -0,0 +1,10 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+/**
+ * Flat export shape of a {@link com.moducation.library.api.models.BookActivityHistory} row.
+ * Only ids are exported for the user and book so the export never joins or leaks user data.
+ */
+public record ActivityExportRow(Long id, Integer type, Long userId, Long bookId, Date date) {
+}
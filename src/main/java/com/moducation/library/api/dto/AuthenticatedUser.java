@@ -0,0 +1,17 @@
+package com.moducation.library.api.dto;
+
+import static com.moducation.library.api.utils.Constants.ROLE_ADMIN;
+import static com.moducation.library.api.utils.Constants.ROLE_LIBRARIAN;
+
+/**
+ * The logged in user of a request, resolved from the session by
+ * {@link com.moducation.library.api.config.AuthenticatedUserArgumentResolver}.
+ */
+public record AuthenticatedUser(Long id, Byte role) {
+    /**
+     * Admins and librarians, who handle other patrons' loans.
+     */
+    public boolean isStaff() {
+        return role != null && (role == ROLE_ADMIN || role == ROLE_LIBRARIAN);
+    }
+}
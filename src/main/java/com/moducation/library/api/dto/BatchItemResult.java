@@ -0,0 +1,14 @@
+package com.moducation.library.api.dto;
+
+/**
+ * Outcome for one book of a batch request. {@code receipt} is set on success, {@code message} on failure.
+ */
+public record BatchItemResult<T>(Long bookId, boolean success, T receipt, String message) {
+    public static <T> BatchItemResult<T> success(Long bookId, T receipt) {
+        return new BatchItemResult<>(bookId, true, receipt, null);
+    }
+
+    public static <T> BatchItemResult<T> failure(Long bookId, String message) {
+        return new BatchItemResult<>(bookId, false, null, message);
+    }
+}
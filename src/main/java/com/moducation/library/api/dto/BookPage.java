@@ -0,0 +1,11 @@
+package com.moducation.library.api.dto;
+
+import com.moducation.library.api.models.Book;
+
+import java.util.List;
+
+/**
+ * One page of the catalog. {@code nextCursor} is null on the last page.
+ */
+public record BookPage(List<Book> books, String nextCursor) {
+}
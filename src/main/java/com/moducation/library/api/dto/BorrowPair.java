@@ -0,0 +1,4 @@
+package com.moducation.library.api.dto;
+
+public record BorrowPair(Long userId, Long bookId) {
+}
@@ -0,0 +1,6 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+public record DailyBorrowCount(Long bookId, Date date, Long count) {
+}
@@ -0,0 +1,6 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+public record DueLoan(Long withdrawalId, Long userId, Long bookId, Date expectedReturnDate) {
+}
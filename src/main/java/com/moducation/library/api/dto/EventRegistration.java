@@ -0,0 +1,7 @@
+package com.moducation.library.api.dto;
+
+/**
+ * What a patron gets back from registering for an event: a seat, or a place on the waitlist.
+ */
+public record EventRegistration(Long eventId, Long userId, boolean waitlisted) {
+}
@@ -0,0 +1,4 @@
+package com.moducation.library.api.dto;
+
+public record EventRequest(Long bookId, String description, Integer capacity) {
+}
@@ -0,0 +1,4 @@
+package com.moducation.library.api.dto;
+
+public record EventSeats(Long eventId, Integer capacity, Integer seatsTaken) {
+}
@@ -0,0 +1,13 @@
+package com.moducation.library.api.dto;
+
+import com.moducation.library.api.models.Book;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of faceted search results. {@code facets} maps "genre", "author" and "availability"
+ * to value -> number of matching books.
+ */
+public record FacetedSearchResult(List<Book> books, int total, Map<String, Map<String, Integer>> facets) {
+}
@@ -0,0 +1,13 @@
+package com.moducation.library.api.dto;
+
+import java.util.List;
+
+/**
+ * Result of a bulk import. {@code errors} holds the first failures only, {@code rowsFailed} counts all of them.
+ */
+public record ImportReport(long rowsRead, long rowsImported, long rowsFailed, List<ImportError> errors,
+                           long elapsedMillis, double rowsPerSecond) {
+
+    public record ImportError(long row, String message) {
+    }
+}
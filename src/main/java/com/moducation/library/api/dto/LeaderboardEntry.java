@@ -0,0 +1,9 @@
+package com.moducation.library.api.dto;
+
+import com.moducation.library.api.models.Book;
+
+/**
+ * One row of a leaderboard. The score is the average rating or the borrow count, depending on the board.
+ */
+public record LeaderboardEntry(int rank, Book book, double score) {
+}
@@ -0,0 +1,9 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+/**
+ * One borrow or return in a user's history, with just enough of the book to display it.
+ */
+public record LoanHistoryEntry(Long id, Integer type, Date date, Long bookId, String title, String author) {
+}
@@ -0,0 +1,6 @@
+package com.moducation.library.api.dto;
+
+import java.util.List;
+
+public record LoanHistoryPage(List<LoanHistoryEntry> entries, String nextCursor) {
+}
@@ -0,0 +1,9 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+/**
+ * What a patron gets back from a checkout: the withdrawal that was recorded and when the book is due.
+ */
+public record LoanReceipt(Long withdrawalId, Long bookId, Long userId, Date expectedReturnDate) {
+}
@@ -0,0 +1,6 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+public record NotificationMessage(Long id, Integer type, String message, Date date) {
+}
@@ -0,0 +1,4 @@
+package com.moducation.library.api.dto;
+
+public record QueuedReservation(Long reservationId, Long userId, Long bookId) {
+}
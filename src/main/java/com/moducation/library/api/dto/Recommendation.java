@@ -0,0 +1,9 @@
+package com.moducation.library.api.dto;
+
+import com.moducation.library.api.models.Book;
+
+/**
+ * A book borrowed by {@code coBorrowers} of the patrons who also borrowed the book being viewed.
+ */
+public record Recommendation(Book book, int coBorrowers) {
+}
@@ -0,0 +1,7 @@
+package com.moducation.library.api.dto;
+
+/**
+ * What a patron gets back from a reservation: its id and how many reservations for the book were ahead of it.
+ */
+public record ReservationReceipt(Long reservationId, Long bookId, Long userId, int ahead) {
+}
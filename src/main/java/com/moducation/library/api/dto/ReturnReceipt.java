@@ -0,0 +1,7 @@
+package com.moducation.library.api.dto;
+
+/**
+ * What a patron gets back from a return.
+ */
+public record ReturnReceipt(Long returnId, Long withdrawalId, Long bookId, Long userId, Boolean wasOverdue) {
+}
@@ -0,0 +1,4 @@
+package com.moducation.library.api.dto;
+
+public record ReviewRequest(Long bookId, Float rating, String title, String text) {
+}
@@ -0,0 +1,9 @@
+package com.moducation.library.api.dto;
+
+import java.sql.Date;
+
+/**
+ * A review as shown to clients, with the reviewer as an id only.
+ */
+public record ReviewView(Long id, Long bookId, Long userId, Float rating, String title, String text, Date reviewDate) {
+}
@@ -0,0 +1,7 @@
+package com.moducation.library.api.dto;
+
+/**
+ * An autocomplete suggestion: a book title (with its id) or an author name (bookId is null).
+ */
+public record Suggestion(String text, String type, Long bookId, double score) {
+}
@@ -0,0 +1,4 @@
+package com.moducation.library.api.dto;
+
+public record WaitlistEntry(Long registrationId, Long userId) {
+}
@@ -0,0 +1,9 @@
+package com.moducation.library.api.events;
+
+import java.sql.Date;
+
+/**
+ * Published in the checkout transaction once the availability is taken and the loan is stored.
+ */
+public record BookBorrowed(Long withdrawalId, Long userId, Long bookId, Date expectedReturnDate, Date borrowedOn) {
+}
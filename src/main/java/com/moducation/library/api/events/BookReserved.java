@@ -0,0 +1,9 @@
+package com.moducation.library.api.events;
+
+import java.sql.Date;
+
+/**
+ * Published in the reservation transaction once the reservation is stored.
+ */
+public record BookReserved(Long reservationId, Long userId, Long bookId, Date reservedOn) {
+}
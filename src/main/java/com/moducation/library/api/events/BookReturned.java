@@ -0,0 +1,9 @@
+package com.moducation.library.api.events;
+
+import java.sql.Date;
+
+/**
+ * Published in the checkin transaction once the availability is released and the return is stored.
+ */
+public record BookReturned(Long returnId, Long withdrawalId, Long userId, Long bookId, boolean wasOverdue, Date returnedOn) {
+}
@@ -0,0 +1,9 @@
+package com.moducation.library.api.events;
+
+import java.sql.Date;
+
+/**
+ * Published once per withdrawal, right after it has been marked overdue.
+ */
+public record LoanOverdueEvent(Long withdrawalId, Long userId, Long bookId, Date expectedReturnDate) {
+}
@@ -0,0 +1,10 @@
+package com.moducation.library.api.exceptions;
+
+/**
+ * Thrown when a password cannot be checked because the hashing pool is full or did not get to it in time.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,54 @@
+package com.moducation.library.api.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+
+/**
+ * A month of book activity history that was moved out of the database into a compressed file.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityArchive {
+    @Id
+    private String partitionName;
+
+    // inclusive
+    @Column(nullable = false)
+    @Temporal(TemporalType.DATE)
+    private Date rangeStart;
+
+    // exclusive
+    @Column(nullable = false)
+    @Temporal(TemporalType.DATE)
+    private Date rangeEnd;
+
+    @Column(nullable = false)
+    private String filePath;
+
+    @Column(nullable = false)
+    private Long rowCount;
+
+    @Column(nullable = false)
+    private Timestamp archivedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.archivedAt = new Timestamp(System.currentTimeMillis());
+    }
+}
@@ -5,9 +5,11 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.AllArgsConstructor;
@@ -19,6 +21,11 @@ import lombok.Getter;
 import java.sql.Date;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_activity_type_date", columnList = "type, date"),
+        @Index(name = "idx_activity_user_book_type_date", columnList = "user_id, book_id, type, date"),
+        @Index(name = "idx_activity_user_date_id", columnList = "user_id, date, id")
+})
 @Getter
 @Setter
 @Builder
@@ -26,7 +33,7 @@ import java.sql.Date;
 @NoArgsConstructor
 public class BookActivityHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     private Long id;
 
     @Column(nullable = false)
@@ -46,6 +53,8 @@ public class BookActivityHistory {
 
     @PrePersist
     protected void onCreate() {
-        this.date = new Date(System.currentTimeMillis());
+        if (this.date == null) {
+            this.date = new Date(System.currentTimeMillis());
+        }
     }
 }
\ No newline at end of file
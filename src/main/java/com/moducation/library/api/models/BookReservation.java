@@ -1,13 +1,17 @@
 package com.moducation.library.api.models;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.AllArgsConstructor;
@@ -15,10 +19,13 @@ import lombok.Builder;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.Getter;
+import org.hibernate.annotations.NotFound;
+import org.hibernate.annotations.NotFoundAction;
 
 import java.util.Date;
 
 @Entity
+@Table(indexes = @Index(name = "idx_book_reservation_user_book", columnList = "user_id, book_id"))
 @Getter
 @Setter
 @Builder
@@ -36,6 +43,10 @@ public class BookReservation {
     @Column(nullable = false)
     private Boolean active;
 
+    // set when a returned copy was handed to this reservation, null while waiting or once cancelled
+    @Temporal(TemporalType.DATE)
+    private Date assignedOn;
+
     @ManyToOne
     @JoinColumn(name = "book_id", nullable = false)
     private Book book;
@@ -44,6 +55,12 @@ public class BookReservation {
     @JoinColumn(name = "user_id", nullable = false)
     private LibraryUser libraryUser;
 
+    // the history row, linked once ActivityHistoryRecorder has written it after commit
+    @ManyToOne
+    @NotFound(action = NotFoundAction.IGNORE)
+    @JoinColumn(name = "book_activity_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private BookActivityHistory bookActivity;
+
     @PrePersist
     protected void onCreate() {
         this.date = new Date(System.currentTimeMillis());
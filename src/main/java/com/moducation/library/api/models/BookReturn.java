@@ -1,7 +1,9 @@
 package com.moducation.library.api.models;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -10,6 +12,8 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import org.hibernate.annotations.NotFound;
+import org.hibernate.annotations.NotFoundAction;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -26,7 +30,7 @@ import java.sql.Date;
 @NoArgsConstructor
 public class BookReturn {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     private Long id;
 
     @Column(nullable = false)
@@ -37,8 +41,11 @@ public class BookReturn {
     private Boolean wasOverdue;
 
     // book activity reference
+    // no foreign key: book_activity_history is partitioned by date and old partitions get archived.
+    // Null until ActivityHistoryRecorder has written the history row of a checkout or checkin
     @ManyToOne
-    @JoinColumn(name = "book_activity_id", nullable = false)
+    @NotFound(action = NotFoundAction.IGNORE)
+    @JoinColumn(name = "book_activity_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private BookActivityHistory bookActivityHistory;
 
     //book withdrawal reference
@@ -57,7 +64,9 @@ public class BookReturn {
     @PrePersist
     protected void onCreate() {
         long currentTimeInMillis = System.currentTimeMillis();
-        this.wasOverdue = currentTimeInMillis < bookWithdrawal.getExpectedReturnDate().getTime();
+        if (this.wasOverdue == null) {
+            this.wasOverdue = currentTimeInMillis > bookWithdrawal.getExpectedReturnDate().getTime();
+        }
         this.returnDate = new Date(currentTimeInMillis);
     }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.moducation.library.api.models;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -10,6 +12,8 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import org.hibernate.annotations.NotFound;
+import org.hibernate.annotations.NotFoundAction;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -18,6 +22,8 @@ import lombok.Getter;
 
 import java.sql.Date;
 
+import static com.moducation.library.api.utils.Constants.ONE_WEEK_IN_MILLIS;
+
 @Entity
 @Getter
 @Setter
@@ -26,23 +32,38 @@ import java.sql.Date;
 @NoArgsConstructor
 public class BookWithdrawal {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     private Long id;
 
+    // no foreign key: book_activity_history is partitioned by date and old partitions get archived.
+    // Null until ActivityHistoryRecorder has written the history row of a checkout or checkin
     @ManyToOne
-    @JoinColumn(name = "book_activity_id", nullable = false)
+    @NotFound(action = NotFoundAction.IGNORE)
+    @JoinColumn(name = "book_activity_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private BookActivityHistory bookActivity;
 
     @Column(nullable = false)
     @Temporal(TemporalType.DATE)
     private Date expectedReturnDate;
 
+    // set once by the overdue scheduler when the expected return date passes without a return
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean overdue;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private LibraryUser libraryUser;
 
+    // also reachable through the history row, but that goes once its month is archived.
+    // Null on withdrawals made before this column, ActivityArchiveService fills it in before archiving
+    @ManyToOne
+    @JoinColumn(name = "book_id")
+    private Book book;
+
     @PrePersist
     protected void onCreate() {
-        this.expectedReturnDate = new Date(System.currentTimeMillis());
+        if (this.expectedReturnDate == null) {
+            this.expectedReturnDate = new Date(System.currentTimeMillis() + ONE_WEEK_IN_MILLIS);
+        }
     }
 }
\ No newline at end of file
@@ -40,8 +40,16 @@ public class Event {
     @Temporal(TemporalType.DATE)
     private Date date;
 
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private Integer capacity;
+
+    // confirmed registrations, only changed through the conditional updates in EventRepository
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private Integer seatsTaken;
+
     @PrePersist
     protected void onCreate() {
         this.date = new Date(System.currentTimeMillis());
+        this.seatsTaken = 0;
     }
 }
\ No newline at end of file
@@ -5,11 +5,14 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -19,6 +22,8 @@ import lombok.Getter;
 import java.sql.Date;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_event_register_user_event", columnNames = {"user_id", "event_id"}),
+        indexes = @Index(name = "idx_event_register_waitlist", columnList = "event_id, waitlisted, id"))
 @Getter
 @Setter
 @Builder
@@ -41,6 +46,10 @@ public class EventRegister {
     @Temporal(TemporalType.DATE)
     private Date dateRegistered;
 
+    // true while waiting for a seat, the oldest waitlisted registration gets the next seat given back
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private Boolean waitlisted;
+
     @PrePersist
     protected void onCreate() {
         this.dateRegistered = new Date(System.currentTimeMillis());
@@ -8,8 +8,10 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -18,7 +20,12 @@ import lombok.Getter;
 
 import java.sql.Date;
 
+/**
+ * One day's fine for an overdue withdrawal. At most one per withdrawal and day, so running the
+ * assessment twice for the same day charges nothing extra.
+ */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_fine_withdrawal_day", columnNames = {"withdrawal_id", "assessed_for"}))
 @Getter
 @Setter
 @Builder
@@ -44,6 +51,11 @@ public class Fine {
     @Temporal(TemporalType.DATE)
     private Date dateIssued;
 
+    // the day this fine is for
+    @Column(name = "assessed_for", nullable = false)
+    @Temporal(TemporalType.DATE)
+    private Date assessedFor;
+
     @PrePersist
     protected void onCreate() {
         this.dateIssued = new Date(System.currentTimeMillis());
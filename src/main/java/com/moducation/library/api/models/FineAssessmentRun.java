@@ -0,0 +1,44 @@
+package com.moducation.library.api.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+
+/**
+ * Checkpoint of the fine assessment for one day. Every open loan up to and including
+ * {@code lastWithdrawalId} has been assessed, so a pass that stopped half way resumes from there.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FineAssessmentRun {
+    @Id
+    @Temporal(TemporalType.DATE)
+    private Date assessedFor;
+
+    @Column(nullable = false)
+    private Long lastWithdrawalId;
+
+    // counted per checkpointed chunk, chunks that committed just before a crash are not counted again on resume
+    @Column(nullable = false)
+    private Long finesIssued;
+
+    @Column(nullable = false)
+    private Timestamp startedAt;
+
+    // null while the pass is unfinished
+    private Timestamp finishedAt;
+}
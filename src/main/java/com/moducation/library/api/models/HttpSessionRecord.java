@@ -0,0 +1,47 @@
+package com.moducation.library.api.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * An HTTP session shared by all nodes. {@code data} holds the serialized session, the other columns
+ * are kept next to it so last access can be moved forward and expired sessions found without reading it.
+ */
+@Entity
+@Table(name = "http_session", indexes = {
+        @Index(name = "idx_http_session_expires_at", columnList = "expiresAt")
+})
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class HttpSessionRecord {
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    // epoch millis
+    @Column(nullable = false)
+    private Long lastAccessedTime;
+
+    @Column(nullable = false)
+    private Long expiresAt;
+
+    // moved forward by every save, touches leave it alone
+    @Column(nullable = false)
+    @ColumnDefault("1")
+    private Long version;
+
+    @Column(nullable = false, length = 65536)
+    private byte[] data;
+}
@@ -5,9 +5,11 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.AllArgsConstructor;
@@ -19,6 +21,7 @@ import lombok.Getter;
 import java.sql.Date;
 
 @Entity
+@Table(indexes = @Index(name = "idx_notification_user_id", columnList = "user_id, id"))
 @Getter
 @Setter
 @Builder
@@ -26,7 +29,7 @@ import java.sql.Date;
 @NoArgsConstructor
 public class Notification {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     private Long id;
 
     @ManyToOne
@@ -36,6 +39,9 @@ public class Notification {
     @Column(nullable = false)
     private Integer type;
 
+    @Column(length = 500)
+    private String message;
+
     @Column(nullable = false)
     @Temporal(TemporalType.DATE)
     private Date dateOfNotification;
@@ -0,0 +1,49 @@
+package com.moducation.library.api.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.Getter;
+
+import java.sql.Date;
+
+/**
+ * A book that is currently out. Written on borrow and deleted on return, so the return path finds
+ * its withdrawal with one indexed lookup no matter how long the activity history gets.
+ * Plain id columns on purpose: reading a loan never joins users or books.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_open_loan_user_book", columnList = "user_id, book_id"))
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OpenLoan {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "withdrawal_id", nullable = false, unique = true)
+    private Long withdrawalId;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.DATE)
+    private Date expectedReturnDate;
+}
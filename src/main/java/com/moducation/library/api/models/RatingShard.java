@@ -0,0 +1,49 @@
+package com.moducation.library.api.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Pending rating change for a heavily reviewed book. Reviews of a hot book add to one of several
+ * shard rows instead of all contending for the book row; the shards are folded into
+ * {@link Book#getSumRating()} and friends periodically.
+ */
+@Entity
+@IdClass(RatingShard.RatingShardId.class)
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RatingShard {
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Id
+    private Integer shard;
+
+    @Column(nullable = false)
+    private Float sumDelta;
+
+    @Column(nullable = false)
+    private Float countDelta;
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RatingShardId implements Serializable {
+        private Long bookId;
+        private Integer shard;
+    }
+}
@@ -0,0 +1,16 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.models.ActivityArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.util.List;
+
+@Repository
+public interface ActivityArchiveRepository extends JpaRepository<ActivityArchive, String> {
+    @Query("SELECT a FROM ActivityArchive a WHERE a.rangeStart <= :to AND a.rangeEnd > :from ORDER BY a.rangeStart")
+    List<ActivityArchive> findOverlapping(@Param("from") Date from, @Param("to") Date to);
+}
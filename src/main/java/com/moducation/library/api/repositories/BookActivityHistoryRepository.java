@@ -1,17 +1,47 @@
 package com.moducation.library.api.repositories;
 
-import com.moducation.library.api.models.Book;
+import com.moducation.library.api.dto.ActivityExportRow;
+import com.moducation.library.api.dto.BorrowPair;
+import com.moducation.library.api.dto.DailyBorrowCount;
+import com.moducation.library.api.dto.LoanHistoryEntry;
 import com.moducation.library.api.models.BookActivityHistory;
-import com.moducation.library.api.models.LibraryUser;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface BookActivityHistoryRepository extends JpaRepository<BookActivityHistory, Long> {
-    @Query("SELECT b FROM BookActivityHistory b WHERE b.libraryUser = :libraryUser AND b.book = :book AND b.type = :type ORDER BY b.date DESC LIMIT 1")
-    BookActivityHistory findBookActivityForWithdrawal(@Param("type") Integer type,
-                                                      @Param("libraryUser") LibraryUser libraryUser,
-                                                      @Param("book") Book book);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.moducation.library.api.dto.ActivityExportRow(b.id, b.type, b.libraryUser.id, b.book.id, b.date) FROM BookActivityHistory b ORDER BY b.id")
+    Stream<ActivityExportRow> streamAllForExport();
+
+    @Query("SELECT new com.moducation.library.api.dto.DailyBorrowCount(b.book.id, b.date, COUNT(b)) FROM BookActivityHistory b " +
+            "WHERE b.type = :type AND b.date >= :since GROUP BY b.book.id, b.date")
+    List<DailyBorrowCount> countDailyBorrows(@Param("type") Integer type, @Param("since") Date since);
+
+    @Query("SELECT new com.moducation.library.api.dto.LoanHistoryEntry(a.id, a.type, a.date, b.id, b.title, b.author) " +
+            "FROM BookActivityHistory a JOIN a.book b WHERE a.libraryUser.id = :userId ORDER BY a.date DESC, a.id DESC")
+    List<LoanHistoryEntry> findFirstHistoryPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT new com.moducation.library.api.dto.LoanHistoryEntry(a.id, a.type, a.date, b.id, b.title, b.author) " +
+            "FROM BookActivityHistory a JOIN a.book b WHERE a.libraryUser.id = :userId " +
+            "AND (a.date < :date OR (a.date = :date AND a.id < :id)) ORDER BY a.date DESC, a.id DESC")
+    List<LoanHistoryEntry> findHistoryPage(@Param("userId") Long userId, @Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Each (patron, book) pair once, ordered by when the patron last borrowed the book, oldest first.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.moducation.library.api.dto.BorrowPair(b.libraryUser.id, b.book.id) FROM BookActivityHistory b " +
+            "WHERE b.type = :type GROUP BY b.libraryUser.id, b.book.id ORDER BY MAX(b.date), MAX(b.id)")
+    List<BorrowPair> findDistinctBorrowPairs(@Param("type") Integer type);
 }
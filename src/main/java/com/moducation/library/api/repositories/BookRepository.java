@@ -1,13 +1,19 @@
 package com.moducation.library.api.repositories;
 
 import com.moducation.library.api.models.Book;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
@@ -20,6 +26,25 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     @Query("SELECT id, title, author, genre, availability, avgRating, sumRating, numberOfRatings FROM Book WHERE author LIKE %:author%")
     List<Book> findByAuthor(@Param("author") String author);
 
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    List<Book> findFirstPageById(Pageable pageable);
+
+    @Query("SELECT b FROM Book b WHERE b.id > :afterId ORDER BY b.id")
+    List<Book> findPageById(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT b FROM Book b ORDER BY b.title, b.id")
+    List<Book> findFirstPageByTitle(Pageable pageable);
+
+    @Query("SELECT b FROM Book b WHERE b.title > :title OR (b.title = :title AND b.id > :afterId) ORDER BY b.title, b.id")
+    List<Book> findPageByTitle(@Param("title") String title, @Param("afterId") Long afterId, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAll();
+
     @Modifying
     @Query("UPDATE Book SET title = :title, author = :author, genre = :genre, availability = :availability WHERE id = :id")
     Book updateBook(@Param("title") String title, @Param("author") String author, @Param("genre") String genre, @Param("availability") Integer availability, @Param("id") Long id);
@@ -30,4 +55,39 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     @Modifying
     @Query("UPDATE Book SET availability = :newAvailability WHERE id = :id")
     void updateAvailability(@Param("newAvailability") Integer newAvailability, @Param("id") Long id);
+
+    /**
+     * Takes {@code amount} copies only if that many are available. Returns the number of rows updated.
+     */
+    @Modifying
+    @Query("UPDATE Book SET availability = availability - :amount WHERE id = :id AND availability >= :amount")
+    int takeAvailability(@Param("id") Long id, @Param("amount") int amount);
+
+    @Modifying
+    @Query("UPDATE Book SET availability = availability + :amount WHERE id = :id")
+    int releaseAvailability(@Param("id") Long id, @Param("amount") int amount);
+
+    /**
+     * Adds to the rating sum and count and recomputes the average in the same statement.
+     * Every right-hand side sees the row as it was before the update.
+     */
+    @Modifying
+    @Query("UPDATE Book SET sumRating = COALESCE(sumRating, 0) + :sumDelta, " +
+            "numberOfRatings = COALESCE(numberOfRatings, 0) + :countDelta, " +
+            "avgRating = CASE WHEN COALESCE(numberOfRatings, 0) + :countDelta > 0 " +
+            "THEN (COALESCE(sumRating, 0) + :sumDelta) / (COALESCE(numberOfRatings, 0) + :countDelta) ELSE NULL END " +
+            "WHERE id = :id")
+    int applyRatingDelta(@Param("id") Long id, @Param("sumDelta") Float sumDelta, @Param("countDelta") Float countDelta);
+
+    /**
+     * The rating fields as they are in the row, bypassing any book already loaded in the persistence context.
+     */
+    @Query("SELECT b.avgRating AS avgRating, b.numberOfRatings AS numberOfRatings FROM Book b WHERE b.id = :id")
+    Optional<BookRating> findRatingById(@Param("id") Long id);
+
+    interface BookRating {
+        Float getAvgRating();
+
+        Float getNumberOfRatings();
+    }
 }
@@ -1,4 +1,46 @@
 package com.moducation.library.api.repositories;
 
-public interface BookReservationRepository {
+import com.moducation.library.api.models.BookActivityHistory;
+import com.moducation.library.api.models.BookReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BookReservationRepository extends JpaRepository<BookReservation, Long> {
+    boolean existsByLibraryUser_IdAndBook_IdAndActiveTrue(Long userId, Long bookId);
+
+    long countByBook_IdAndActiveTrue(Long bookId);
+
+    boolean existsByIdAndBookActivityIsNotNull(Long id);
+
+    /**
+     * The oldest active reservation of the book that no other transaction is claiming, locked until
+     * the transaction ends. Ids follow the order reservations were made in.
+     */
+    @Query(value = "SELECT id AS reservationId, user_id AS userId FROM book_reservation " +
+            "WHERE book_id = :bookId AND active = true ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    NextReservation findNextForUpdate(@Param("bookId") Long bookId);
+
+    // 1 for the caller that gets the reservation, 0 when it was cancelled or assigned by someone else
+    @Modifying
+    @Query("UPDATE BookReservation r SET r.active = false, r.assignedOn = CURRENT_DATE WHERE r.id = :id AND r.active = true")
+    int claim(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE BookReservation r SET r.active = false " +
+            "WHERE r.libraryUser.id = :userId AND r.book.id = :bookId AND r.active = true")
+    int cancel(@Param("userId") Long userId, @Param("bookId") Long bookId);
+
+    @Modifying
+    @Query("UPDATE BookReservation r SET r.bookActivity = :activity WHERE r.id = :id")
+    int linkActivity(@Param("id") Long id, @Param("activity") BookActivityHistory activity);
+
+    interface NextReservation {
+        Long getReservationId();
+
+        Long getUserId();
+    }
 }
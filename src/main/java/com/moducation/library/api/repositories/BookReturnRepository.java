@@ -1,7 +1,16 @@
 package com.moducation.library.api.repositories;
 
+import com.moducation.library.api.models.BookActivityHistory;
 import com.moducation.library.api.models.BookReturn;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface BookReturnRepository extends JpaRepository<BookReturn, Long> {
+    boolean existsByIdAndBookActivityHistoryIsNotNull(Long id);
+
+    @Modifying
+    @Query("UPDATE BookReturn r SET r.bookActivityHistory = :activity WHERE r.id = :id")
+    int linkActivity(@Param("id") Long id, @Param("activity") BookActivityHistory activity);
 }
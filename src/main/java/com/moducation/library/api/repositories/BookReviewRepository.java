@@ -0,0 +1,27 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.dto.ReviewView;
+import com.moducation.library.api.models.BookReview;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookReviewRepository extends JpaRepository<BookReview, Long> {
+    @Query("SELECT new com.moducation.library.api.dto.ReviewView(r.id, r.book.id, r.libraryUser.id, r.rating, r.title, r.text, r.reviewDate) " +
+            "FROM BookReview r WHERE r.book.id = :bookId ORDER BY r.id DESC")
+    List<ReviewView> findViewsByBookId(@Param("bookId") Long bookId);
+
+    /**
+     * The review, locked until the transaction ends, so the rating a change is computed from stays current.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM BookReview r WHERE r.id = :id")
+    Optional<BookReview> findByIdForUpdate(@Param("id") Long id);
+}
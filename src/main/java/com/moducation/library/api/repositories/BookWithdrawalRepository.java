@@ -2,8 +2,8 @@ package com.moducation.library.api.repositories;
 
 import com.moducation.library.api.models.BookActivityHistory;
 import com.moducation.library.api.models.BookWithdrawal;
-import com.moducation.library.api.models.LibraryUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,6 +11,15 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface BookWithdrawalRepository extends JpaRepository<BookWithdrawal, Long> {
 
-    @Query("SELECT bw FROM BookWithdrawal bw WHERE bw.bookActivity = :bookActivityHistory AND bw.libraryUser = :libraryUser")
-    BookWithdrawal findByBookActivityHistoryAndLibraryUser(@Param("bookActivityHistory") BookActivityHistory bookActivityHistory, @Param("libraryUser") LibraryUser libraryUser);
+    boolean existsByIdAndBookActivityIsNotNull(Long id);
+
+    @Modifying
+    @Query("UPDATE BookWithdrawal w SET w.bookActivity = :activity WHERE w.id = :id")
+    int linkActivity(@Param("id") Long id, @Param("activity") BookActivityHistory activity);
+
+    // 0 when the withdrawal was already marked or has been returned in the meantime
+    @Modifying
+    @Query("UPDATE BookWithdrawal w SET w.overdue = true WHERE w.id = :id AND w.overdue = false " +
+            "AND NOT EXISTS (SELECT 1 FROM BookReturn r WHERE r.bookWithdrawal.id = w.id)")
+    int markOverdue(@Param("id") Long id);
 }
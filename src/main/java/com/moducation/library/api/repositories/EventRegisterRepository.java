@@ -0,0 +1,38 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.dto.WaitlistEntry;
+import com.moducation.library.api.models.EventRegister;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EventRegisterRepository extends JpaRepository<EventRegister, Long> {
+    // null when the user is not registered for the event
+    @Query("SELECT r.waitlisted FROM EventRegister r WHERE r.libraryUser.id = :userId AND r.event.id = :eventId")
+    Boolean findWaitlisted(@Param("userId") Long userId, @Param("eventId") Long eventId);
+
+    // 0 when the user is already registered, the unique (user, event) constraint decides races
+    @Modifying
+    @Query(value = "INSERT INTO event_register (user_id, event_id, waitlisted, date_registered) " +
+            "VALUES (:userId, :eventId, :waitlisted, CURRENT_DATE) " +
+            "ON CONFLICT (user_id, event_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("eventId") Long eventId, @Param("waitlisted") boolean waitlisted);
+
+    @Modifying
+    @Query("DELETE FROM EventRegister r WHERE r.libraryUser.id = :userId AND r.event.id = :eventId")
+    int deleteRegistration(@Param("userId") Long userId, @Param("eventId") Long eventId);
+
+    @Query("SELECT new com.moducation.library.api.dto.WaitlistEntry(r.id, r.libraryUser.id) FROM EventRegister r " +
+            "WHERE r.event.id = :eventId AND r.waitlisted = true ORDER BY r.id")
+    List<WaitlistEntry> findWaitlist(@Param("eventId") Long eventId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE EventRegister SET waitlisted = false WHERE id = :id AND waitlisted = true")
+    int promote(@Param("id") Long id);
+}
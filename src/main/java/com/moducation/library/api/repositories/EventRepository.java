@@ -0,0 +1,28 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.dto.EventSeats;
+import com.moducation.library.api.models.Event;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EventRepository extends JpaRepository<Event, Long> {
+    @Query("SELECT new com.moducation.library.api.dto.EventSeats(e.id, e.capacity, e.seatsTaken) FROM Event e WHERE e.id = :id")
+    EventSeats findSeats(@Param("id") Long id);
+
+    // 1 when a seat was taken, 0 when the event is full or does not exist
+    @Modifying
+    @Query("UPDATE Event SET seatsTaken = seatsTaken + 1 WHERE id = :id AND seatsTaken < capacity")
+    int takeSeat(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Event SET seatsTaken = seatsTaken - 1 WHERE id = :id AND seatsTaken > 0")
+    int releaseSeat(@Param("id") Long id);
+
+    // holds the event row until commit, null when there is no such event
+    @Query(value = "SELECT id FROM event WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
+}
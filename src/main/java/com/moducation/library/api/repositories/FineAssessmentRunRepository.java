@@ -0,0 +1,12 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.models.FineAssessmentRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+
+@Repository
+public interface FineAssessmentRunRepository extends JpaRepository<FineAssessmentRun, Date> {
+    FineAssessmentRun findTopByFinishedAtIsNotNullOrderByAssessedForDesc();
+}
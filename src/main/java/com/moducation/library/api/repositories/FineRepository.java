@@ -1,4 +1,27 @@
 package com.moducation.library.api.repositories;
 
-public interface FineRepository {
+import com.moducation.library.api.models.Fine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.util.List;
+
+@Repository
+public interface FineRepository extends JpaRepository<Fine, Long> {
+    // one fine per open loan in (fromId, toId] that was due before the day, loans already fined that day are skipped.
+    // Returns the fines inserted, must run in the caller's transaction
+    @Query(value = "INSERT INTO fine (user_id, withdrawal_id, amount, date_issued, assessed_for) " +
+            "SELECT o.user_id, o.withdrawal_id, :amount, CURRENT_DATE, :day FROM open_loan o " +
+            "WHERE o.withdrawal_id > :fromId AND o.withdrawal_id <= :toId AND o.expected_return_date < :day " +
+            "ON CONFLICT (withdrawal_id, assessed_for) DO NOTHING RETURNING user_id AS userId, amount", nativeQuery = true)
+    List<IssuedFine> assessRange(@Param("day") Date day, @Param("amount") float amount, @Param("fromId") long fromId, @Param("toId") long toId);
+
+    interface IssuedFine {
+        Long getUserId();
+
+        Float getAmount();
+    }
 }
@@ -0,0 +1,43 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.models.HttpSessionRecord;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface HttpSessionRecordRepository extends JpaRepository<HttpSessionRecord, String> {
+    // 0 when a session with the id is already stored
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO http_session (id, version, last_accessed_time, expires_at, data) " +
+            "VALUES (:id, 1, :lastAccessedTime, :expiresAt, :data) ON CONFLICT (id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id, @Param("lastAccessedTime") long lastAccessedTime,
+                       @Param("expiresAt") long expiresAt, @Param("data") byte[] data);
+
+    // 0 when another save moved the version on, or the session is gone. Last access never moves back
+    @Transactional
+    @Modifying
+    @Query("UPDATE HttpSessionRecord s SET s.data = :data, s.version = s.version + 1, " +
+            "s.lastAccessedTime = CASE WHEN s.lastAccessedTime > :lastAccessedTime THEN s.lastAccessedTime ELSE :lastAccessedTime END, " +
+            "s.expiresAt = CASE WHEN s.lastAccessedTime > :lastAccessedTime THEN s.lastAccessedTime ELSE :lastAccessedTime END + :maxInactiveMillis " +
+            "WHERE s.id = :id AND s.version = :version")
+    int replace(@Param("id") String id, @Param("version") long version, @Param("lastAccessedTime") long lastAccessedTime,
+                @Param("maxInactiveMillis") long maxInactiveMillis, @Param("data") byte[] data);
+
+    // never moves last access back, another node may have stored a later one
+    @Transactional
+    @Modifying
+    @Query("UPDATE HttpSessionRecord s SET s.lastAccessedTime = :lastAccessedTime, " +
+            "s.expiresAt = :lastAccessedTime + (s.expiresAt - s.lastAccessedTime) " +
+            "WHERE s.id = :id AND s.lastAccessedTime < :lastAccessedTime")
+    int touch(@Param("id") String id, @Param("lastAccessedTime") long lastAccessedTime);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM HttpSessionRecord s WHERE s.expiresAt < :now")
+    int deleteExpired(@Param("now") long now);
+}
@@ -0,0 +1,18 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.dto.NotificationMessage;
+import com.moducation.library.api.models.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+    @Query("SELECT new com.moducation.library.api.dto.NotificationMessage(n.id, n.type, n.message, n.dateOfNotification) " +
+            "FROM Notification n WHERE n.libraryUser.id = :userId ORDER BY n.id DESC")
+    List<NotificationMessage> findLatest(@Param("userId") Long userId, Pageable pageable);
+}
@@ -0,0 +1,45 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.dto.DueLoan;
+import com.moducation.library.api.models.OpenLoan;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OpenLoanRepository extends JpaRepository<OpenLoan, Long> {
+    // locked until commit, a concurrent return of the same loan waits and then no longer finds it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    OpenLoan findFirstByUserIdAndBookIdOrderByIdAsc(Long userId, Long bookId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<OpenLoan> findByUserIdAndBookIdInOrderByIdAsc(Long userId, Collection<Long> bookIds);
+
+    // open loans not yet marked overdue, a page at a time in withdrawal id order
+    @Query("SELECT new com.moducation.library.api.dto.DueLoan(o.withdrawalId, o.userId, o.bookId, o.expectedReturnDate) " +
+            "FROM OpenLoan o, BookWithdrawal w WHERE w.id = o.withdrawalId AND w.overdue = false " +
+            "AND o.withdrawalId > :afterWithdrawalId ORDER BY o.withdrawalId")
+    List<DueLoan> findPendingAfter(@Param("afterWithdrawalId") Long afterWithdrawalId, Pageable pageable);
+
+    // the withdrawal id offset rows past afterWithdrawalId, null when fewer are left. Only reads the unique index
+    @Query(value = "SELECT withdrawal_id FROM open_loan WHERE withdrawal_id > :afterWithdrawalId " +
+            "ORDER BY withdrawal_id OFFSET :offset LIMIT 1", nativeQuery = true)
+    Long findWithdrawalIdAfter(@Param("afterWithdrawalId") long afterWithdrawalId, @Param("offset") int offset);
+
+    // withdrawals made before open loans were tracked, recognised by having no return yet
+    @Modifying
+    @Query(value = "INSERT INTO open_loan (id, user_id, book_id, withdrawal_id, expected_return_date) " +
+            "SELECT nextval('open_loan_seq'), w.user_id, h.book_id, w.id, w.expected_return_date " +
+            "FROM book_withdrawal w JOIN book_activity_history h ON h.id = w.book_activity_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM book_return r WHERE r.book_withdrawal_id = w.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM open_loan o WHERE o.withdrawal_id = w.id)", nativeQuery = true)
+    int backfillFromWithdrawals();
+}
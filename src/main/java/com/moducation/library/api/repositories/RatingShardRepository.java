@@ -0,0 +1,42 @@
+package com.moducation.library.api.repositories;
+
+import com.moducation.library.api.models.RatingShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RatingShardRepository extends JpaRepository<RatingShard, RatingShard.RatingShardId> {
+    @Modifying
+    @Query(value = "INSERT INTO rating_shard (book_id, shard, sum_delta, count_delta) VALUES (:bookId, :shard, :sumDelta, :countDelta) " +
+            "ON CONFLICT (book_id, shard) DO UPDATE SET sum_delta = rating_shard.sum_delta + EXCLUDED.sum_delta, " +
+            "count_delta = rating_shard.count_delta + EXCLUDED.count_delta", nativeQuery = true)
+    void addToShard(@Param("bookId") Long bookId, @Param("shard") Integer shard,
+                    @Param("sumDelta") Float sumDelta, @Param("countDelta") Float countDelta);
+
+    @Query("SELECT DISTINCT r.bookId FROM RatingShard r")
+    List<Long> findBookIdsWithPendingDeltas();
+
+    /**
+     * Rating totals of every rated book, including deltas still waiting in the shards.
+     */
+    @Query(value = "SELECT b.id AS bookId, " +
+            "COALESCE(b.sum_rating, 0) + COALESCE(SUM(s.sum_delta), 0) AS sumRating, " +
+            "COALESCE(b.number_of_ratings, 0) + COALESCE(SUM(s.count_delta), 0) AS numberOfRatings " +
+            "FROM book b LEFT JOIN rating_shard s ON s.book_id = b.id " +
+            "GROUP BY b.id, b.sum_rating, b.number_of_ratings " +
+            "HAVING COALESCE(b.number_of_ratings, 0) + COALESCE(SUM(s.count_delta), 0) > 0", nativeQuery = true)
+    List<RatingTotals> findRatingTotals();
+
+    interface RatingTotals {
+        Long getBookId();
+
+        Double getSumRating();
+
+        Double getNumberOfRatings();
+    }
+}
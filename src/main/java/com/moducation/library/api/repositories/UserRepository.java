@@ -1,11 +1,25 @@
 package com.moducation.library.api.repositories;
 
+import com.moducation.library.api.dto.AuthenticatedUser;
 import com.moducation.library.api.models.LibraryUser;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface UserRepository extends JpaRepository<LibraryUser, Long> {
     LibraryUser findByUsername(String username);
     LibraryUser findByEmail(String email);
+
+    @Query("SELECT new com.moducation.library.api.dto.AuthenticatedUser(u.id, u.role) FROM LibraryUser u WHERE u.id = :id")
+    AuthenticatedUser findPrincipal(@Param("id") Long id);
+
+    // only while the password was not changed in the meantime
+    @Transactional
+    @Modifying
+    @Query("UPDATE LibraryUser u SET u.password = :newHash WHERE u.id = :id AND u.password = :oldHash")
+    int replacePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
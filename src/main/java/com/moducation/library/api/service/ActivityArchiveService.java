@@ -0,0 +1,301 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.moducation.library.api.dto.ActivityExportRow;
+import com.moducation.library.api.models.ActivityArchive;
+import com.moducation.library.api.repositories.ActivityArchiveRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the monthly partitions of book_activity_history (see db/partition-book-activity-history.sql).
+ * Partitions are created {@code months-ahead} in advance. Once a month is older than {@code hot-months}
+ * its partition is written to a gzip NDJSON file in {@code archive-dir}, recorded in activity_archive,
+ * detached and dropped, so queries on recent activity only ever scan a few small partitions.
+ * Archived months can still be read back with {@link #exportArchived}, but everything else that reads
+ * the table no longer sees them: a user's loan history ({@link LoanHistoryService}) and the co-borrow
+ * recommendations rebuilt on startup ({@link CoBorrowIndex}) only cover the months still in the
+ * database. The trending leaderboard looks back fewer days than that. Withdrawals keep their book,
+ * it is copied onto the withdrawal row before the month's history goes.
+ * <p>
+ * Every instance runs maintenance on startup and on the cron, a Postgres advisory lock lets one of
+ * them do it at a time. Does nothing while the table is still a plain heap table, and on any
+ * database other than Postgres.
+ */
+@Slf4j
+@Service
+public class ActivityArchiveService {
+    static final String PARENT = "book_activity_history";
+    private static final String PARTITION_PREFIX = PARENT + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    // advisory lock key, shared by every instance
+    private static final long MAINTENANCE_LOCK = PARENT.hashCode();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final ActivityArchiveRepository activityArchiveRepository;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final int monthsAhead;
+    private final int hotMonths;
+    private final Path archiveDir;
+
+    // null until the database has been asked
+    private volatile Boolean postgres;
+
+    @Autowired
+    public ActivityArchiveService(JdbcTemplate jdbcTemplate,
+                                  TransactionOperations transactionOperations,
+                                  ActivityArchiveRepository activityArchiveRepository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${library.activity.months-ahead:2}") int monthsAhead,
+                                  @Value("${library.activity.hot-months:12}") int hotMonths,
+                                  @Value("${library.activity.archive-dir:./archive}") String archiveDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.activityArchiveRepository = activityArchiveRepository;
+        // dates always go out as yyyy-MM-dd, so archived rows can be range-filtered as plain strings
+        this.writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.reader = objectMapper.readerFor(JsonNode.class);
+        this.monthsAhead = monthsAhead;
+        this.hotMonths = hotMonths;
+        this.archiveDir = Path.of(archiveDir);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${library.activity.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        try {
+            if (!isPartitioned()) {
+                log.debug("{} is not partitioned, skipping partition maintenance", PARENT);
+                return;
+            }
+
+            // held by this connection while the work below runs on others
+            Boolean maintained = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+                try (PreparedStatement lock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                    lock.setLong(1, MAINTENANCE_LOCK);
+                    try (ResultSet resultSet = lock.executeQuery()) {
+                        if (!resultSet.next() || !resultSet.getBoolean(1)) {
+                            return false;
+                        }
+                    }
+                }
+
+                try {
+                    maintainPartitions();
+                    return true;
+                } finally {
+                    try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                        unlock.setLong(1, MAINTENANCE_LOCK);
+                        unlock.execute();
+                    }
+                }
+            });
+
+            if (!Boolean.TRUE.equals(maintained)) {
+                log.info("Another instance is maintaining {} partitions, skipping", PARENT);
+            }
+        } catch (DataAccessException | UncheckedIOException e) {
+            log.error("Activity partition maintenance failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void maintainPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+
+        // read under the lock, a month another instance archived meanwhile is no longer listed
+        YearMonth oldestHot = current.minusMonths(hotMonths);
+        for (YearMonth month : partitionMonths()) {
+            if (month.isBefore(oldestHot)) {
+                try {
+                    archive(month);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams archived activity rows dated within [from, to] as NDJSON, optionally only those of
+     * one user and/or one book. Only the files whose month overlaps the range are opened.
+     */
+    public long exportArchived(OutputStream out, boolean gzip, LocalDate from, LocalDate to, Long userId, Long bookId) throws IOException {
+        String fromDay = from.toString();
+        String toDay = to.toString();
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        long count = 0;
+
+        try (JsonGenerator generator = writer.createGenerator(target)) {
+            for (ActivityArchive archive : activityArchiveRepository.findOverlapping(Date.valueOf(from), Date.valueOf(to))) {
+                try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(Path.of(archive.getFilePath()))));
+                     MappingIterator<JsonNode> rows = reader.readValues(in)) {
+                    while (rows.hasNext()) {
+                        JsonNode row = rows.next();
+                        String day = row.path("date").asText();
+                        if (day.compareTo(fromDay) < 0 || day.compareTo(toDay) > 0
+                                || (userId != null && userId != row.path("userId").asLong())
+                                || (bookId != null && bookId != row.path("bookId").asLong())) {
+                            continue;
+                        }
+
+                        writer.writeValue(generator, row);
+                        generator.writeRaw('\n');
+                        count++;
+                    }
+                }
+                generator.flush();
+            }
+        }
+
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+
+        return count;
+    }
+
+    boolean isPartitioned() {
+        // the catalogs below only exist on Postgres, an embedded database never has partitions
+        if (!isPostgres()) {
+            return false;
+        }
+
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = ?)",
+                Boolean.class, PARENT);
+
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        }
+
+        return Boolean.TRUE.equals(postgres);
+    }
+
+    private List<YearMonth> partitionMonths() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                                "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ? ORDER BY c.relname",
+                        String.class, PARENT).stream()
+                .filter(name -> name.startsWith(PARTITION_PREFIX))
+                .map(name -> YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX))
+                .toList();
+    }
+
+    private void createPartition(YearMonth month) {
+        // names and bounds come from YearMonth, never from user input
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + PARENT
+                + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    private void archive(YearMonth month) throws IOException {
+        String partition = partitionName(month);
+        Files.createDirectories(archiveDir);
+        Path file = archiveDir.resolve(partition + ".ndjson.gz");
+        Path temporary = archiveDir.resolve(partition + ".ndjson.gz.tmp");
+
+        long start = System.currentTimeMillis();
+        long rows = writePartition(partition, temporary);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // the file is durable before the rows go; a crash in between just rewrites it next run
+        transactionOperations.executeWithoutResult(status -> {
+            activityArchiveRepository.save(ActivityArchive.builder()
+                    .partitionName(partition)
+                    .rangeStart(Date.valueOf(month.atDay(1)))
+                    .rangeEnd(Date.valueOf(month.plusMonths(1).atDay(1)))
+                    .filePath(file.toAbsolutePath().toString())
+                    .rowCount(rows).build());
+            // withdrawals only reach their book through the history row, keep it on the withdrawal
+            jdbcTemplate.update("UPDATE book_withdrawal w SET book_id = h.book_id FROM " + partition
+                    + " h WHERE h.id = w.book_activity_id AND w.book_id IS NULL");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        });
+
+        log.info("Archived {} ({} rows) to {} in {} ms", partition, rows, file, System.currentTimeMillis() - start);
+    }
+
+    private long writePartition(String partition, Path file) throws IOException {
+        long[] count = {0};
+
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), 64 * 1024);
+             JsonGenerator generator = writer.createGenerator(out)) {
+            // the cursor only streams inside a transaction, otherwise the driver buffers the whole partition
+            transactionOperations.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id, type, user_id, book_id, date FROM " + partition + " ORDER BY id");
+                statement.setFetchSize(1_000);
+                return statement;
+            }, resultSet -> {
+                try {
+                    writer.writeValue(generator, new ActivityExportRow(resultSet.getLong("id"), resultSet.getInt("type"),
+                            resultSet.getLong("user_id"), resultSet.getLong("book_id"), resultSet.getDate("date")));
+                    generator.writeRaw('\n');
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return count[0];
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+}
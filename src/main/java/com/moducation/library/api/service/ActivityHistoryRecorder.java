@@ -0,0 +1,97 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReserved;
+import com.moducation.library.api.events.BookReturned;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.BookActivityHistory;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.repositories.BookReservationRepository;
+import com.moducation.library.api.repositories.BookReturnRepository;
+import com.moducation.library.api.repositories.BookWithdrawalRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.modulith.events.ApplicationModuleListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+
+import static com.moducation.library.api.utils.Constants.RESERVE_CODE;
+import static com.moducation.library.api.utils.Constants.RETURN_CODE;
+import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
+
+/**
+ * Writes the activity history rows of checkouts, checkins and reservations after their transaction
+ * has committed, and links them to the withdrawal, return or reservation. Publications are kept in the event
+ * publication registry until a listener completes, so a row lost to a crash is written when
+ * the outstanding events are republished. A withdrawal, return or reservation that is already linked is
+ * skipped, so a republished event never writes a second row.
+ */
+@Component
+public class ActivityHistoryRecorder {
+    private final BookWithdrawalRepository bookWithdrawalRepository;
+    private final BookReturnRepository bookReturnRepository;
+    private final BookReservationRepository bookReservationRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ActivityHistoryRecorder(BookWithdrawalRepository bookWithdrawalRepository,
+                                   BookReturnRepository bookReturnRepository,
+                                   BookReservationRepository bookReservationRepository) {
+        this.bookWithdrawalRepository = bookWithdrawalRepository;
+        this.bookReturnRepository = bookReturnRepository;
+        this.bookReservationRepository = bookReservationRepository;
+    }
+
+    public ActivityHistoryRecorder(BookWithdrawalRepository bookWithdrawalRepository,
+                                   BookReturnRepository bookReturnRepository,
+                                   BookReservationRepository bookReservationRepository,
+                                   EntityManager entityManager) {
+        this(bookWithdrawalRepository, bookReturnRepository, bookReservationRepository);
+        this.entityManager = entityManager;
+    }
+
+    @ApplicationModuleListener
+    public void on(BookBorrowed event) {
+        if (bookWithdrawalRepository.existsByIdAndBookActivityIsNotNull(event.withdrawalId())) {
+            return;
+        }
+
+        BookActivityHistory activity = record(event.userId(), event.bookId(), WITHDRAWAL_CODE, event.borrowedOn());
+        bookWithdrawalRepository.linkActivity(event.withdrawalId(), activity);
+    }
+
+    @ApplicationModuleListener
+    public void on(BookReturned event) {
+        if (bookReturnRepository.existsByIdAndBookActivityHistoryIsNotNull(event.returnId())) {
+            return;
+        }
+
+        BookActivityHistory activity = record(event.userId(), event.bookId(), RETURN_CODE, event.returnedOn());
+        bookReturnRepository.linkActivity(event.returnId(), activity);
+    }
+
+    @ApplicationModuleListener
+    public void on(BookReserved event) {
+        if (bookReservationRepository.existsByIdAndBookActivityIsNotNull(event.reservationId())) {
+            return;
+        }
+
+        BookActivityHistory activity = record(event.userId(), event.bookId(), RESERVE_CODE, event.reservedOn());
+        bookReservationRepository.linkActivity(event.reservationId(), activity);
+    }
+
+    private BookActivityHistory record(Long userId, Long bookId, Integer type, Date date) {
+        BookActivityHistory activity = BookActivityHistory.builder()
+                .libraryUser(entityManager.getReference(LibraryUser.class, userId))
+                .book(entityManager.getReference(Book.class, bookId))
+                .type(type)
+                .date(date).build();
+        entityManager.persist(activity);
+
+        return activity;
+    }
+}
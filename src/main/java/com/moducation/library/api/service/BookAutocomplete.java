@@ -0,0 +1,499 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.Suggestion;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefix autocomplete over book titles and authors. Every word start of a title or author name is
+ * a key in a radix trie, where a chain of nodes with one child each is a single node with a
+ * multi-char edge, so the node count follows the number of keys rather than their length. Every
+ * node caches the best {@code max-suggestions} entries below it, ranked by rating weighted by
+ * number of ratings. A lookup is one walk down the prefix. {@link RatingAggregator} re-ranks a
+ * book through {@link #rerank} whenever its rating changes.
+ * <p>
+ * Writers are serialized and rebuild the cached lists bottom-up along the changed path only. A
+ * full rebuild places every entry first and then fills all cached lists in one bottom-up pass.
+ * Readers don't lock: children and cached lists are immutable arrays swapped through volatile fields.
+ */
+@Slf4j
+@Component
+public class BookAutocomplete {
+    public static final String TITLE = "title";
+    public static final String AUTHOR = "author";
+
+    // total, so equal scores and texts (two editions of one title) rank the same however the trie was built
+    private static final Comparator<Suggestion> RANKING =
+            Comparator.comparingDouble(Suggestion::score).reversed().thenComparing(Suggestion::text)
+                    .thenComparing(Suggestion::type)
+                    .thenComparing(Suggestion::bookId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final BookRepository bookRepository;
+    private final int maxSuggestions;
+
+    private volatile Node root = new Node("");
+    private final Map<Long, Suggestion> titles = new HashMap<>();
+    // book id -> normalized author, and normalized author -> book id -> book score
+    private final Map<Long, String> authorOfBook = new HashMap<>();
+    private final Map<String, Map<Long, Double>> booksByAuthor = new HashMap<>();
+    private final Map<String, Suggestion> authors = new HashMap<>();
+
+    private volatile boolean ready;
+
+    @Autowired
+    public BookAutocomplete(BookRepository bookRepository,
+                            @Value("${library.autocomplete.max-suggestions:10}") int maxSuggestions) {
+        this.bookRepository = bookRepository;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        rebuild(bookRepository.findAll());
+        log.info("Built autocomplete for {} titles and {} authors in {} ms",
+                titles.size(), authors.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int maxSuggestions() {
+        return maxSuggestions;
+    }
+
+    public synchronized void rebuild(Collection<Book> books) {
+        titles.clear();
+        authorOfBook.clear();
+        booksByAuthor.clear();
+        authors.clear();
+
+        // built off to the side, readers keep using the old trie until the swap
+        Node fresh = new Node("");
+        Map<String, String> authorLabels = new HashMap<>();
+        for (Book book : books) {
+            double score = score(book);
+            if (book.getTitle() != null) {
+                Suggestion title = new Suggestion(book.getTitle(), TITLE, book.getId(), score);
+                titles.put(book.getId(), title);
+                place(fresh, title);
+            }
+
+            if (book.getAuthor() != null) {
+                String author = normalize(book.getAuthor());
+                authorOfBook.put(book.getId(), author);
+                booksByAuthor.computeIfAbsent(author, a -> new HashMap<>()).put(book.getId(), score);
+                authorLabels.put(author, book.getAuthor());
+            }
+        }
+
+        // each author once, with the sum of all their books
+        authorLabels.forEach((author, label) -> {
+            Suggestion suggestion = authorSuggestion(label, booksByAuthor.get(author));
+            authors.put(author, suggestion);
+            place(fresh, suggestion);
+        });
+
+        computeTops(fresh);
+        root = fresh;
+        ready = true;
+    }
+
+    /**
+     * Adds or replaces a book. A book without rating fields (e.g. a partial update) keeps its previous score.
+     */
+    public synchronized void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+
+        Suggestion previous = titles.get(book.getId());
+        double score = book.getAvgRating() == null && previous != null ? previous.score() : score(book);
+        removeBook(root, book.getId());
+        addBook(root, book, score);
+    }
+
+    /**
+     * Moves a book and its author to the score of a new rating. Unknown books are left alone.
+     */
+    public synchronized void rerank(Long bookId, Float avgRating, Float numberOfRatings) {
+        Suggestion title = titles.get(bookId);
+        String author = authorOfBook.get(bookId);
+        double score = score(avgRating, numberOfRatings);
+        double previous = title != null ? title.score() : author != null ? booksByAuthor.get(author).get(bookId) : score;
+        if (previous == score) {
+            return;
+        }
+
+        if (title != null) {
+            delete(root, title);
+            Suggestion ranked = new Suggestion(title.text(), TITLE, bookId, score);
+            titles.put(bookId, ranked);
+            insert(root, ranked);
+        }
+        if (author != null) {
+            booksByAuthor.get(author).put(bookId, score);
+            replaceAuthor(root, author, authors.get(author).text());
+        }
+    }
+
+    public synchronized void remove(Long bookId) {
+        removeBook(root, bookId);
+    }
+
+    /**
+     * Up to {@code limit} suggestions whose title or author has a word starting with {@code prefix}, best first.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        // the prefix may end inside an edge, everything below that edge still matches
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            node = node.children.get(key.charAt(i));
+            if (node == null) {
+                return List.of();
+            }
+            int common = commonPrefix(node.label, key, i);
+            if (common < node.label.length() && i + common < key.length()) {
+                return List.of();
+            }
+            i += common;
+        }
+
+        Suggestion[] top = node.top;
+
+        return List.of(Arrays.copyOf(top, Math.min(limit, top.length)));
+    }
+
+    private void addBook(Node root, Book book, double score) {
+        if (book.getTitle() != null) {
+            Suggestion title = new Suggestion(book.getTitle(), TITLE, book.getId(), score);
+            titles.put(book.getId(), title);
+            insert(root, title);
+        }
+
+        if (book.getAuthor() != null) {
+            String author = normalize(book.getAuthor());
+            authorOfBook.put(book.getId(), author);
+            booksByAuthor.computeIfAbsent(author, a -> new HashMap<>()).put(book.getId(), score);
+            replaceAuthor(root, author, book.getAuthor());
+        }
+    }
+
+    private void removeBook(Node root, Long bookId) {
+        Suggestion title = titles.remove(bookId);
+        if (title != null) {
+            delete(root, title);
+        }
+
+        String author = authorOfBook.remove(bookId);
+        if (author != null) {
+            Map<Long, Double> books = booksByAuthor.get(author);
+            books.remove(bookId);
+            if (books.isEmpty()) {
+                booksByAuthor.remove(author);
+            }
+            replaceAuthor(root, author, authors.get(author).text());
+        }
+    }
+
+    // an author ranks by the sum of their books' scores, so it changes whenever one of their books does
+    private void replaceAuthor(Node root, String author, String label) {
+        Suggestion previous = authors.remove(author);
+        if (previous != null) {
+            delete(root, previous);
+        }
+
+        Map<Long, Double> books = booksByAuthor.get(author);
+        if (books != null) {
+            Suggestion suggestion = authorSuggestion(label, books);
+            authors.put(author, suggestion);
+            insert(root, suggestion);
+        }
+    }
+
+    private static Suggestion authorSuggestion(String label, Map<Long, Double> books) {
+        return new Suggestion(label, AUTHOR, null, books.values().stream().mapToDouble(Double::doubleValue).sum());
+    }
+
+    private void insert(Node root, Suggestion suggestion) {
+        for (String key : keys(suggestion.text())) {
+            refresh(place(root, key, suggestion));
+        }
+    }
+
+    // adds the entry under every key without touching any cached list, computeTops fills them afterwards
+    private void place(Node root, Suggestion suggestion) {
+        for (String key : keys(suggestion.text())) {
+            place(root, key, suggestion);
+        }
+    }
+
+    // walks down to the key's node, splitting an edge or adding a leaf where the key leaves the trie,
+    // and adds the entry there. Returns the path deepest first
+    private static Deque<Node> place(Node root, String key, Suggestion suggestion) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        path.push(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children = node.children.with(child);
+            } else {
+                int common = commonPrefix(child.label, key, i);
+                if (common < child.label.length()) {
+                    child = split(node, child, common);
+                }
+            }
+            node = child;
+            path.push(node);
+            i += node.label.length();
+        }
+
+        if (node.entries == null) {
+            node.entries = new ArrayList<>(1);
+        }
+        node.entries.add(suggestion);
+
+        return path;
+    }
+
+    // puts a node for the first length chars of the child's edge in front of a copy of the child.
+    // Readers already on the old child finish on it, new readers see both nodes once the parent swaps
+    private static Node split(Node parent, Node child, int length) {
+        Node tail = child.relabel(child.label.substring(length));
+        Node head = new Node(child.label.substring(0, length));
+        head.children = Children.EMPTY.with(tail);
+        head.top = tail.top;
+        parent.children = parent.children.with(head);
+
+        return head;
+    }
+
+    private void delete(Node root, Suggestion suggestion) {
+        for (String key : keys(suggestion.text())) {
+            Deque<Node> path = find(root, key);
+            Node node = path == null ? null : path.peek();
+            if (node == null || node.entries == null || !node.entries.remove(suggestion)) {
+                continue;
+            }
+            if (node.entries.isEmpty()) {
+                node.entries = null;
+            }
+
+            refresh(path);
+        }
+    }
+
+    // the path to the node of exactly this key, deepest first, or null if there is none
+    private static Deque<Node> find(Node root, String key) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        path.push(node);
+        int i = 0;
+        while (i < key.length()) {
+            node = node.children.get(key.charAt(i));
+            if (node == null || !key.startsWith(node.label, i)) {
+                return null;
+            }
+            path.push(node);
+            i += node.label.length();
+        }
+
+        return path;
+    }
+
+    // path is deepest first: recompute each cached list from the node's own entries and its children's lists.
+    // A child left empty is dropped, one left with neither entries nor a choice of children is merged into its only child
+    private void refresh(Deque<Node> path) {
+        Node child = null;
+        for (Node node : path) {
+            if (child != null && child.isEmpty()) {
+                node.children = node.children.without(child);
+            } else if (child != null && child.entries == null && child.children.nodes.length == 1) {
+                Node only = child.children.nodes[0];
+                node.children = node.children.with(only.relabel(child.label + only.label));
+            }
+
+            computeTop(node);
+            child = node;
+        }
+    }
+
+    // children come after their parent in pre-order, so walking it backwards fills every child's list first
+    private void computeTops(Node root) {
+        List<Node> preOrder = new ArrayList<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            preOrder.add(node);
+            for (Node child : node.children.nodes) {
+                stack.push(child);
+            }
+        }
+
+        for (int i = preOrder.size() - 1; i >= 0; i--) {
+            computeTop(preOrder.get(i));
+        }
+    }
+
+    private void computeTop(Node node) {
+        Set<Suggestion> candidates = node.entries == null ? new LinkedHashSet<>() : new LinkedHashSet<>(node.entries);
+        for (Node next : node.children.nodes) {
+            candidates.addAll(Arrays.asList(next.top));
+        }
+        node.top = candidates.stream().sorted(RANKING).limit(maxSuggestions).toArray(Suggestion[]::new);
+    }
+
+    // how many chars of label match key from position from on
+    private static int commonPrefix(String label, String key, int from) {
+        int length = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(from + i)) {
+            i++;
+        }
+
+        return i;
+    }
+
+    // every word start, so "hob" finds "The Hobbit"
+    private static Set<String> keys(String text) {
+        String normalized = normalize(text);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                keys.add(normalized.substring(i));
+            }
+        }
+
+        return keys;
+    }
+
+    static double score(Book book) {
+        return score(book.getAvgRating(), book.getNumberOfRatings());
+    }
+
+    private static double score(Float avgRating, Float numberOfRatings) {
+        if (avgRating == null || numberOfRatings == null) {
+            return 0;
+        }
+
+        return avgRating * Math.log1p(numberOfRatings);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Node {
+        private static final Suggestion[] NONE = new Suggestion[0];
+
+        // the chars of the edge from the parent, fixed once the node is reachable
+        private final String label;
+        private volatile Children children = Children.EMPTY;
+        private volatile Suggestion[] top = NONE;
+        // only touched by writers, null while the node has no entry of its own
+        private List<Suggestion> entries;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        // the same node under another edge, for splits and merges
+        private Node relabel(String label) {
+            Node node = new Node(label);
+            node.children = children;
+            node.top = top;
+            node.entries = entries;
+
+            return node;
+        }
+
+        private boolean isEmpty() {
+            return entries == null && children.nodes.length == 0;
+        }
+    }
+
+    /**
+     * Immutable sorted child table, keyed by the first char of each child's edge. Sorted chars plus a
+     * parallel array keep a node to two small arrays.
+     */
+    private record Children(char[] keys, Node[] nodes) {
+        private static final Children EMPTY = new Children(new char[0], new Node[0]);
+
+        private Node get(char key) {
+            int index = Arrays.binarySearch(keys, key);
+
+            return index < 0 ? null : nodes[index];
+        }
+
+        // adds the node, or replaces the child whose edge starts with the same char
+        private Children with(Node node) {
+            char key = node.label.charAt(0);
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                Node[] newNodes = nodes.clone();
+                newNodes[index] = node;
+
+                return new Children(keys, newNodes);
+            }
+
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newNodes = new Node[nodes.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(nodes, 0, newNodes, 0, index);
+            newKeys[index] = key;
+            newNodes[index] = node;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(nodes, index, newNodes, index + 1, nodes.length - index);
+
+            return new Children(newKeys, newNodes);
+        }
+
+        private Children without(Node node) {
+            for (int i = 0; i < nodes.length; i++) {
+                if (nodes[i] == node) {
+                    char[] newKeys = new char[keys.length - 1];
+                    Node[] newNodes = new Node[nodes.length - 1];
+                    System.arraycopy(keys, 0, newKeys, 0, i);
+                    System.arraycopy(nodes, 0, newNodes, 0, i);
+                    System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+                    System.arraycopy(nodes, i + 1, newNodes, i, nodes.length - i - 1);
+
+                    return new Children(newKeys, newNodes);
+                }
+            }
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.utils.AfterCommit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded read-through cache for {@link Book} lookups. Entries are evicted least recently used
+ * once {@code maxSize} is reached and expire {@code ttl} after they were loaded. Hit, miss and
+ * eviction counts are published through actuator as {@code library.book.cache.*}.
+ */
+@Component
+public class BookCache implements MeterBinder {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final LinkedHashMap<Long, Entry> entries;
+
+    @Autowired
+    public BookCache(@Value("${library.book-cache.max-size:10000}") int maxSize,
+                     @Value("${library.book-cache.ttl:10m}") Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    BookCache(int maxSize, Duration ttl, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > BookCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized Book get(Long id) {
+        Book book = lookup(id);
+        if (book == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return book;
+    }
+
+    /**
+     * Returns the cached books among {@code ids}. Ids missing from the result have to be loaded.
+     */
+    public synchronized Map<Long, Book> getAll(Collection<Long> ids) {
+        Map<Long, Book> found = new HashMap<>();
+        for (Long id : ids) {
+            Book book = lookup(id);
+            if (book != null) {
+                found.put(id, book);
+            }
+        }
+        hits.add(found.size());
+        misses.add(ids.size() - found.size());
+
+        return found;
+    }
+
+    public synchronized void put(Book book) {
+        if (book != null && book.getId() != null) {
+            entries.put(book.getId(), new Entry(book, nanoClock.getAsLong() + ttlNanos));
+        }
+    }
+
+    public synchronized void evict(Long id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Evicts now and once more after the surrounding transaction commits. A reader between the update
+     * and the commit would otherwise cache the old row again for the whole ttl.
+     */
+    public void evictAfterCommit(Long id) {
+        evict(id);
+        AfterCommit.run(() -> evict(id));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.book.cache.gets", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Book lookups served from the cache")
+                .register(registry);
+        FunctionCounter.builder("library.book.cache.gets", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Book lookups that had to go to the database")
+                .register(registry);
+        FunctionCounter.builder("library.book.cache.evictions", evictions, LongAdder::sum)
+                .description("Books dropped from the cache because of size or age")
+                .register(registry);
+        Gauge.builder("library.book.cache.size", this, BookCache::size)
+                .register(registry);
+    }
+
+    private Book lookup(Long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAt() > 0) {
+            entries.remove(id);
+            evictions.increment();
+            return null;
+        }
+
+        return entry.book();
+    }
+
+    private record Entry(Book book, long expiresAt) {
+    }
+}
@@ -0,0 +1,336 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Precomputed facets over the catalog. Every book gets a dense ordinal, and each genre, each author
+ * and "available" is a bitset of ordinals. Filters are ANDs of those bitsets and every facet count
+ * is the cardinality of one more AND, so nothing is grouped in the database per request.
+ * <p>
+ * Counts are disjunctive: the genre counts apply every filter except the genre one, and likewise
+ * for author and availability, so the UI can show what selecting another value would return. Only
+ * the {@code max-values} largest genre and author counts are returned; each count is one AND into a
+ * scratch bitset that is reused for every value, so no bitset is allocated per value.
+ */
+@Slf4j
+@Component
+public class BookFacetIndex {
+    public static final String GENRE = "genre";
+    public static final String AUTHOR = "author";
+    public static final String AVAILABILITY = "availability";
+
+    private final BookRepository bookRepository;
+    private final int maxValues;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private long[] bookIds = new long[1024];
+    private int[] availability = new int[1024];
+    private String[] genres = new String[1024];
+    private String[] authors = new String[1024];
+    private int nextOrdinal;
+
+    private final BitSet live = new BitSet();
+    private final BitSet available = new BitSet();
+    private final Map<String, Facet> byGenre = new HashMap<>();
+    private final Map<String, Facet> byAuthor = new HashMap<>();
+
+    private volatile boolean ready;
+
+    @Autowired
+    public BookFacetIndex(BookRepository bookRepository, @Value("${library.facets.max-values:20}") int maxValues) {
+        this.bookRepository = bookRepository;
+        this.maxValues = maxValues;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        rebuild(bookRepository.findAll());
+        log.info("Built facets for {} books in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            freeOrdinals.clear();
+            nextOrdinal = 0;
+            live.clear();
+            available.clear();
+            byGenre.clear();
+            byAuthor.clear();
+            for (Book book : books) {
+                add(book);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeBook(book.getId());
+            add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeBook(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the book's availability once the surrounding transaction commits.
+     */
+    public void adjustAvailability(long bookId, int delta) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                Integer ordinal = ordinals.get(bookId);
+                if (ordinal != null) {
+                    availability[ordinal] += delta;
+                    available.set(ordinal, availability[ordinal] > 0);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Ids of the books matching every given filter, in id order. A null or empty list means no
+     * filter on that facet; several values of one facet are ORed. {@code candidates}, when not null,
+     * restricts the search to those book ids (e.g. the hits of a title search).
+     */
+    public Result search(List<String> genreFilter, List<String> authorFilter, Boolean availableFilter,
+                         Collection<Long> candidates, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet base = (BitSet) live.clone();
+            if (candidates != null) {
+                base.and(toBits(candidates));
+            }
+
+            BitSet genreBits = union(byGenre, genreFilter);
+            BitSet authorBits = union(byAuthor, authorFilter);
+            BitSet availabilityBits = availableFilter == null ? null : availabilityBits(availableFilter);
+
+            BitSet matches = and(base, genreBits, authorBits, availabilityBits);
+
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            BitSet scratch = new BitSet(nextOrdinal);
+            facets.put(GENRE, counts(byGenre, and(base, null, authorBits, availabilityBits), scratch));
+            facets.put(AUTHOR, counts(byAuthor, and(base, genreBits, null, availabilityBits), scratch));
+
+            BitSet withoutAvailability = and(base, genreBits, authorBits, null);
+            Map<String, Integer> availabilityCounts = new LinkedHashMap<>();
+            int availableCount = and(withoutAvailability, available, null, null).cardinality();
+            availabilityCounts.put("available", availableCount);
+            availabilityCounts.put("unavailable", withoutAvailability.cardinality() - availableCount);
+            facets.put(AVAILABILITY, availabilityCounts);
+
+            List<Long> ids = new ArrayList<>(matches.cardinality());
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                ids.add(bookIds[ordinal]);
+            }
+            ids.sort(null);
+
+            int from = Math.min(offset, ids.size());
+            int to = Math.min(from + limit, ids.size());
+
+            return new Result(List.copyOf(ids.subList(from, to)), ids.size(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Book book) {
+        int ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+        if (ordinal >= bookIds.length) {
+            int capacity = bookIds.length * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            availability = Arrays.copyOf(availability, capacity);
+            genres = Arrays.copyOf(genres, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+        }
+
+        ordinals.put(book.getId(), ordinal);
+        bookIds[ordinal] = book.getId();
+        availability[ordinal] = book.getAvailability() == null ? 0 : book.getAvailability();
+        genres[ordinal] = book.getGenre();
+        authors[ordinal] = book.getAuthor();
+
+        live.set(ordinal);
+        available.set(ordinal, availability[ordinal] > 0);
+        facet(byGenre, book.getGenre()).set(ordinal);
+        facet(byAuthor, book.getAuthor()).set(ordinal);
+    }
+
+    private void removeBook(Long id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+
+        live.clear(ordinal);
+        available.clear(ordinal);
+        clearFacet(byGenre, genres[ordinal], ordinal);
+        clearFacet(byAuthor, authors[ordinal], ordinal);
+        genres[ordinal] = null;
+        authors[ordinal] = null;
+        freeOrdinals.push(ordinal);
+    }
+
+    private static BitSet facet(Map<String, Facet> facets, String value) {
+        return facets.computeIfAbsent(normalize(value), key -> new Facet(value == null ? "" : value, new BitSet())).ordinals();
+    }
+
+    private static void clearFacet(Map<String, Facet> facets, String value, int ordinal) {
+        String key = normalize(value);
+        Facet facet = facets.get(key);
+        if (facet != null) {
+            facet.ordinals().clear(ordinal);
+            if (facet.ordinals().isEmpty()) {
+                facets.remove(key);
+            }
+        }
+    }
+
+    private static BitSet union(Map<String, Facet> facets, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+
+        BitSet union = new BitSet();
+        for (String value : values) {
+            Facet facet = facets.get(normalize(value));
+            if (facet != null) {
+                union.or(facet.ordinals());
+            }
+        }
+
+        return union;
+    }
+
+    private BitSet availabilityBits(boolean wantAvailable) {
+        if (wantAvailable) {
+            return available;
+        }
+
+        BitSet unavailable = (BitSet) live.clone();
+        unavailable.andNot(available);
+
+        return unavailable;
+    }
+
+    private BitSet toBits(Collection<Long> ids) {
+        BitSet bits = new BitSet();
+        for (Long id : ids) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                bits.set(ordinal);
+            }
+        }
+
+        return bits;
+    }
+
+    // nulls are filters that don't apply
+    private static BitSet and(BitSet base, BitSet first, BitSet second, BitSet third) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet filter : new BitSet[]{first, second, third}) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+
+        return result;
+    }
+
+    // the maxValues largest counts, a min-heap keeps the smallest of them on top to be replaced
+    private Map<String, Integer> counts(Map<String, Facet> facets, BitSet within, BitSet scratch) {
+        Comparator<Map.Entry<String, Integer>> largestFirst =
+                Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(maxValues + 1, largestFirst.reversed());
+        for (Facet facet : facets.values()) {
+            scratch.clear();
+            scratch.or(facet.ordinals());
+            scratch.and(within);
+            int count = scratch.cardinality();
+            if (count > 0) {
+                top.add(Map.entry(facet.label(), count));
+                if (top.size() > maxValues) {
+                    top.poll();
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> largest = new ArrayList<>(top);
+        largest.sort(largestFirst);
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        largest.forEach(count -> counts.put(count.getKey(), count.getValue()));
+
+        return counts;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Facet(String label, BitSet ordinals) {
+    }
+
+    public record Result(List<Long> ids, int total, Map<String, Map<String, Integer>> facets) {
+    }
+}
@@ -0,0 +1,262 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moducation.library.api.dto.ImportReport;
+import com.moducation.library.api.dto.ImportReport.ImportError;
+import com.moducation.library.api.models.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams a CSV or NDJSON body into the book table. Rows are parsed one at a time and inserted in
+ * chunks, each chunk in its own transaction with JDBC batching, so a bad chunk doesn't undo the rest
+ * and memory only ever holds one chunk.
+ */
+@Slf4j
+@Service
+public class BookImportService {
+    private static final int MAX_REPORTED_ERRORS = 1_000;
+    private static final List<String> CSV_COLUMNS = List.of("title", "author", "genre", "availability");
+
+    private final TransactionOperations transactionOperations;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookFacetIndex bookFacetIndex;
+    private final BookAutocomplete bookAutocomplete;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public BookImportService(TransactionOperations transactionOperations,
+                             BookSearchIndex bookSearchIndex,
+                             BookFacetIndex bookFacetIndex,
+                             BookAutocomplete bookAutocomplete,
+                             ObjectMapper objectMapper,
+                             @Value("${library.import.chunk-size:1000}") int chunkSize) {
+        this.transactionOperations = transactionOperations;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookFacetIndex = bookFacetIndex;
+        this.bookAutocomplete = bookAutocomplete;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public BookImportService(TransactionOperations transactionOperations,
+                             BookSearchIndex bookSearchIndex,
+                             BookFacetIndex bookFacetIndex,
+                             BookAutocomplete bookAutocomplete,
+                             ObjectMapper objectMapper,
+                             int chunkSize,
+                             EntityManager entityManager) {
+        this(transactionOperations, bookSearchIndex, bookFacetIndex, bookAutocomplete, objectMapper, chunkSize);
+        this.entityManager = entityManager;
+    }
+
+    public ImportReport importCsv(InputStream in) throws IOException {
+        return run(in, new RowParser() {
+            private List<String> header;
+
+            @Override
+            public Book parse(String line) {
+                List<String> fields = parseCsvLine(line);
+                if (header == null) {
+                    header = fields.stream().map(field -> field.trim().toLowerCase(Locale.ROOT)).toList();
+                    if (!header.containsAll(CSV_COLUMNS)) {
+                        // without a usable header no row can be read, give up on the whole body
+                        throw new IllegalStateException("CSV header must contain " + CSV_COLUMNS + ".");
+                    }
+                    return null;
+                }
+                if (fields.size() != header.size()) {
+                    throw new IllegalArgumentException("Expected " + header.size() + " fields but found " + fields.size() + ".");
+                }
+
+                return toBook(fields.get(header.indexOf("title")),
+                        fields.get(header.indexOf("author")),
+                        fields.get(header.indexOf("genre")),
+                        fields.get(header.indexOf("availability")));
+            }
+        });
+    }
+
+    public ImportReport importNdjson(InputStream in) throws IOException {
+        return run(in, line -> {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Malformed JSON.");
+            }
+
+            return toBook(text(node, "title"), text(node, "author"), text(node, "genre"), text(node, "availability"));
+        });
+    }
+
+    private ImportReport run(InputStream in, RowParser parser) throws IOException {
+        long start = System.nanoTime();
+        Progress progress = new Progress();
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkRows = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    Book book = parser.parse(line);
+                    if (book == null) {
+                        continue;
+                    }
+                    progress.read++;
+                    chunk.add(book);
+                    chunkRows.add(lineNumber);
+                } catch (IllegalArgumentException e) {
+                    progress.read++;
+                    progress.fail(lineNumber, e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    flush(chunk, chunkRows, progress);
+                }
+            }
+        }
+        flush(chunk, chunkRows, progress);
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        double rowsPerSecond = elapsedMillis == 0 ? progress.imported : progress.imported * 1000.0 / elapsedMillis;
+        log.info("Imported {} of {} books in {} ms ({} rows/s)", progress.imported, progress.read, elapsedMillis, Math.round(rowsPerSecond));
+
+        return new ImportReport(progress.read, progress.imported, progress.failed, progress.errors, elapsedMillis, rowsPerSecond);
+    }
+
+    private void flush(List<Book> chunk, List<Long> chunkRows, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                for (Book book : chunk) {
+                    entityManager.persist(book);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+            chunk.forEach(bookSearchIndex::index);
+            chunk.forEach(bookFacetIndex::index);
+            chunk.forEach(bookAutocomplete::index);
+            progress.imported += chunk.size();
+        } catch (RuntimeException e) {
+            log.error("Import chunk failed: " + e.getMessage(), e);
+            for (Long row : chunkRows) {
+                progress.fail(row, "Chunk was rolled back: " + e.getMessage());
+            }
+        }
+
+        chunk.clear();
+        chunkRows.clear();
+    }
+
+    private static Book toBook(String title, String author, String genre, String availability) {
+        if (title == null || title.isBlank() || author == null || author.isBlank() || genre == null || genre.isBlank()) {
+            throw new IllegalArgumentException("title, author and genre are required.");
+        }
+
+        int copies;
+        try {
+            copies = Integer.parseInt(availability == null ? "" : availability.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("availability must be a whole number.");
+        }
+        if (copies < 0) {
+            throw new IllegalArgumentException("availability can't be negative.");
+        }
+
+        return Book.builder()
+                .title(title.trim())
+                .author(author.trim())
+                .genre(genre.trim())
+                .availability(copies).build();
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // RFC 4180 style: comma separated, fields may be quoted, "" is an escaped quote
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    private interface RowParser {
+        // null means the line was consumed without producing a book, like a header
+        Book parse(String line);
+    }
+
+    private static final class Progress {
+        private long read;
+        private long imported;
+        private long failed;
+        private final List<ImportError> errors = new ArrayList<>();
+
+        private void fail(long row, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportError(row, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram inverted index over the title, author and genre of every book.
+ * A substring query is answered by intersecting the posting lists of the key's trigrams
+ * and verifying the few remaining candidates, instead of a LIKE scan of the book table.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+    private static final int GRAM_SIZE = 3;
+    private static final List<String> FIELDS = List.of("title", "author", "genre");
+
+    private final BookRepository bookRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // field -> trigram -> ids of the books containing it
+    private final Map<String, Map<String, TreeSet<Long>>> postings = new HashMap<>();
+    // id -> normalized field values, in the same order as FIELDS
+    private final Map<Long, String[]> documents = new HashMap<>();
+
+    private volatile boolean ready;
+
+    @Autowired
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+        for (String field : FIELDS) {
+            postings.put(field, new HashMap<>());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        rebuild(bookRepository.findAll());
+        log.info("Indexed {} books for search in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean supports(String filter) {
+        return FIELDS.contains(filter);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.values().forEach(Map::clear);
+            for (Book book : books) {
+                add(book);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(book.getId());
+            add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the books whose {@code filter} field contains {@code key}, ignoring case.
+     */
+    public List<Long> search(String filter, String key) {
+        int fieldIndex = FIELDS.indexOf(filter);
+        if (fieldIndex < 0) {
+            throw new IllegalArgumentException("Unknown search field: " + filter);
+        }
+
+        String needle = normalize(key);
+
+        lock.readLock().lock();
+        try {
+            Collection<Long> candidates = needle.length() < GRAM_SIZE
+                    ? documents.keySet()
+                    : intersect(postings.get(filter), trigrams(needle));
+
+            List<Long> result = new ArrayList<>();
+            for (Long id : candidates) {
+                String value = documents.get(id)[fieldIndex];
+                if (value.contains(needle)) {
+                    result.add(id);
+                }
+            }
+            result.sort(Comparator.naturalOrder());
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Book book) {
+        String[] values = {normalize(book.getTitle()), normalize(book.getAuthor()), normalize(book.getGenre())};
+        documents.put(book.getId(), values);
+
+        for (int i = 0; i < FIELDS.size(); i++) {
+            Map<String, TreeSet<Long>> fieldPostings = postings.get(FIELDS.get(i));
+            for (String gram : trigrams(values[i])) {
+                fieldPostings.computeIfAbsent(gram, g -> new TreeSet<>()).add(book.getId());
+            }
+        }
+    }
+
+    private void removeDocument(Long id) {
+        String[] values = documents.remove(id);
+        if (values == null) {
+            return;
+        }
+
+        for (int i = 0; i < FIELDS.size(); i++) {
+            Map<String, TreeSet<Long>> fieldPostings = postings.get(FIELDS.get(i));
+            for (String gram : trigrams(values[i])) {
+                TreeSet<Long> ids = fieldPostings.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        fieldPostings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Collection<Long> intersect(Map<String, TreeSet<Long>> fieldPostings, Set<String> grams) {
+        List<TreeSet<Long>> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            TreeSet<Long> ids = fieldPostings.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(TreeSet::size));
+
+        List<Long> result = new ArrayList<>(lists.getFirst());
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            TreeSet<Long> other = lists.get(i);
+            result.removeIf(id -> !other.contains(id));
+        }
+
+        return result;
+    }
+
+    static Set<String> trigrams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM_SIZE));
+        }
+
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
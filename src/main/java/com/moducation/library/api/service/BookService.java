@@ -1,78 +1,214 @@
 package com.moducation.library.api.service;
 
+import com.moducation.library.api.dto.BatchItemResult;
+import com.moducation.library.api.dto.BookPage;
+import com.moducation.library.api.dto.FacetedSearchResult;
+import com.moducation.library.api.dto.LeaderboardEntry;
+import com.moducation.library.api.dto.LoanReceipt;
+import com.moducation.library.api.dto.QueuedReservation;
+import com.moducation.library.api.dto.Recommendation;
+import com.moducation.library.api.dto.ReservationReceipt;
+import com.moducation.library.api.dto.ReturnReceipt;
+import com.moducation.library.api.dto.Suggestion;
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReserved;
+import com.moducation.library.api.events.BookReturned;
 import com.moducation.library.api.exceptions.IncorrectFilterException;
 import com.moducation.library.api.models.Book;
-import com.moducation.library.api.models.BookActivityHistory;
+import com.moducation.library.api.models.BookReservation;
 import com.moducation.library.api.models.BookReturn;
 import com.moducation.library.api.models.BookWithdrawal;
 import com.moducation.library.api.models.LibraryUser;
-import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.models.OpenLoan;
 import com.moducation.library.api.repositories.BookRepository;
-import com.moducation.library.api.repositories.BookReturnRepository;
-import com.moducation.library.api.repositories.BookWithdrawalRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import com.moducation.library.api.utils.KeysetCursor;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.sql.Date;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 
+import static com.moducation.library.api.utils.Constants.DEFAULT_PAGE_SIZE;
+import static com.moducation.library.api.utils.Constants.MAX_PAGE_SIZE;
 import static com.moducation.library.api.utils.Constants.ONE_WEEK_IN_MILLIS;
 
 @Slf4j
 @Service
 public class BookService {
     private final BookRepository bookRepository;
-    private final BookActivityHistoryRepository bookActivityHistoryRepository;
-    private final BookWithdrawalRepository bookWithdrawalRepository;
-    private final BookReturnRepository bookReturnRepository;
+    private final OpenLoanRepository openLoanRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookCache bookCache;
+    private final Leaderboards leaderboards;
+    private final BookFacetIndex bookFacetIndex;
+    private final BookAutocomplete bookAutocomplete;
+    private final CoBorrowIndex coBorrowIndex;
+    private final ReservationQueue reservationQueue;
+    private final ApplicationEventPublisher eventPublisher;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     @Autowired
     public BookService(BookRepository bookRepository,
-                       BookActivityHistoryRepository bookActivityHistoryRepository,
-                       BookWithdrawalRepository bookWithdrawalRepository,
-                       BookReturnRepository bookReturnRepository) {
-        this.bookReturnRepository = bookReturnRepository;
-        this.bookWithdrawalRepository = bookWithdrawalRepository;
+                       OpenLoanRepository openLoanRepository,
+                       JdbcTemplate jdbcTemplate,
+                       BookSearchIndex bookSearchIndex,
+                       BookCache bookCache,
+                       Leaderboards leaderboards,
+                       BookFacetIndex bookFacetIndex,
+                       BookAutocomplete bookAutocomplete,
+                       CoBorrowIndex coBorrowIndex,
+                       ReservationQueue reservationQueue,
+                       ApplicationEventPublisher eventPublisher) {
+        this.openLoanRepository = openLoanRepository;
+        this.jdbcTemplate = jdbcTemplate;
         this.bookRepository = bookRepository;
-        this.bookActivityHistoryRepository = bookActivityHistoryRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookCache = bookCache;
+        this.leaderboards = leaderboards;
+        this.bookFacetIndex = bookFacetIndex;
+        this.bookAutocomplete = bookAutocomplete;
+        this.coBorrowIndex = coBorrowIndex;
+        this.reservationQueue = reservationQueue;
+        this.eventPublisher = eventPublisher;
     }
 
     public BookService(BookRepository bookRepository,
-                       BookActivityHistoryRepository bookActivityHistoryRepository,
-                       BookWithdrawalRepository bookWithdrawalRepository,
-                       BookReturnRepository bookReturnRepository,
+                       OpenLoanRepository openLoanRepository,
+                       JdbcTemplate jdbcTemplate,
+                       BookSearchIndex bookSearchIndex,
+                       BookCache bookCache,
+                       Leaderboards leaderboards,
+                       BookFacetIndex bookFacetIndex,
+                       BookAutocomplete bookAutocomplete,
+                       CoBorrowIndex coBorrowIndex,
+                       ReservationQueue reservationQueue,
+                       ApplicationEventPublisher eventPublisher,
                        EntityManager entityManager) {
-        this.bookReturnRepository = bookReturnRepository;
-        this.bookWithdrawalRepository = bookWithdrawalRepository;
+        this.openLoanRepository = openLoanRepository;
+        this.jdbcTemplate = jdbcTemplate;
         this.bookRepository = bookRepository;
-        this.bookActivityHistoryRepository = bookActivityHistoryRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookCache = bookCache;
+        this.leaderboards = leaderboards;
+        this.bookFacetIndex = bookFacetIndex;
+        this.bookAutocomplete = bookAutocomplete;
+        this.coBorrowIndex = coBorrowIndex;
+        this.reservationQueue = reservationQueue;
+        this.eventPublisher = eventPublisher;
         this.entityManager = entityManager;
     }
 
     public Book save(Book book) {
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        bookCache.evict(savedBook.getId());
+        bookSearchIndex.index(savedBook);
+        bookFacetIndex.index(savedBook);
+        bookAutocomplete.index(savedBook);
+
+        return savedBook;
     }
 
     public Book findById(Long id) {
-        return bookRepository.findById(id).orElse(null);
+        Book book = bookCache.get(id);
+        if (book == null) {
+            book = bookRepository.findById(id).orElse(null);
+            bookCache.put(book);
+        }
+
+        return book;
+    }
+
+    /**
+     * Multi-get through the cache: only the ids that miss are loaded, in a single query.
+     * Books come back in the order of {@code ids}; unknown ids are skipped.
+     */
+    public List<Book> findAllById(List<Long> ids) {
+        Map<Long, Book> books = new HashMap<>(bookCache.getAll(ids));
+        List<Long> missing = ids.stream().filter(id -> !books.containsKey(id)).toList();
+
+        if (!missing.isEmpty()) {
+            for (Book book : bookRepository.findAllById(missing)) {
+                bookCache.put(book);
+                books.put(book.getId(), book);
+            }
+        }
+
+        return ids.stream().map(books::get).filter(Objects::nonNull).toList();
     }
 
     public List<Book> findAll() {
         return bookRepository.findAll();
     }
 
+    /**
+     * Keyset pagination over the catalog, sorted by "id" or "title". Every page is a single
+     * index range scan, so deep pages cost the same as the first one.
+     */
+    public BookPage findPage(String sort, String cursor, Integer size) throws IncorrectFilterException {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.clamp(size, 1, MAX_PAGE_SIZE);
+        // one extra row tells us whether there is a next page
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        KeysetCursor after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+
+        if (after != null && !after.sort().equals(sort)) {
+            throw new IncorrectFilterException("Cursor was issued for a different sort.");
+        }
+
+        List<Book> books = switch (sort) {
+            case "id" -> after == null
+                    ? bookRepository.findFirstPageById(limit)
+                    : bookRepository.findPageById(after.id(), limit);
+            case "title" -> after == null
+                    ? bookRepository.findFirstPageByTitle(limit)
+                    : bookRepository.findPageByTitle(after.value(), after.id(), limit);
+            default -> throw new IncorrectFilterException("That sort doesn't exist.");
+        };
+
+        if (books.size() <= pageSize) {
+            return new BookPage(books, null);
+        }
+
+        List<Book> page = books.subList(0, pageSize);
+        Book last = page.getLast();
+        String sortValue = "title".equals(sort) ? last.getTitle() : null;
+
+        return new BookPage(List.copyOf(page), new KeysetCursor(sort, sortValue, last.getId()).encode());
+    }
+
     public void delete(Long id) {
         bookRepository.deleteById(id);
+        bookCache.evict(id);
+        bookSearchIndex.remove(id);
+        bookFacetIndex.remove(id);
+        bookAutocomplete.remove(id);
     }
 
     public List<Book> findBooksByFilter(String filter, String key) throws IncorrectFilterException {
+        if (bookSearchIndex.isReady() && bookSearchIndex.supports(filter)) {
+            return findAllById(bookSearchIndex.search(filter, key));
+        }
+
         return switch (filter) {
             case "title" -> bookRepository.findByTitle(key);
             case "author" -> bookRepository.findByAuthor(key);
@@ -81,8 +217,48 @@ public class BookService {
         };
     }
 
+    /**
+     * Combines genre, author and availability filters (values of one facet are ORed, facets are ANDed)
+     * with an optional title substring, and returns one page of books plus the facet counts.
+     */
+    public FacetedSearchResult facetedSearch(String title, List<String> genres, List<String> authors,
+                                             Boolean available, Integer offset, Integer limit) {
+        if (!bookFacetIndex.isReady()) {
+            throw new IllegalStateException("Search facets are still loading.");
+        }
+
+        List<Long> candidates = null;
+        if (title != null && !title.isBlank()) {
+            candidates = bookSearchIndex.isReady()
+                    ? bookSearchIndex.search("title", title)
+                    : bookRepository.findByTitle(title).stream().map(Book::getId).toList();
+        }
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        BookFacetIndex.Result result = bookFacetIndex.search(genres, authors, available, candidates,
+                offset == null ? 0 : Math.max(offset, 0), pageSize);
+
+        return new FacetedSearchResult(findAllById(result.ids()), result.total(), result.facets());
+    }
+
+    public List<Suggestion> autocomplete(String prefix, Integer limit) {
+        if (!bookAutocomplete.isReady()) {
+            throw new IllegalStateException("Autocomplete is still loading.");
+        }
+
+        int max = bookAutocomplete.maxSuggestions();
+
+        return bookAutocomplete.suggest(prefix, limit == null ? max : Math.clamp(limit, 1, max));
+    }
+
     public Book updateBook(Book book) {
-        return bookRepository.updateBook(book.getTitle(), book.getAuthor(), book.getGenre(), book.getAvailability(), book.getId());
+        Book updatedBook = bookRepository.updateBook(book.getTitle(), book.getAuthor(), book.getGenre(), book.getAvailability(), book.getId());
+        bookCache.evict(book.getId());
+        bookSearchIndex.index(book);
+        bookFacetIndex.index(book);
+        bookAutocomplete.index(book);
+
+        return updatedBook;
     }
 
     public boolean checkIfBookIsAvailable(long bookId) {
@@ -91,66 +267,262 @@ public class BookService {
         return bookAvailability != null && bookAvailability > 0;
     }
 
+    /**
+     * Borrows a book in one transaction: a conditional availability update plus the withdrawal and
+     * open loan inserts, which are flushed together at commit. The user and book are attached as
+     * references, so neither row is read. Everything else listens to {@link BookBorrowed} and runs
+     * after commit: leaderboards, recommendations and overdue tracking update memory right away, the
+     * history row is written asynchronously. Returns null when no copy is available.
+     */
     @Transactional
-    public void borrowBook(long bookId) {
-        Integer bookAvailability = bookRepository.getAvailability(bookId);
+    public LoanReceipt checkout(long userId, long bookId) {
+        if (bookRepository.takeAvailability(bookId, 1) == 0) {
+            return null;
+        }
 
-        bookRepository.updateAvailability(--bookAvailability, bookId);
+        return recordWithdrawal(userId, bookId);
     }
 
+    /**
+     * Borrows several books in one transaction. The books' rows are read and locked with one query,
+     * the copies to take are worked out from those counts and taken with a single JDBC batch, and the
+     * loan rows go out as batched inserts. Nothing depends on the row counts the driver reports for
+     * the batch, some drivers only answer {@link java.sql.Statement#SUCCESS_NO_INFO}. Each book gets its own
+     * result; unavailable books don't fail the others.
+     */
     @Transactional
-    public BookActivityHistory newActivity(Book book, LibraryUser user, Integer type) {
-        user = entityManager.merge(user);
-        book = entityManager.merge(book);
-        BookActivityHistory bookActivityHistory = BookActivityHistory.builder()
-                .libraryUser(user)
-                .book(book)
-                .type(type).build();
+    public List<BatchItemResult<LoanReceipt>> checkoutBatch(long userId, List<Long> bookIds) {
+        List<Long> distinctIds = bookIds.stream().distinct().toList();
+        Map<Long, Integer> available = new HashMap<>();
+        if (!distinctIds.isEmpty()) {
+            // locked in id order so two batches can't deadlock, the counts hold until commit
+            jdbcTemplate.query("SELECT id, availability FROM book WHERE id IN ("
+                            + String.join(", ", Collections.nCopies(distinctIds.size(), "?")) + ") ORDER BY id FOR UPDATE",
+                    resultSet -> {
+                        available.put(resultSet.getLong("id"), resultSet.getInt("availability"));
+                    }, distinctIds.toArray());
+        }
+
+        Map<Long, Integer> taken = new LinkedHashMap<>();
+        List<BatchItemResult<LoanReceipt>> results = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            if (available.getOrDefault(bookId, 0) > taken.getOrDefault(bookId, 0)) {
+                taken.merge(bookId, 1, Integer::sum);
+                results.add(BatchItemResult.success(bookId, recordWithdrawal(userId, bookId)));
+            } else {
+                results.add(BatchItemResult.failure(bookId, "book is not available."));
+            }
+        }
 
-        return bookActivityHistoryRepository.save(bookActivityHistory);
+        if (!taken.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE book SET availability = availability - ? WHERE id = ?",
+                    List.copyOf(taken.entrySet()), taken.size(), (statement, copies) -> {
+                        statement.setInt(1, copies.getValue());
+                        statement.setLong(2, copies.getKey());
+                    });
+        }
+
+        return results;
     }
 
+    /**
+     * Returns a book in one transaction. The withdrawal is found, and locked, through the open loan index
+     * rather than the activity history, and the history row is written by a {@link BookReturned}
+     * listener after commit. When the book is reserved the copy is lent to the oldest reservation
+     * instead of going back on the shelf. Returns null when the user has no open loan for the book.
+     */
     @Transactional
-    public BookWithdrawal newWithdrawal(BookActivityHistory bookActivity, LibraryUser user) {
-        user = entityManager.merge(user);
-        bookActivity = entityManager.merge(bookActivity);
-        long expectedReturnDateInMillis = System.currentTimeMillis() + ONE_WEEK_IN_MILLIS;
-        Date expectedReturnDate = new Date(expectedReturnDateInMillis);
+    public ReturnReceipt checkin(long userId, long bookId) {
+        OpenLoan openLoan = openLoanRepository.findFirstByUserIdAndBookIdOrderByIdAsc(userId, bookId);
+        if (openLoan == null) {
+            return null;
+        }
 
-        BookWithdrawal bookWithdrawal = BookWithdrawal.builder()
-                .libraryUser(user)
-                .bookActivity(bookActivity)
-                .expectedReturnDate(expectedReturnDate).build();
+        if (!handOff(bookId)) {
+            bookRepository.releaseAvailability(bookId, 1);
+        }
+        openLoanRepository.delete(openLoan);
 
-        return bookWithdrawalRepository.save(bookWithdrawal);
+        return recordReturn(openLoan);
     }
 
+    /**
+     * Returns several books in one transaction: one query finds and locks all the open loans, availability
+     * is released with a single JDBC batch and the loans are deleted with a single statement.
+     * Copies of reserved books are lent to their oldest reservation instead of being released.
+     */
     @Transactional
-    public void returnBook(long bookId) {
-        int bookAvailability = bookRepository.getAvailability(bookId);
-        bookAvailability++;
-        bookRepository.updateAvailability(bookAvailability, bookId);
+    public List<BatchItemResult<ReturnReceipt>> checkinBatch(long userId, List<Long> bookIds) {
+        Map<Long, Deque<OpenLoan>> loansByBook = new HashMap<>();
+        for (OpenLoan openLoan : openLoanRepository.findByUserIdAndBookIdInOrderByIdAsc(userId, bookIds)) {
+            loansByBook.computeIfAbsent(openLoan.getBookId(), id -> new ArrayDeque<>()).add(openLoan);
+        }
+
+        List<OpenLoan> returned = new ArrayList<>();
+        Map<Long, Integer> shelved = new TreeMap<>();
+        List<BatchItemResult<ReturnReceipt>> results = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            Deque<OpenLoan> loans = loansByBook.get(bookId);
+            OpenLoan openLoan = loans == null ? null : loans.poll();
+            if (openLoan == null) {
+                results.add(BatchItemResult.failure(bookId, "You have not borrowed this book."));
+            } else {
+                returned.add(openLoan);
+                if (!handOff(bookId)) {
+                    shelved.merge(bookId, 1, Integer::sum);
+                }
+                results.add(BatchItemResult.success(bookId, recordReturn(openLoan)));
+            }
+        }
+
+        if (!shelved.isEmpty()) {
+            // one row per book in id order, the order checkoutBatch locks them in, so batches can't deadlock
+            jdbcTemplate.batchUpdate("UPDATE book SET availability = availability + ? WHERE id = ?",
+                    List.copyOf(shelved.entrySet()), shelved.size(), (statement, copies) -> {
+                        statement.setInt(1, copies.getValue());
+                        statement.setLong(2, copies.getKey());
+                    });
+        }
+        if (!returned.isEmpty()) {
+            openLoanRepository.deleteAllInBatch(returned);
+        }
+
+        return results;
+    }
+
+    /**
+     * Queues the user for a book that has no copy left. Returns null when a copy is available, the
+     * user should borrow it instead. The reservation is lent the first copy returned after everyone
+     * ahead of it. A copy returned between the availability check and the commit still goes back on
+     * the shelf, the reservation then waits for the next return. The history row is written after
+     * commit by {@link ActivityHistoryRecorder}.
+     */
+    @Transactional
+    public ReservationReceipt reserve(long userId, long bookId) {
+        if (checkIfBookIsAvailable(bookId)) {
+            return null;
+        }
+        if (reservationQueue.isQueued(userId, bookId)) {
+            throw new IllegalArgumentException("You have already reserved this book.");
+        }
+
+        int ahead = reservationQueue.waiting(bookId);
+        BookReservation reservation = reservationQueue.add(BookReservation.builder()
+                .libraryUser(entityManager.getReference(LibraryUser.class, userId))
+                .book(entityManager.getReference(Book.class, bookId))
+                .active(true).build());
+        eventPublisher.publishEvent(new BookReserved(reservation.getId(), userId, bookId,
+                new Date(reservation.getDate().getTime())));
+
+        return new ReservationReceipt(reservation.getId(), bookId, userId, ahead);
     }
 
     @Transactional
-    public BookReturn newReturn(BookActivityHistory bookActivity, LibraryUser user, Book book, BookWithdrawal bookWithdrawal) {
-        user = entityManager.merge(user);
-        book = entityManager.merge(book);
+    public boolean cancelReservation(long userId, long bookId) {
+        return reservationQueue.cancel(userId, bookId);
+    }
+
+    // lends a returned copy to the oldest reservation of the book, availability stays as it is
+    private boolean handOff(long bookId) {
+        QueuedReservation next = reservationQueue.claimNext(bookId);
+        if (next == null) {
+            return false;
+        }
+
+        // the caller has counted the copy back in the facet index, the new loan takes it out again
+        recordWithdrawal(next.userId(), bookId);
+
+        return true;
+    }
+
+    private LoanReceipt recordWithdrawal(long userId, long bookId) {
+        long now = System.currentTimeMillis();
+        BookWithdrawal bookWithdrawal = BookWithdrawal.builder()
+                .libraryUser(entityManager.getReference(LibraryUser.class, userId))
+                .book(entityManager.getReference(Book.class, bookId))
+                .expectedReturnDate(new Date(now + ONE_WEEK_IN_MILLIS)).build();
+        entityManager.persist(bookWithdrawal);
+
+        entityManager.persist(OpenLoan.builder()
+                .userId(userId)
+                .bookId(bookId)
+                .withdrawalId(bookWithdrawal.getId())
+                .expectedReturnDate(bookWithdrawal.getExpectedReturnDate()).build());
 
+        bookCache.evictAfterCommit(bookId);
+        bookFacetIndex.adjustAvailability(bookId, -1);
+        eventPublisher.publishEvent(new BookBorrowed(bookWithdrawal.getId(), userId, bookId,
+                bookWithdrawal.getExpectedReturnDate(), new Date(now)));
+
+        return new LoanReceipt(bookWithdrawal.getId(), bookId, userId, bookWithdrawal.getExpectedReturnDate());
+    }
+
+    private ReturnReceipt recordReturn(OpenLoan openLoan) {
+        long now = System.currentTimeMillis();
+        boolean wasOverdue = now > openLoan.getExpectedReturnDate().getTime();
         BookReturn bookReturn = BookReturn.builder()
-                .libraryUser(user)
-                .book(book)
-                .bookActivityHistory(bookActivity)
-                .bookWithdrawal(bookWithdrawal).build();
+                .libraryUser(entityManager.getReference(LibraryUser.class, openLoan.getUserId()))
+                .book(entityManager.getReference(Book.class, openLoan.getBookId()))
+                .bookWithdrawal(entityManager.getReference(BookWithdrawal.class, openLoan.getWithdrawalId()))
+                .wasOverdue(wasOverdue).build();
+        entityManager.persist(bookReturn);
+
+        bookCache.evictAfterCommit(openLoan.getBookId());
+        bookFacetIndex.adjustAvailability(openLoan.getBookId(), 1);
+        eventPublisher.publishEvent(new BookReturned(bookReturn.getId(), openLoan.getWithdrawalId(),
+                openLoan.getUserId(), openLoan.getBookId(), wasOverdue, new Date(now)));
+
+        return new ReturnReceipt(bookReturn.getId(), openLoan.getWithdrawalId(), openLoan.getBookId(), openLoan.getUserId(), wasOverdue);
+    }
+
+    public List<LeaderboardEntry> topRated(Integer limit) {
+        return toEntries(leaderboards.topRated(leaderboardSize(limit)));
+    }
 
-        return bookReturnRepository.save(bookReturn);
+    public List<LeaderboardEntry> trending(Integer limit) {
+        return toEntries(leaderboards.trending(leaderboardSize(limit)));
     }
 
-    public BookActivityHistory getBookActivityHistory(Integer type, LibraryUser libraryUser, Book book) {
-        return bookActivityHistoryRepository.findBookActivityForWithdrawal(type, libraryUser, book);
+    /**
+     * Books most often borrowed by the patrons who borrowed {@code bookId}, read from the co-borrow matrix.
+     */
+    public List<Recommendation> alsoBorrowed(long bookId, Integer limit) {
+        List<Map.Entry<Long, Integer>> neighbors = coBorrowIndex.neighbors(bookId, leaderboardSize(limit));
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : findAllById(neighbors.stream().map(Map.Entry::getKey).toList())) {
+            books.put(book.getId(), book);
+        }
+
+        List<Recommendation> recommendations = new ArrayList<>(neighbors.size());
+        for (Map.Entry<Long, Integer> neighbor : neighbors) {
+            Book book = books.get(neighbor.getKey());
+            if (book != null) {
+                recommendations.add(new Recommendation(book, neighbor.getValue()));
+            }
+        }
+
+        return recommendations;
     }
 
-    public BookWithdrawal getBookWithdrawal(BookActivityHistory bookActivityHistory, LibraryUser libraryUser) {
-        return bookWithdrawalRepository.findByBookActivityHistoryAndLibraryUser(bookActivityHistory, libraryUser);
+    private static int leaderboardSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+    }
+
+    // books come from the cache, a board whose book was just deleted simply skips it
+    private List<LeaderboardEntry> toEntries(List<Leaderboards.RankedSet.Ranked> ranking) {
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : findAllById(ranking.stream().map(Leaderboards.RankedSet.Ranked::bookId).toList())) {
+            books.put(book.getId(), book);
+        }
+
+        List<LeaderboardEntry> entries = new ArrayList<>(ranking.size());
+        for (Leaderboards.RankedSet.Ranked ranked : ranking) {
+            Book book = books.get(ranked.bookId());
+            if (book != null) {
+                entries.add(new LeaderboardEntry(entries.size() + 1, book, ranked.score()));
+            }
+        }
+
+        return entries;
     }
 }
@@ -0,0 +1,392 @@
+package com.moducation.library.api.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP sessions kept in a {@link SessionStore} shared by all nodes, with a near-cache on each node.
+ * <p>
+ * A session read within {@code near-cache-ttl} of being loaded or saved on this node is served
+ * from memory. A request that only moved last access forward, which is almost every request, does
+ * not write anything: last access is collected per session and written every
+ * {@code touch-flush-millis}, one write per session however many requests it made. A session is
+ * written right away when it is new, its attributes, timeout or id changed. Only the attributes a
+ * request changed are applied, on top of the latest version of the session, and the store only
+ * accepts the write from that version. When another request, on this node or another one, saved
+ * in between, the session is read again and the changes applied to it, so concurrent requests of
+ * one user never undo each other's changes. A session deleted in between, e.g. by a logout, stays
+ * deleted.
+ * <p>
+ * Another node sees a change once its cached copy is older than {@code near-cache-ttl}, which also
+ * bounds how long a session invalidated on another node is still accepted here.
+ */
+@Slf4j
+@Component
+public class CachingSessionRepository implements SessionRepository<CachingSessionRepository.CachedSession>, MeterBinder {
+    private static final int MAX_SAVE_ATTEMPTS = 10;
+
+    private final SessionStore sessionStore;
+    private final Duration nearCacheTtl;
+    private final int maxCached;
+    private final Duration maxInactiveInterval;
+    private final Clock clock;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    // session id -> latest last access not written yet
+    private final Map<String, Instant> pendingTouches = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder touches = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    @Autowired
+    public CachingSessionRepository(SessionStore sessionStore,
+                                    @Value("${library.sessions.near-cache-ttl:5s}") Duration nearCacheTtl,
+                                    @Value("${library.sessions.near-cache-max-size:100000}") int maxCached,
+                                    @Value("${server.servlet.session.timeout:30m}") Duration maxInactiveInterval) {
+        this(sessionStore, nearCacheTtl, maxCached, maxInactiveInterval, Clock.systemUTC());
+    }
+
+    CachingSessionRepository(SessionStore sessionStore, Duration nearCacheTtl, int maxCached,
+                             Duration maxInactiveInterval, Clock clock) {
+        this.sessionStore = sessionStore;
+        this.nearCacheTtl = nearCacheTtl;
+        this.maxCached = maxCached;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.clock = clock;
+    }
+
+    @Override
+    public CachedSession createSession() {
+        Instant now = clock.instant();
+        MapSession session = new MapSession();
+        session.setCreationTime(now);
+        session.setLastAccessedTime(now);
+        session.setMaxInactiveInterval(maxInactiveInterval);
+
+        return new CachedSession(session, null, clock);
+    }
+
+    @Override
+    public void save(CachedSession session) {
+        String id = session.getId();
+        if (!session.isChanged()) {
+            Instant lastAccessed = session.getLastAccessedTime();
+            pendingTouches.merge(id, lastAccessed, (pending, latest) -> latest.isAfter(pending) ? latest : pending);
+            cache.computeIfPresent(id, (key, entry) -> entry.withLastAccessed(lastAccessed));
+            coalesced.increment();
+            return;
+        }
+
+        String storedId = session.storedId;
+        boolean stored = id.equals(storedId);
+        if (storedId != null && !stored) {
+            // changed id, the session moves to the new one
+            deleteById(storedId);
+        }
+
+        Instant now = clock.instant();
+        for (int attempt = 1; ; attempt++) {
+            MapSession latest = null;
+            long version = 0;
+            if (stored) {
+                // this node's copy on the first attempt, after a conflict the one another save left
+                Entry entry = attempt == 1 ? cache.get(id) : null;
+                if (entry != null && entry.isFresh(now, nearCacheTtl)) {
+                    latest = entry.session();
+                    version = entry.version();
+                } else {
+                    SessionStore.Stored current = sessionStore.load(id);
+                    if (current == null) {
+                        // deleted meanwhile, a logout must not be undone by a request that was still running
+                        cache.remove(id);
+                        pendingTouches.remove(id);
+                        return;
+                    }
+                    latest = current.session();
+                    version = current.version();
+                }
+            }
+
+            MapSession merged = latest != null ? session.applyTo(latest) : new MapSession(session.delegate);
+            Instant pending = pendingTouches.get(id);
+            if (pending != null && pending.isAfter(merged.getLastAccessedTime())) {
+                merged.setLastAccessedTime(pending);
+            }
+
+            if (sessionStore.save(merged, version)) {
+                saves.increment();
+                if (pending != null) {
+                    pendingTouches.remove(id, pending);
+                }
+                cache(id, merged, version + 1, now);
+                break;
+            }
+
+            conflicts.increment();
+            if (attempt == MAX_SAVE_ATTEMPTS) {
+                throw new IllegalStateException("Session kept changing, gave up saving it after " + attempt + " attempts");
+            }
+            // a new session whose id is taken meanwhile is merged into the stored one like any other
+            stored = true;
+        }
+        session.saved();
+    }
+
+    @Override
+    public CachedSession findById(String id) {
+        Instant now = clock.instant();
+        Entry entry = cache.get(id);
+
+        MapSession session;
+        if (entry != null && entry.isFresh(now, nearCacheTtl)) {
+            hits.increment();
+            session = new MapSession(entry.session());
+        } else {
+            misses.increment();
+            SessionStore.Stored stored = sessionStore.load(id);
+            if (stored == null) {
+                cache.remove(id);
+                pendingTouches.remove(id);
+                return null;
+            }
+
+            // copied, a deserialized session has no id generator for changeSessionId
+            session = new MapSession(stored.session());
+
+            Instant pending = pendingTouches.get(id);
+            if (pending != null && pending.isAfter(session.getLastAccessedTime())) {
+                session.setLastAccessedTime(pending);
+            }
+            cache(id, new MapSession(session), stored.version(), now);
+        }
+
+        if (SessionStore.isExpired(session, now)) {
+            deleteById(id);
+            return null;
+        }
+
+        return new CachedSession(session, id, clock);
+    }
+
+    // keeps the newest version, a slower request of the same session never replaces a later save
+    private void cache(String id, MapSession session, long version, Instant now) {
+        cache.compute(id, (key, entry) -> {
+            if (entry != null && entry.version() > version) {
+                return entry;
+            }
+            return entry != null || cache.size() < maxCached ? new Entry(session, version, now) : null;
+        });
+    }
+
+    @Override
+    public void deleteById(String id) {
+        cache.remove(id);
+        pendingTouches.remove(id);
+        sessionStore.delete(id);
+    }
+
+    /**
+     * Writes the collected last access times, one write per session.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${library.sessions.touch-flush-millis:10000}")
+    public void flush() {
+        for (Map.Entry<String, Instant> pending : pendingTouches.entrySet()) {
+            String id = pending.getKey();
+            Instant lastAccessed = pending.getValue();
+            if (!pendingTouches.remove(id, lastAccessed)) {
+                // touched again meanwhile, the later time is written on the next flush
+                continue;
+            }
+
+            try {
+                sessionStore.touch(id, lastAccessed);
+                touches.increment();
+            } catch (Exception e) {
+                log.warn("Could not store last access of a session, retrying on the next flush", e);
+                pendingTouches.merge(id, lastAccessed, (later, failed) -> later.isAfter(failed) ? later : failed);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.sessions.cleanup-millis:300000}")
+    public void cleanup() {
+        Instant now = clock.instant();
+        cache.values().removeIf(entry -> !entry.isFresh(now, nearCacheTtl));
+
+        int deleted = sessionStore.deleteExpired(now);
+        if (deleted > 0) {
+            log.info("Deleted {} expired sessions", deleted);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.sessions.cache", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("library.sessions.cache", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("library.sessions.writes", saves, LongAdder::sum)
+                .tag("kind", "save")
+                .register(registry);
+        FunctionCounter.builder("library.sessions.writes", touches, LongAdder::sum)
+                .tag("kind", "touch")
+                .register(registry);
+        FunctionCounter.builder("library.sessions.conflicts", conflicts, LongAdder::sum)
+                .description("Saves that found the session changed by another request and merged again")
+                .register(registry);
+        FunctionCounter.builder("library.sessions.coalesced", coalesced, LongAdder::sum)
+                .description("Saves that only moved last access and were left to the next flush")
+                .register(registry);
+        Gauge.builder("library.sessions.cache.size", cache, Map::size)
+                .register(registry);
+    }
+
+    private record Entry(MapSession session, long version, Instant loadedAt) {
+        boolean isFresh(Instant now, Duration ttl) {
+            return now.isBefore(loadedAt.plus(ttl));
+        }
+
+        Entry withLastAccessed(Instant lastAccessed) {
+            if (!lastAccessed.isAfter(session.getLastAccessedTime())) {
+                return this;
+            }
+            MapSession copy = new MapSession(session);
+            copy.setLastAccessedTime(lastAccessed);
+            return new Entry(copy, version, loadedAt);
+        }
+    }
+
+    /**
+     * A session as one request sees it. Remembers what the request changed, so saving it only has
+     * to write when something other than last access changed.
+     */
+    public static final class CachedSession implements Session {
+        private final MapSession delegate;
+        private final Clock clock;
+        // id it is stored under, null until first saved
+        private String storedId;
+        // attribute name -> new value, null when removed
+        private final Map<String, Object> changedAttributes = new LinkedHashMap<>();
+        private boolean maxInactiveIntervalChanged;
+
+        CachedSession(MapSession delegate, String storedId, Clock clock) {
+            this.delegate = delegate;
+            this.storedId = storedId;
+            this.clock = clock;
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+            changedAttributes.put(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            delegate.removeAttribute(attributeName);
+            changedAttributes.put(attributeName, null);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            delegate.setMaxInactiveInterval(interval);
+            maxInactiveIntervalChanged = true;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return SessionStore.isExpired(delegate, clock.instant());
+        }
+
+        boolean isChanged() {
+            return storedId == null || !storedId.equals(getId()) || maxInactiveIntervalChanged
+                    || !changedAttributes.isEmpty();
+        }
+
+        // a copy of the session with this request's changes on top
+        MapSession applyTo(MapSession latest) {
+            MapSession merged = new MapSession(latest);
+            changedAttributes.forEach(merged::setAttribute);
+            if (maxInactiveIntervalChanged) {
+                merged.setMaxInactiveInterval(getMaxInactiveInterval());
+            }
+            if (getLastAccessedTime().isAfter(merged.getLastAccessedTime())) {
+                merged.setLastAccessedTime(getLastAccessedTime());
+            }
+            return merged;
+        }
+
+        void saved() {
+            storedId = getId();
+            changedAttributes.clear();
+            maxInactiveIntervalChanged = false;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.BorrowPair;
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import com.moducation.library.api.utils.LongIntHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
+
+/**
+ * Item-item co-occurrence matrix for "patrons who borrowed this also borrowed". Row {@code a} maps
+ * every book {@code b} to the number of patrons who borrowed both. Rows are primitive long -> int
+ * maps and are cut back to the {@code neighbors} strongest entries whenever they reach twice that,
+ * so memory stays bounded by books * neighbors no matter how much history there is.
+ * <p>
+ * The matrix is built on startup from the distinct (patron, book) withdrawal pairs, with patrons
+ * split across threads that each fill a partial matrix, and then kept current on every withdrawal.
+ * Withdrawals that commit while it is being built are applied again once it is swapped in.
+ */
+@Slf4j
+@Component
+public class CoBorrowIndex {
+    private final BookActivityHistoryRepository bookActivityHistoryRepository;
+    private final int neighbors;
+    private final int maxUserHistory;
+
+    private final Map<Long, LongIntHashMap> matrix = new HashMap<>();
+    // patron -> distinct books borrowed, the most recent maxUserHistory of them
+    private final Map<Long, UserHistory> histories = new HashMap<>();
+    // borrows seen while load() builds a new matrix, null otherwise
+    private List<BorrowPair> pendingReplay;
+
+    private volatile boolean ready;
+
+    @Autowired
+    public CoBorrowIndex(BookActivityHistoryRepository bookActivityHistoryRepository,
+                         @Value("${library.recommendations.neighbors:50}") int neighbors,
+                         @Value("${library.recommendations.max-user-history:500}") int maxUserHistory) {
+        this.bookActivityHistoryRepository = bookActivityHistoryRepository;
+        this.neighbors = neighbors;
+        this.maxUserHistory = maxUserHistory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            // a borrow committed after the query's snapshot would be lost by the swap
+            pendingReplay = new ArrayList<>();
+        }
+        try {
+            rebuild(bookActivityHistoryRepository.findDistinctBorrowPairs(WITHDRAWAL_CODE));
+        } finally {
+            synchronized (this) {
+                pendingReplay = null;
+            }
+        }
+        log.info("Built co-borrow matrix for {} books from {} patrons in {} ms",
+                books(), patrons(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild(Collection<BorrowPair> pairs) {
+        Map<Long, UserHistory> byUser = new HashMap<>();
+        for (BorrowPair pair : pairs) {
+            byUser.computeIfAbsent(pair.userId(), id -> new UserHistory(maxUserHistory)).add(pair.bookId());
+        }
+
+        // each worker counts the pairs of its share of patrons, the partial rows are summed afterwards
+        int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), byUser.size() / 1000 + 1));
+        List<List<UserHistory>> shares = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            shares.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (UserHistory history : byUser.values()) {
+            shares.get(next++ % workers).add(history);
+        }
+
+        List<Map<Long, LongIntHashMap>> partials = shares.parallelStream().map(CoBorrowIndex::countPairs).toList();
+
+        Map<Long, LongIntHashMap> merged = new HashMap<>();
+        for (Map<Long, LongIntHashMap> partial : partials) {
+            partial.forEach((book, row) -> {
+                LongIntHashMap target = merged.get(book);
+                if (target == null) {
+                    merged.put(book, row);
+                } else {
+                    row.forEach(target::addTo);
+                }
+            });
+        }
+        merged.values().forEach(row -> row.retainTop(neighbors));
+
+        synchronized (this) {
+            matrix.clear();
+            matrix.putAll(merged);
+            histories.clear();
+            histories.putAll(byUser);
+            if (pendingReplay != null) {
+                // borrows already in the query are skipped by addBorrow
+                List<BorrowPair> replay = pendingReplay;
+                pendingReplay = null;
+                replay.forEach(pair -> addBorrow(pair.userId(), pair.bookId()));
+            }
+            ready = true;
+        }
+    }
+
+    /**
+     * Counts one withdrawal once the surrounding transaction commits. Only the first time a patron
+     * borrows a book changes the matrix.
+     */
+    public void recordBorrow(long userId, long bookId) {
+        AfterCommit.run(() -> addBorrow(userId, bookId));
+    }
+
+    // not kept in the event publication registry, a lost update is recovered by the rebuild on startup
+    @EventListener
+    public void on(BookBorrowed event) {
+        recordBorrow(event.userId(), event.bookId());
+    }
+
+    /**
+     * Up to {@code limit} book ids most often borrowed by patrons who also borrowed {@code bookId},
+     * strongest first, each with the number of shared patrons.
+     */
+    public synchronized List<Map.Entry<Long, Integer>> neighbors(long bookId, int limit) {
+        LongIntHashMap row = matrix.get(bookId);
+        if (row == null) {
+            return List.of();
+        }
+
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(row.size());
+        row.forEach((book, count) -> entries.add(Map.entry(book, count)));
+        entries.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    public synchronized int books() {
+        return matrix.size();
+    }
+
+    public synchronized int patrons() {
+        return histories.size();
+    }
+
+    private synchronized void addBorrow(long userId, long bookId) {
+        if (pendingReplay != null) {
+            pendingReplay.add(new BorrowPair(userId, bookId));
+        }
+
+        UserHistory history = histories.computeIfAbsent(userId, id -> new UserHistory(maxUserHistory));
+        if (history.contains(bookId)) {
+            return;
+        }
+
+        for (int i = 0; i < history.size; i++) {
+            long other = history.books[i];
+            increment(bookId, other);
+            increment(other, bookId);
+        }
+        history.add(bookId);
+    }
+
+    private void increment(long book, long other) {
+        LongIntHashMap row = matrix.computeIfAbsent(book, id -> new LongIntHashMap());
+        row.addTo(other, 1);
+        if (row.size() >= 2 * neighbors) {
+            row.retainTop(neighbors);
+        }
+    }
+
+    private static Map<Long, LongIntHashMap> countPairs(List<UserHistory> share) {
+        Map<Long, LongIntHashMap> partial = new HashMap<>();
+        for (UserHistory history : share) {
+            for (int i = 0; i < history.size; i++) {
+                LongIntHashMap row = partial.computeIfAbsent(history.books[i], id -> new LongIntHashMap());
+                for (int j = 0; j < history.size; j++) {
+                    if (i != j) {
+                        row.addTo(history.books[j], 1);
+                    }
+                }
+            }
+        }
+
+        return partial;
+    }
+
+    /**
+     * Distinct books of one patron in borrow order. Past capacity the oldest book is dropped, which
+     * only means it no longer pairs with later borrows.
+     */
+    private static final class UserHistory {
+        private final int capacity;
+        private long[] books = new long[4];
+        private int size;
+
+        private UserHistory(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private boolean contains(long bookId) {
+            for (int i = 0; i < size; i++) {
+                if (books[i] == bookId) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void add(long bookId) {
+            if (contains(bookId)) {
+                return;
+            }
+            if (size == capacity) {
+                System.arraycopy(books, 1, books, 0, size - 1);
+                size--;
+            } else if (size == books.length) {
+                books = Arrays.copyOf(books, Math.min(capacity, books.length * 2));
+            }
+            books[size++] = bookId;
+        }
+    }
+}
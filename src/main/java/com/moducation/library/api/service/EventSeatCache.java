@@ -0,0 +1,73 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.EventSeats;
+import com.moducation.library.api.repositories.EventRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache of the seat count per event. Registrations made here adjust the cached count
+ * once they commit, so reads during a flash crowd never reach the database. Entries expire
+ * {@code ttl} after they were loaded, which bounds how long changes made by another instance go unseen.
+ */
+@Component
+public class EventSeatCache {
+    private final EventRepository eventRepository;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public EventSeatCache(EventRepository eventRepository,
+                          @Value("${library.events.seat-cache-ttl:5s}") Duration ttl) {
+        this(eventRepository, ttl, System::nanoTime);
+    }
+
+    EventSeatCache(EventRepository eventRepository, Duration ttl, LongSupplier nanoClock) {
+        this.eventRepository = eventRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * The event's capacity and seats taken, or null when there is no such event.
+     */
+    public EventSeats get(long eventId) {
+        Entry entry = entries.get(eventId);
+        if (entry != null && nanoClock.getAsLong() - entry.expiresAt() <= 0) {
+            return entry.seats();
+        }
+
+        EventSeats seats = eventRepository.findSeats(eventId);
+        if (seats == null) {
+            entries.remove(eventId);
+        } else {
+            entries.put(eventId, new Entry(seats, nanoClock.getAsLong() + ttlNanos));
+        }
+
+        return seats;
+    }
+
+    /**
+     * Moves the cached count by {@code delta} once the surrounding transaction commits.
+     */
+    public void adjust(long eventId, int delta) {
+        AfterCommit.run(() -> entries.computeIfPresent(eventId, (id, entry) -> new Entry(
+                new EventSeats(id, entry.seats().capacity(), entry.seats().seatsTaken() + delta), entry.expiresAt())));
+    }
+
+    public void evict(long eventId) {
+        entries.remove(eventId);
+    }
+
+    private record Entry(EventSeats seats, long expiresAt) {
+    }
+}
@@ -0,0 +1,163 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.EventRegistration;
+import com.moducation.library.api.dto.EventSeats;
+import com.moducation.library.api.dto.WaitlistEntry;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.Event;
+import com.moducation.library.api.repositories.EventRegisterRepository;
+import com.moducation.library.api.repositories.EventRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_EVENT;
+
+/**
+ * Registration for author events with a fixed number of seats.
+ * <p>
+ * A seat is claimed with one conditional update of {@code event.seats_taken}, so hundreds of
+ * patrons registering in the same second queue on a single row update each instead of counting
+ * registrations, and the event is never overbooked. Registering twice returns the first
+ * registration, the unique (user, event) constraint settles racing requests of the same user.
+ * Once the event is full new registrations join a waitlist, and a seat given back goes to the
+ * oldest waitlisted registration.
+ * <p>
+ * Joining the waitlist and giving a seat back both hold the event row lock, so a seat freed while
+ * someone joins the waitlist is never left empty.
+ */
+@Service
+public class EventService {
+    private final EventRepository eventRepository;
+    private final EventRegisterRepository eventRegisterRepository;
+    private final EventSeatCache eventSeatCache;
+    private final BookService bookService;
+    private final NotificationService notificationService;
+
+    @Autowired
+    public EventService(EventRepository eventRepository,
+                        EventRegisterRepository eventRegisterRepository,
+                        EventSeatCache eventSeatCache,
+                        BookService bookService,
+                        NotificationService notificationService) {
+        this.eventRepository = eventRepository;
+        this.eventRegisterRepository = eventRegisterRepository;
+        this.eventSeatCache = eventSeatCache;
+        this.bookService = bookService;
+        this.notificationService = notificationService;
+    }
+
+    /**
+     * Stores a new event for the book. Returns null when there is no such book.
+     */
+    public Event create(Long bookId, String description, int capacity) {
+        Book book = bookService.findById(bookId);
+        if (book == null) {
+            return null;
+        }
+
+        return eventRepository.save(Event.builder()
+                .book(book)
+                .description(description)
+                .capacity(capacity).build());
+    }
+
+    /**
+     * The event's capacity and seats taken, served from {@link EventSeatCache}. Null when there is no such event.
+     */
+    public EventSeats seats(long eventId) {
+        return eventSeatCache.get(eventId);
+    }
+
+    /**
+     * Registers the user for the event, on a seat while there is one and on the waitlist after that.
+     * Returns the existing registration when the user is already registered, null when there is no such event.
+     */
+    @Transactional
+    public EventRegistration register(long userId, long eventId) {
+        Boolean registered = eventRegisterRepository.findWaitlisted(userId, eventId);
+        if (registered != null) {
+            return new EventRegistration(eventId, userId, registered);
+        }
+
+        boolean seated = eventRepository.takeSeat(eventId) == 1;
+        if (!seated) {
+            // with the row held, a seat given back right now is either taken here or goes through the waitlist we join
+            if (eventRepository.lockById(eventId) == null) {
+                return null;
+            }
+            seated = eventRepository.takeSeat(eventId) == 1;
+        }
+
+        if (seated) {
+            eventSeatCache.adjust(eventId, 1);
+        }
+
+        if (eventRegisterRepository.insertIfAbsent(userId, eventId, !seated) == 0) {
+            // a concurrent request of the same user registered first. Our seat update still holds the event row,
+            // so the seat goes back the way a cancelled one does
+            if (seated) {
+                giveBackSeat(eventId);
+            }
+
+            Boolean waitlisted = eventRegisterRepository.findWaitlisted(userId, eventId);
+            if (waitlisted == null) {
+                // and was cancelled before we could read it, nothing is registered now
+                return register(userId, eventId);
+            }
+            return new EventRegistration(eventId, userId, waitlisted);
+        }
+
+        return new EventRegistration(eventId, userId, !seated);
+    }
+
+    /**
+     * Cancels the user's registration. A seat given back goes to the oldest waitlisted registration.
+     * Returns false when the user was not registered.
+     */
+    @Transactional
+    public boolean cancel(long userId, long eventId) {
+        if (eventRepository.lockById(eventId) == null) {
+            return false;
+        }
+
+        Boolean waitlisted = eventRegisterRepository.findWaitlisted(userId, eventId);
+        if (waitlisted == null || eventRegisterRepository.deleteRegistration(userId, eventId) == 0) {
+            return false;
+        }
+
+        if (!waitlisted) {
+            giveBackSeat(eventId);
+        }
+
+        return true;
+    }
+
+    // hands a seat to the oldest waitlisted registration, or frees it when nobody waits. The event row must be locked
+    private void giveBackSeat(long eventId) {
+        WaitlistEntry next = promoteNext(eventId);
+        if (next == null) {
+            eventRepository.releaseSeat(eventId);
+            eventSeatCache.adjust(eventId, -1);
+        } else {
+            AfterCommit.run(() -> notificationService.notify(next.userId(), NOTIFICATION_EVENT,
+                    "A seat opened up for event " + eventId + ", you are registered."));
+        }
+    }
+
+    private WaitlistEntry promoteNext(long eventId) {
+        List<WaitlistEntry> waitlist;
+        do {
+            waitlist = eventRegisterRepository.findWaitlist(eventId, PageRequest.of(0, 1));
+            if (!waitlist.isEmpty() && eventRegisterRepository.promote(waitlist.get(0).registrationId()) == 1) {
+                return waitlist.get(0);
+            }
+        } while (!waitlist.isEmpty());
+
+        return null;
+    }
+}
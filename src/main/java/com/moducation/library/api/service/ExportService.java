@@ -0,0 +1,101 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.moducation.library.api.dto.ActivityExportRow;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.repositories.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams whole tables as newline-delimited JSON. Rows are read through a server-side cursor
+ * and written one at a time, so memory use does not depend on the size of the table.
+ */
+@Slf4j
+@Service
+public class ExportService {
+    private static final int FLUSH_EVERY = 1_000;
+
+    private final BookRepository bookRepository;
+    private final BookActivityHistoryRepository bookActivityHistoryRepository;
+    private final ObjectWriter writer;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ExportService(BookRepository bookRepository,
+                         BookActivityHistoryRepository bookActivityHistoryRepository,
+                         ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.bookActivityHistoryRepository = bookActivityHistoryRepository;
+        this.writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public ExportService(BookRepository bookRepository,
+                         BookActivityHistoryRepository bookActivityHistoryRepository,
+                         ObjectMapper objectMapper,
+                         EntityManager entityManager) {
+        this(bookRepository, bookActivityHistoryRepository, objectMapper);
+        this.entityManager = entityManager;
+    }
+
+    @Transactional
+    public long exportBooks(OutputStream out, boolean gzip) throws IOException {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            // read-only entities are still tracked by the persistence context, drop each one once written
+            return write(books, out, gzip, entityManager::detach);
+        }
+    }
+
+    @Transactional
+    public long exportActivityHistory(OutputStream out, boolean gzip) throws IOException {
+        try (Stream<ActivityExportRow> rows = bookActivityHistoryRepository.streamAllForExport()) {
+            return write(rows, out, gzip, row -> { });
+        }
+    }
+
+    private <T> long write(Stream<T> rows, OutputStream out, boolean gzip, Consumer<T> afterWrite) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        long count = 0;
+
+        try (JsonGenerator generator = writer.createGenerator(target)) {
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                T row = iterator.next();
+                writer.writeValue(generator, row);
+                generator.writeRaw('\n');
+                afterWrite.accept(row);
+
+                if (++count % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        log.info("Exported {} rows", count);
+
+        return count;
+    }
+}
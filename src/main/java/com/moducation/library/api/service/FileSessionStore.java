@@ -0,0 +1,155 @@
+package com.moducation.library.api.service;
+
+import org.springframework.session.MapSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Sessions as one file each in a local directory, for running without a database. Nodes share
+ * sessions when they share the directory. A file holds the session's version followed by the
+ * serialized session and is replaced with an atomic move, so a reader never sees half of it.
+ * Writes hold a lock on the directory's lock file, so checking the version and replacing the file
+ * is atomic across the nodes sharing it, and a touch never undoes a save made while it ran.
+ */
+public class FileSessionStore implements SessionStore {
+    private static final String SUFFIX = ".session";
+    private static final String LOCK_FILE = ".lock";
+    // session ids come from a cookie, anything that is not a generated id never reaches the file system
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private final Path directory;
+    private final Path lockFile;
+
+    public FileSessionStore(Path directory) {
+        this.directory = directory;
+        this.lockFile = directory.resolve(LOCK_FILE);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create session directory " + directory, e);
+        }
+    }
+
+    @Override
+    public Stored load(String id) {
+        Path file = file(id);
+        if (file == null) {
+            return null;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(file);
+            return new Stored(SessionStore.deserialize(Arrays.copyOfRange(data, Long.BYTES, data.length)),
+                    ByteBuffer.wrap(data).getLong());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read session file " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized boolean save(MapSession session, long expectedVersion) {
+        Path file = file(session.getId());
+        if (file == null) {
+            throw new IllegalArgumentException("Invalid session id");
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            Stored stored = load(session.getId());
+            if ((stored == null ? 0 : stored.version()) != expectedVersion) {
+                return false;
+            }
+            write(file, session, expectedVersion + 1);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write session file " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void touch(String id, Instant lastAccessedTime) {
+        Path file = file(id);
+        if (file == null) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            Stored stored = load(id);
+            if (stored != null && stored.session().getLastAccessedTime().isBefore(lastAccessedTime)) {
+                stored.session().setLastAccessedTime(lastAccessedTime);
+                write(file, stored.session(), stored.version());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write session file " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        Path file = file(id);
+        if (file == null) {
+            return;
+        }
+
+        // locked, so a save that already checked the version cannot bring the file back
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete session file " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized int deleteExpired(Instant now) {
+        int deleted = 0;
+        // one lock for the whole sweep, it only runs every few minutes
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock();
+             DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Stored stored = load(name.substring(0, name.length() - SUFFIX.length()));
+                if (stored != null && SessionStore.isExpired(stored.session(), now)) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not clean up session directory " + directory, e);
+        }
+        return deleted;
+    }
+
+    private void write(Path file, MapSession session, long version) throws IOException {
+        byte[] data = SessionStore.serialize(session);
+        Path temp = Files.createTempFile(directory, "write", ".tmp");
+        Files.write(temp, ByteBuffer.allocate(Long.BYTES + data.length).putLong(version).put(data).array());
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path file(String id) {
+        return id != null && VALID_ID.matcher(id).matches() ? directory.resolve(id + SUFFIX) : null;
+    }
+}
@@ -0,0 +1,248 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.FineAssessmentRun;
+import com.moducation.library.api.repositories.FineAssessmentRunRepository;
+import com.moducation.library.api.repositories.FineRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_FINE;
+
+/**
+ * Nightly fine assessment. Every open loan whose expected return date is before the assessed day
+ * gets one fine of {@code daily-rate} for that day.
+ * <p>
+ * The open loans are cut into chunks of {@code chunk-size} consecutive withdrawal ids. Up to
+ * {@code parallelism} chunks run at once, each as a single INSERT ... SELECT in its own transaction.
+ * The unique (withdrawal, day) constraint makes every chunk idempotent. After each chunk the
+ * checkpoint in fine_assessment_run moves past the longest prefix of finished chunks, so a pass that
+ * crashed resumes there on the next run and at worst repeats a few chunks that insert nothing.
+ * Days missed while the job was not running are assessed first, up to {@code catch-up-days} back.
+ * Every fine a chunk inserted is queued as a notification for its user once the chunk has committed.
+ */
+@Slf4j
+@Service
+public class FineAssessmentJob implements MeterBinder {
+    private final FineRepository fineRepository;
+    private final OpenLoanRepository openLoanRepository;
+    private final FineAssessmentRunRepository fineAssessmentRunRepository;
+    private final TransactionOperations transactionOperations;
+    private final NotificationService notificationService;
+    private final float dailyRate;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int catchUpDays;
+    private final Clock clock;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder finesIssued = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder chunkNanos = new LongAdder();
+    private volatile double lastRunFinesPerSecond;
+    private volatile double lastRunSeconds;
+
+    @Autowired
+    public FineAssessmentJob(FineRepository fineRepository,
+                             OpenLoanRepository openLoanRepository,
+                             FineAssessmentRunRepository fineAssessmentRunRepository,
+                             TransactionOperations transactionOperations,
+                             NotificationService notificationService,
+                             @Value("${library.fines.daily-rate:0.25}") float dailyRate,
+                             @Value("${library.fines.chunk-size:5000}") int chunkSize,
+                             @Value("${library.fines.parallelism:4}") int parallelism,
+                             @Value("${library.fines.catch-up-days:7}") int catchUpDays) {
+        this(fineRepository, openLoanRepository, fineAssessmentRunRepository, transactionOperations, notificationService,
+                dailyRate, chunkSize, parallelism, catchUpDays, Clock.systemDefaultZone());
+    }
+
+    FineAssessmentJob(FineRepository fineRepository,
+                      OpenLoanRepository openLoanRepository,
+                      FineAssessmentRunRepository fineAssessmentRunRepository,
+                      TransactionOperations transactionOperations,
+                      NotificationService notificationService,
+                      float dailyRate,
+                      int chunkSize,
+                      int parallelism,
+                      int catchUpDays,
+                      Clock clock) {
+        this.fineRepository = fineRepository;
+        this.openLoanRepository = openLoanRepository;
+        this.fineAssessmentRunRepository = fineAssessmentRunRepository;
+        this.transactionOperations = transactionOperations;
+        this.notificationService = notificationService;
+        this.dailyRate = dailyRate;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.catchUpDays = catchUpDays;
+        this.clock = clock;
+    }
+
+    @Scheduled(cron = "${library.fines.cron:0 0 1 * * *}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Fine assessment is already running");
+            return;
+        }
+
+        try {
+            for (LocalDate day : daysToAssess(LocalDate.now(clock))) {
+                assess(day);
+            }
+        } catch (RuntimeException e) {
+            log.error("Fine assessment failed: " + e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Assesses fines for one day, resuming from its checkpoint. Does nothing for a day already finished.
+     */
+    public void assess(LocalDate day) {
+        Date assessedFor = Date.valueOf(day);
+        FineAssessmentRun run = fineAssessmentRunRepository.findById(assessedFor).orElseGet(() -> FineAssessmentRun.builder()
+                .assessedFor(assessedFor)
+                .lastWithdrawalId(0L)
+                .finesIssued(0L)
+                .startedAt(new Timestamp(clock.millis())).build());
+        if (run.getFinishedAt() != null) {
+            return;
+        }
+        if (run.getLastWithdrawalId() > 0) {
+            log.info("Resuming fine assessment for {} after withdrawal {}", day, run.getLastWithdrawalId());
+        }
+
+        long start = System.nanoTime();
+        long issued = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        try {
+            long from = run.getLastWithdrawalId();
+            boolean more = true;
+            while (more || !inFlight.isEmpty()) {
+                // a few chunks queued ahead keep every worker busy while the checkpoint catches up
+                while (more && inFlight.size() < parallelism * 2) {
+                    Long to = openLoanRepository.findWithdrawalIdAfter(from, chunkSize - 1);
+                    long chunkFrom = from;
+                    long chunkTo = to == null ? Long.MAX_VALUE : to;
+                    inFlight.add(executor.submit(() -> assessChunk(assessedFor, chunkFrom, chunkTo)));
+                    from = chunkTo;
+                    more = to != null;
+                }
+
+                // oldest first, so the checkpoint never moves past a chunk that is still running
+                Chunk chunk = inFlight.poll().get();
+                issued += chunk.issued();
+                run.setLastWithdrawalId(chunk.to());
+                run.setFinesIssued(run.getFinesIssued() + chunk.issued());
+                run = fineAssessmentRunRepository.save(run);
+            }
+
+            run.setFinishedAt(new Timestamp(clock.millis()));
+            fineAssessmentRunRepository.save(run);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Fine assessment for " + day + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fine assessment for " + day + " failed after withdrawal " + run.getLastWithdrawalId(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        lastRunSeconds = seconds;
+        lastRunFinesPerSecond = issued / seconds;
+        log.info("Assessed fines for {}: {} issued in {} s ({} per second)",
+                day, issued, String.format("%.1f", seconds), Math.round(issued / seconds));
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.fines.issued", finesIssued, LongAdder::sum)
+                .description("Fines inserted by the nightly assessment")
+                .register(registry);
+        FunctionTimer.builder("library.fines.chunks", this, job -> job.chunks.sum(), job -> job.chunkNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Chunks of open loans assessed and the time spent on them")
+                .register(registry);
+        Gauge.builder("library.fines.last.run.rate", this, job -> job.lastRunFinesPerSecond)
+                .description("Fines per second of the last finished pass")
+                .register(registry);
+        Gauge.builder("library.fines.last.run.duration", this, job -> job.lastRunSeconds)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    List<LocalDate> daysToAssess(LocalDate today) {
+        // the first run ever only assesses today, it does not fine the past week in one go
+        LocalDate first = today;
+        FineAssessmentRun last = fineAssessmentRunRepository.findTopByFinishedAtIsNotNullOrderByAssessedForDesc();
+        if (last != null) {
+            first = last.getAssessedFor().toLocalDate().plusDays(1);
+            LocalDate oldest = today.minusDays(catchUpDays - 1);
+            if (first.isBefore(oldest)) {
+                first = oldest;
+            }
+        }
+
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = first; !day.isAfter(today); day = day.plusDays(1)) {
+            days.add(day);
+        }
+
+        return days;
+    }
+
+    private Chunk assessChunk(Date day, long from, long to) {
+        long start = System.nanoTime();
+        List<FineRepository.IssuedFine> issued = transactionOperations.execute(status -> fineRepository.assessRange(day, dailyRate, from, to));
+        int count = issued == null ? 0 : issued.size();
+
+        // committed by now, a chunk that rolled back tells nobody
+        if (issued != null) {
+            for (FineRepository.IssuedFine fine : issued) {
+                notificationService.notify(fine.getUserId(), NOTIFICATION_FINE, String.format(Locale.ROOT,
+                        "You were fined %.2f for a book that was still not returned on %s.", fine.getAmount(), day));
+            }
+        }
+
+        finesIssued.add(count);
+        chunks.increment();
+        chunkNanos.add(System.nanoTime() - start);
+
+        return new Chunk(to, count);
+    }
+
+    private record Chunk(long to, int issued) {
+    }
+}
@@ -0,0 +1,60 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.HttpSessionRecord;
+import com.moducation.library.api.repositories.HttpSessionRecordRepository;
+import org.springframework.session.MapSession;
+
+import java.time.Instant;
+
+/**
+ * Sessions in the {@code http_session} table, shared by every node using the database.
+ */
+public class JpaSessionStore implements SessionStore {
+    private final HttpSessionRecordRepository httpSessionRecordRepository;
+
+    public JpaSessionStore(HttpSessionRecordRepository httpSessionRecordRepository) {
+        this.httpSessionRecordRepository = httpSessionRecordRepository;
+    }
+
+    @Override
+    public Stored load(String id) {
+        HttpSessionRecord record = httpSessionRecordRepository.findById(id).orElse(null);
+        if (record == null) {
+            return null;
+        }
+
+        MapSession session = SessionStore.deserialize(record.getData());
+        // touches only update the column
+        if (record.getLastAccessedTime() > session.getLastAccessedTime().toEpochMilli()) {
+            session.setLastAccessedTime(Instant.ofEpochMilli(record.getLastAccessedTime()));
+        }
+        return new Stored(session, record.getVersion());
+    }
+
+    @Override
+    public boolean save(MapSession session, long expectedVersion) {
+        long lastAccessed = session.getLastAccessedTime().toEpochMilli();
+        long maxInactive = session.getMaxInactiveInterval().toMillis();
+        byte[] data = SessionStore.serialize(session);
+        if (expectedVersion == 0) {
+            return httpSessionRecordRepository.insertIfAbsent(session.getId(), lastAccessed, lastAccessed + maxInactive, data) == 1;
+        }
+
+        return httpSessionRecordRepository.replace(session.getId(), expectedVersion, lastAccessed, maxInactive, data) == 1;
+    }
+
+    @Override
+    public void touch(String id, Instant lastAccessedTime) {
+        httpSessionRecordRepository.touch(id, lastAccessedTime.toEpochMilli());
+    }
+
+    @Override
+    public void delete(String id) {
+        httpSessionRecordRepository.deleteById(id);
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        return httpSessionRecordRepository.deleteExpired(now.toEpochMilli());
+    }
+}
@@ -0,0 +1,229 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.DailyBorrowCount;
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.repositories.RatingShardRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
+
+/**
+ * In-memory "top rated" and "trending" boards. Both are kept as ranked sets that are updated one
+ * book at a time, so reading the top K is O(K) instead of sorting the book table or aggregating the
+ * activity history on every request.
+ * <p>
+ * Trending counts borrows over the last {@code trending-days} days, kept as one bucket per day;
+ * when a day leaves the window its bucket is subtracted from the totals. Both boards are rebuilt
+ * from the database on startup.
+ */
+@Slf4j
+@Component
+public class Leaderboards {
+    private final BookActivityHistoryRepository bookActivityHistoryRepository;
+    private final RatingShardRepository ratingShardRepository;
+    private final int minRatings;
+    private final int trendingDays;
+    private final Clock clock;
+
+    private final RankedSet topRated = new RankedSet();
+    // book id -> {sum, count}, including books below minRatings that are not ranked yet
+    private final Map<Long, double[]> ratings = new HashMap<>();
+
+    private final RankedSet trending = new RankedSet();
+    // epoch day -> book id -> borrows that day
+    private final TreeMap<Long, Map<Long, Integer>> borrowsByDay = new TreeMap<>();
+
+    @Autowired
+    public Leaderboards(BookActivityHistoryRepository bookActivityHistoryRepository,
+                        RatingShardRepository ratingShardRepository,
+                        @Value("${library.leaderboards.min-ratings:3}") int minRatings,
+                        @Value("${library.leaderboards.trending-days:7}") int trendingDays) {
+        this(bookActivityHistoryRepository, ratingShardRepository, minRatings, trendingDays, Clock.systemDefaultZone());
+    }
+
+    Leaderboards(BookActivityHistoryRepository bookActivityHistoryRepository,
+                 RatingShardRepository ratingShardRepository,
+                 int minRatings,
+                 int trendingDays,
+                 Clock clock) {
+        this.bookActivityHistoryRepository = bookActivityHistoryRepository;
+        this.ratingShardRepository = ratingShardRepository;
+        this.minRatings = minRatings;
+        this.trendingDays = trendingDays;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        LocalDate since = today().minusDays(trendingDays - 1);
+
+        rebuild(ratingShardRepository.findRatingTotals(),
+                bookActivityHistoryRepository.countDailyBorrows(WITHDRAWAL_CODE, Date.valueOf(since)));
+        log.info("Built leaderboards ({} rated, {} trending) in {} ms",
+                topRated.size(), trending.size(), System.currentTimeMillis() - start);
+    }
+
+    public synchronized void rebuild(List<RatingShardRepository.RatingTotals> ratingTotals, List<DailyBorrowCount> dailyBorrows) {
+        ratings.clear();
+        topRated.clear();
+        for (RatingShardRepository.RatingTotals totals : ratingTotals) {
+            double[] sumAndCount = {totals.getSumRating(), totals.getNumberOfRatings()};
+            ratings.put(totals.getBookId(), sumAndCount);
+            rank(totals.getBookId(), sumAndCount);
+        }
+
+        borrowsByDay.clear();
+        trending.clear();
+        for (DailyBorrowCount borrows : dailyBorrows) {
+            long day = borrows.date().toLocalDate().toEpochDay();
+            borrowsByDay.computeIfAbsent(day, d -> new HashMap<>()).merge(borrows.bookId(), borrows.count().intValue(), Integer::sum);
+            trending.add(borrows.bookId(), borrows.count());
+        }
+        expireDays();
+    }
+
+    /**
+     * Counts one borrow of the book once the surrounding transaction commits, or right away outside one.
+     */
+    public void recordBorrow(long bookId) {
+        AfterCommit.run(() -> addBorrow(bookId));
+    }
+
+    // a plain listener, so the event publication registry doesn't replay it after a restart and count the
+    // borrow twice, the boards are rebuilt from the history on startup anyway
+    @EventListener
+    public void on(BookBorrowed event) {
+        recordBorrow(event.bookId());
+    }
+
+    /**
+     * Applies a rating change once the surrounding transaction commits, or right away outside one.
+     */
+    public void recordRating(long bookId, double sumDelta, double countDelta) {
+        AfterCommit.run(() -> addRating(bookId, sumDelta, countDelta));
+    }
+
+    public synchronized List<RankedSet.Ranked> topRated(int limit) {
+        return topRated.top(limit);
+    }
+
+    public synchronized List<RankedSet.Ranked> trending(int limit) {
+        expireDays();
+
+        return trending.top(limit);
+    }
+
+    private synchronized void addBorrow(long bookId) {
+        expireDays();
+        borrowsByDay.computeIfAbsent(today().toEpochDay(), d -> new HashMap<>()).merge(bookId, 1, Integer::sum);
+        trending.add(bookId, 1);
+    }
+
+    private synchronized void addRating(long bookId, double sumDelta, double countDelta) {
+        double[] sumAndCount = ratings.computeIfAbsent(bookId, id -> new double[2]);
+        sumAndCount[0] += sumDelta;
+        sumAndCount[1] += countDelta;
+        rank(bookId, sumAndCount);
+    }
+
+    private void rank(long bookId, double[] sumAndCount) {
+        if (sumAndCount[1] >= minRatings && sumAndCount[1] > 0) {
+            topRated.set(bookId, sumAndCount[0] / sumAndCount[1]);
+        } else {
+            topRated.remove(bookId);
+        }
+    }
+
+    private void expireDays() {
+        long oldestKept = today().toEpochDay() - trendingDays + 1;
+        while (!borrowsByDay.isEmpty() && borrowsByDay.firstKey() < oldestKept) {
+            for (Map.Entry<Long, Integer> expired : borrowsByDay.pollFirstEntry().getValue().entrySet()) {
+                trending.add(expired.getKey(), -expired.getValue());
+            }
+        }
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Books ordered by score, highest first, with the lower id winning ties. Scores are looked up by
+     * id, so changing a book's score is a remove and an insert in the tree. Not thread safe.
+     */
+    static class RankedSet {
+        private static final Comparator<Ranked> ORDER =
+                Comparator.comparingDouble(Ranked::score).reversed().thenComparingLong(Ranked::bookId);
+
+        private final TreeSet<Ranked> ranking = new TreeSet<>(ORDER);
+        private final Map<Long, Ranked> byBook = new HashMap<>();
+
+        void set(long bookId, double score) {
+            Ranked previous = byBook.put(bookId, new Ranked(bookId, score));
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            ranking.add(byBook.get(bookId));
+        }
+
+        void add(long bookId, double delta) {
+            Ranked previous = byBook.get(bookId);
+            double score = (previous == null ? 0 : previous.score()) + delta;
+            if (score <= 0) {
+                remove(bookId);
+            } else {
+                set(bookId, score);
+            }
+        }
+
+        void remove(long bookId) {
+            Ranked previous = byBook.remove(bookId);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+        }
+
+        List<Ranked> top(int limit) {
+            List<Ranked> top = new ArrayList<>(Math.min(limit, ranking.size()));
+            for (Ranked ranked : ranking) {
+                if (top.size() == limit) {
+                    break;
+                }
+                top.add(ranked);
+            }
+
+            return top;
+        }
+
+        int size() {
+            return byBook.size();
+        }
+
+        void clear() {
+            ranking.clear();
+            byBook.clear();
+        }
+
+        record Ranked(long bookId, double score) {
+        }
+    }
+}
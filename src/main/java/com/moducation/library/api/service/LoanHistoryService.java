@@ -0,0 +1,57 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.LoanHistoryEntry;
+import com.moducation.library.api.dto.LoanHistoryPage;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.utils.KeysetCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.util.List;
+
+import static com.moducation.library.api.utils.Constants.DEFAULT_PAGE_SIZE;
+import static com.moducation.library.api.utils.Constants.MAX_PAGE_SIZE;
+
+/**
+ * A user's borrow and return history, newest first. Rows are read as projections with a single join
+ * to the book, and paged on (date, id) through the (user_id, date, id) index, so every page costs
+ * the same however long the history is.
+ */
+@Service
+public class LoanHistoryService {
+    private static final String SORT = "history";
+
+    private final BookActivityHistoryRepository bookActivityHistoryRepository;
+
+    @Autowired
+    public LoanHistoryService(BookActivityHistoryRepository bookActivityHistoryRepository) {
+        this.bookActivityHistoryRepository = bookActivityHistoryRepository;
+    }
+
+    public LoanHistoryPage findPage(long userId, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.clamp(size, 1, MAX_PAGE_SIZE);
+        // one extra row tells us whether there is a next page
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        KeysetCursor after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+
+        if (after != null && !SORT.equals(after.sort())) {
+            throw new IllegalArgumentException("Cursor was issued for a different listing.");
+        }
+
+        List<LoanHistoryEntry> entries = after == null
+                ? bookActivityHistoryRepository.findFirstHistoryPage(userId, limit)
+                : bookActivityHistoryRepository.findHistoryPage(userId, Date.valueOf(after.value()), after.id(), limit);
+
+        if (entries.size() <= pageSize) {
+            return new LoanHistoryPage(entries, null);
+        }
+
+        List<LoanHistoryEntry> page = entries.subList(0, pageSize);
+        LoanHistoryEntry last = page.getLast();
+
+        return new LoanHistoryPage(List.copyOf(page), new KeysetCursor(SORT, last.date().toString(), last.id()).encode());
+    }
+}
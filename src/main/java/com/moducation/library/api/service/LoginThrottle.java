@@ -0,0 +1,133 @@
+package com.moducation.library.api.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits login attempts per username and per client address in fixed windows of {@code throttle-window}.
+ * <p>
+ * {@link #acquire} is called before any password is hashed, so a flood of guesses is turned away
+ * without costing CPU. Every attempt counts against both limits, and a successful login takes its
+ * attempt back and clears the username's window, so only failed and still running attempts add up.
+ * Counting attempts before they are checked also keeps concurrent guesses from slipping past the limit.
+ */
+@Component
+public class LoginThrottle implements MeterBinder {
+    private final int maxPerUsername;
+    private final int maxPerAddress;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Window> usernames = new ConcurrentHashMap<>();
+    private final Map<String, Window> addresses = new ConcurrentHashMap<>();
+    private final LongAdder throttled = new LongAdder();
+
+    @Autowired
+    public LoginThrottle(@Value("${library.auth.max-attempts-per-username:5}") int maxPerUsername,
+                         @Value("${library.auth.max-attempts-per-address:50}") int maxPerAddress,
+                         @Value("${library.auth.throttle-window:1m}") Duration window) {
+        this(maxPerUsername, maxPerAddress, window, System::nanoTime);
+    }
+
+    LoginThrottle(int maxPerUsername, int maxPerAddress, Duration window, LongSupplier nanoClock) {
+        this.maxPerUsername = maxPerUsername;
+        this.maxPerAddress = maxPerAddress;
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Counts a login attempt. Returns 0 when it may go ahead, otherwise the seconds until it may be
+     * retried, in which case nothing was counted.
+     */
+    public long acquire(String username, String address) {
+        long now = nanoClock.getAsLong();
+
+        long wait = take(usernames, username, maxPerUsername, now);
+        if (wait > 0) {
+            throttled.increment();
+            return wait;
+        }
+
+        wait = take(addresses, address, maxPerAddress, now);
+        if (wait > 0) {
+            give(usernames, username, now);
+            throttled.increment();
+            return wait;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Takes back the attempt of a successful login.
+     */
+    public void succeeded(String username, String address) {
+        if (username != null) {
+            usernames.remove(username);
+        }
+        give(addresses, address, nanoClock.getAsLong());
+    }
+
+    @Scheduled(fixedDelayString = "${library.auth.throttle-sweep-millis:60000}")
+    public void sweep() {
+        long now = nanoClock.getAsLong();
+        usernames.values().removeIf(window -> window.expired(now, windowNanos));
+        addresses.values().removeIf(window -> window.expired(now, windowNanos));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.auth.throttled", throttled, LongAdder::sum)
+                .description("Login attempts rejected before hashing")
+                .register(registry);
+    }
+
+    private long take(Map<String, Window> windows, String key, int max, long now) {
+        if (key == null) {
+            return 0;
+        }
+
+        long[] wait = {0};
+        windows.compute(key, (k, window) -> {
+            if (window == null || window.expired(now, windowNanos)) {
+                return new Window(now, 1);
+            }
+            if (window.attempts() >= max) {
+                long nanosLeft = window.start() + windowNanos - now;
+                wait[0] = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanosLeft + TimeUnit.SECONDS.toNanos(1) - 1));
+                return window;
+            }
+            return new Window(window.start(), window.attempts() + 1);
+        });
+
+        return wait[0];
+    }
+
+    private void give(Map<String, Window> windows, String key, long now) {
+        if (key == null) {
+            return;
+        }
+
+        windows.computeIfPresent(key, (k, window) -> window.expired(now, windowNanos) || window.attempts() <= 1
+                ? null : new Window(window.start(), window.attempts() - 1));
+    }
+
+    private record Window(long start, int attempts) {
+        boolean expired(long now, long windowNanos) {
+            return now - start >= windowNanos;
+        }
+    }
+}
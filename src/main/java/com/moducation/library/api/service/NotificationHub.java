@@ -0,0 +1,215 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moducation.library.api.dto.NotificationMessage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open notification sockets per user and the fan-out to them.
+ * <p>
+ * Every connection gets its own bounded send buffer of {@code buffer-size-limit} bytes. Frames
+ * queue there while a send to a slow client is in progress, and the oldest ones are dropped once
+ * the buffer is full. A client that has not taken a frame for {@code send-time-limit-millis} is
+ * disconnected. Dropped notifications are still stored and can be read with
+ * {@code GET /users/{id}/notifications}. Sends run on a small pool with a bounded queue, so
+ * publishers never wait on a socket. Frames that do not fit in the queue are dropped and counted.
+ * <p>
+ * An idle connection holds only its session and an empty buffer, with no thread. Pings every
+ * {@code ping-interval-millis} keep proxies from closing it and let the container drop dead peers.
+ */
+@Slf4j
+@Component
+public class NotificationHub implements MeterBinder {
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+    private static final int PING_BATCH = 500;
+
+    private final ObjectMapper objectMapper;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final ThreadPoolExecutor sender;
+
+    // user id -> session id -> decorated session
+    private final Map<Long, Map<String, WebSocketSession>> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @Autowired
+    public NotificationHub(ObjectMapper objectMapper,
+                           @Value("${library.notifications.send-time-limit-millis:5000}") int sendTimeLimit,
+                           @Value("${library.notifications.buffer-size-limit:16384}") int bufferSizeLimit,
+                           @Value("${library.notifications.sender-threads:4}") int senderThreads,
+                           @Value("${library.notifications.sender-queue:10000}") int senderQueue) {
+        this.objectMapper = objectMapper;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(senderQueue), runnable -> {
+                    Thread thread = new Thread(runnable, "notification-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Registers an opened connection and returns the session to send through.
+     */
+    public WebSocketSession register(Long userId, WebSocketSession session) {
+        // a send to a stalled client gives up at the same limit, instead of the container's default
+        if (session instanceof NativeWebSocketSession nativeSession
+                && nativeSession.getNativeSession() instanceof jakarta.websocket.Session container) {
+            container.getUserProperties().put(BLOCKING_SEND_TIMEOUT, (long) sendTimeLimit);
+        }
+
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        sessions.computeIfAbsent(userId, id -> new ConcurrentHashMap<>()).put(session.getId(), decorated);
+        connections.incrementAndGet();
+
+        return decorated;
+    }
+
+    public void unregister(Long userId, String sessionId) {
+        sessions.computeIfPresent(userId, (id, userSessions) -> {
+            if (userSessions.remove(sessionId) != null) {
+                connections.decrementAndGet();
+            }
+            return userSessions.isEmpty() ? null : userSessions;
+        });
+    }
+
+    /**
+     * Sends the notification to every open connection of the user. Does nothing when the user is offline.
+     */
+    public void push(Long userId, NotificationMessage message) {
+        Map<String, WebSocketSession> userSessions = sessions.get(userId);
+        if (userSessions == null || userSessions.isEmpty()) {
+            return;
+        }
+
+        TextMessage frame;
+        try {
+            frame = new TextMessage(objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialize notification " + message.id(), e);
+            return;
+        }
+
+        for (WebSocketSession session : userSessions.values()) {
+            submit(() -> send(session, frame));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.notifications.ping-interval-millis:30000}")
+    public void ping() {
+        List<WebSocketSession> batch = new ArrayList<>(PING_BATCH);
+        for (Map<String, WebSocketSession> userSessions : sessions.values()) {
+            for (WebSocketSession session : userSessions.values()) {
+                batch.add(session);
+                if (batch.size() == PING_BATCH) {
+                    pingLater(batch);
+                    batch = new ArrayList<>(PING_BATCH);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            pingLater(batch);
+        }
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.notifications.connections", connections, AtomicInteger::get)
+                .description("Open notification sockets")
+                .register(registry);
+        FunctionCounter.builder("library.notifications.frames", sent, LongAdder::sum)
+                .tag("result", "sent")
+                .register(registry);
+        FunctionCounter.builder("library.notifications.frames", dropped, LongAdder::sum)
+                .tag("result", "dropped")
+                .description("Frames dropped because the send queue was full or the client was gone")
+                .register(registry);
+        Gauge.builder("library.notifications.send.queue", sender, executor -> executor.getQueue().size())
+                .register(registry);
+    }
+
+    private void pingLater(List<WebSocketSession> batch) {
+        PingMessage ping = new PingMessage();
+        submit(() -> batch.forEach(session -> send(session, ping)));
+    }
+
+    private void submit(Runnable task) {
+        try {
+            sender.execute(task);
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    private void send(WebSocketSession session, WebSocketMessage<?> frame) {
+        if (!session.isOpen()) {
+            dropped.increment();
+            return;
+        }
+
+        try {
+            session.sendMessage(frame);
+            sent.increment();
+        } catch (SessionLimitExceededException e) {
+            // the client stopped reading, its pending frames are dropped with the connection
+            dropped.increment();
+            log.debug("Closing slow notification socket {}: {}", session.getId(), e.getMessage());
+            close(session);
+        } catch (IOException | IllegalStateException e) {
+            dropped.increment();
+            close(session);
+        }
+    }
+
+    private static void close(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException ignored) {
+            // already gone, afterConnectionClosed unregisters it
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.NotificationMessage;
+import com.moducation.library.api.events.LoanOverdueEvent;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.models.Notification;
+import com.moducation.library.api.repositories.NotificationRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.moducation.library.api.utils.Constants.DEFAULT_PAGE_SIZE;
+import static com.moducation.library.api.utils.Constants.MAX_PAGE_SIZE;
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_OVERDUE;
+
+/**
+ * Stores notifications and pushes them to connected users. {@link #notify} only queues the
+ * notification. Every {@code flush-millis} the queue is written in batches of up to
+ * {@code batch-size}, one transaction and one JDBC batch each. Each stored notification is then
+ * handed to {@link NotificationHub}, so a pushed notification always has an id and can be read again.
+ * When the queue is full the caller flushes it itself, which slows producers down to the speed of
+ * the database.
+ */
+@Slf4j
+@Service
+public class NotificationService {
+    private final NotificationRepository notificationRepository;
+    private final NotificationHub notificationHub;
+    private final BookService bookService;
+    private final TransactionOperations transactionOperations;
+    private final int batchSize;
+    private final BlockingQueue<Pending> pending;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public NotificationService(NotificationRepository notificationRepository,
+                               NotificationHub notificationHub,
+                               BookService bookService,
+                               TransactionOperations transactionOperations,
+                               @Value("${library.notifications.batch-size:500}") int batchSize,
+                               @Value("${library.notifications.queue-capacity:10000}") int queueCapacity) {
+        this.notificationRepository = notificationRepository;
+        this.notificationHub = notificationHub;
+        this.bookService = bookService;
+        this.transactionOperations = transactionOperations;
+        this.batchSize = batchSize;
+        this.pending = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    public NotificationService(NotificationRepository notificationRepository,
+                               NotificationHub notificationHub,
+                               BookService bookService,
+                               TransactionOperations transactionOperations,
+                               int batchSize,
+                               int queueCapacity,
+                               EntityManager entityManager) {
+        this(notificationRepository, notificationHub, bookService, transactionOperations, batchSize, queueCapacity);
+        this.entityManager = entityManager;
+    }
+
+    public void notify(Long userId, Integer type, String message) {
+        Pending notification = new Pending(userId, type, message);
+        while (!pending.offer(notification)) {
+            flush();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onLoanOverdue(LoanOverdueEvent event) {
+        Book book = bookService.findById(event.bookId());
+        String title = book == null ? "A book you borrowed" : "\"" + book.getTitle() + "\"";
+        notify(event.userId(), NOTIFICATION_OVERDUE, title + " was due back on " + event.expectedReturnDate() + ".");
+    }
+
+    /**
+     * The user's latest notifications, newest first.
+     */
+    public List<NotificationMessage> latest(Long userId, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        return notificationRepository.findLatest(userId, PageRequest.of(0, pageSize));
+    }
+
+    @Scheduled(fixedDelayString = "${library.notifications.flush-millis:250}")
+    public synchronized void flush() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            List<Notification> saved;
+            try {
+                saved = transactionOperations.execute(status -> persist(batch));
+            } catch (RuntimeException e) {
+                log.error("Could not store " + batch.size() + " notifications, they are dropped", e);
+                batch.clear();
+                continue;
+            }
+
+            for (Notification notification : saved) {
+                notificationHub.push(notification.getLibraryUser().getId(), new NotificationMessage(notification.getId(),
+                        notification.getType(), notification.getMessage(), notification.getDateOfNotification()));
+            }
+            batch.clear();
+        }
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    private List<Notification> persist(List<Pending> batch) {
+        List<Notification> notifications = new ArrayList<>(batch.size());
+        for (Pending notification : batch) {
+            notifications.add(Notification.builder()
+                    .libraryUser(entityManager.getReference(LibraryUser.class, notification.userId()))
+                    .type(notification.type())
+                    .message(notification.message()).build());
+        }
+
+        return notificationRepository.saveAll(notifications);
+    }
+
+    private record Pending(Long userId, Integer type, String message) {
+    }
+}
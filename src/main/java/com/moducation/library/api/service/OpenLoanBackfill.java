@@ -0,0 +1,40 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Seeds the open loan table from withdrawals that have no return yet, so loans taken out
+ * before open loans were tracked can still be returned.
+ */
+@Slf4j
+@Component
+public class OpenLoanBackfill {
+    private final OpenLoanRepository openLoanRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public OpenLoanBackfill(OpenLoanRepository openLoanRepository, TransactionTemplate transactionTemplate) {
+        this.openLoanRepository = openLoanRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // ahead of the other startup listeners, OverdueScheduler loads its wheel from the open loans
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfill() {
+        if (openLoanRepository.count() > 0) {
+            return;
+        }
+
+        Integer inserted = transactionTemplate.execute(status -> openLoanRepository.backfillFromWithdrawals());
+        log.info("Backfilled {} open loans", inserted);
+    }
+}
@@ -0,0 +1,194 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.DueLoan;
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReturned;
+import com.moducation.library.api.events.LoanOverdueEvent;
+import com.moducation.library.api.repositories.BookWithdrawalRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import com.moducation.library.api.utils.TimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects overdue loans without polling the loan table. Every open loan sits in a hierarchical
+ * timing wheel keyed by the moment it becomes overdue, the start of the day after its expected
+ * return date, and each tick only touches the loans that came due.
+ * <p>
+ * Handling a loan marks its withdrawal overdue and publishes a {@link LoanOverdueEvent}, both in one
+ * transaction and at most once per withdrawal. On startup the wheel is refilled from the open loans
+ * whose withdrawal is not marked yet, so loans that came due while the application was down are
+ * handled on the first tick.
+ */
+@Slf4j
+@Component
+public class OverdueScheduler {
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    private final OpenLoanRepository openLoanRepository;
+    private final BookWithdrawalRepository bookWithdrawalRepository;
+    private final TransactionOperations transactionOperations;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+
+    private final TimingWheel<DueLoan> wheel;
+    // withdrawal id -> its timer, so a return can take the loan out of the wheel
+    private final Map<Long, TimingWheel.Timer<DueLoan>> timers = new HashMap<>();
+    // loans already due when scheduled, or whose handling failed, picked up by the next tick
+    private final List<DueLoan> due = new ArrayList<>();
+
+    @Autowired
+    public OverdueScheduler(OpenLoanRepository openLoanRepository,
+                            BookWithdrawalRepository bookWithdrawalRepository,
+                            TransactionOperations transactionOperations,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${library.overdue.tick-millis:60000}") long tickMillis,
+                            @Value("${library.overdue.wheel-size:60}") int wheelSize) {
+        this(openLoanRepository, bookWithdrawalRepository, transactionOperations, eventPublisher,
+                tickMillis, wheelSize, Clock.systemDefaultZone());
+    }
+
+    OverdueScheduler(OpenLoanRepository openLoanRepository,
+                     BookWithdrawalRepository bookWithdrawalRepository,
+                     TransactionOperations transactionOperations,
+                     ApplicationEventPublisher eventPublisher,
+                     long tickMillis,
+                     int wheelSize,
+                     Clock clock) {
+        this.openLoanRepository = openLoanRepository;
+        this.bookWithdrawalRepository = bookWithdrawalRepository;
+        this.transactionOperations = transactionOperations;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, clock.millis());
+    }
+
+    // runs after OpenLoanBackfill, which is ordered first
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        Long after = 0L;
+
+        List<DueLoan> page;
+        do {
+            page = openLoanRepository.findPendingAfter(after, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (DueLoan loan : page) {
+                add(loan);
+                after = loan.withdrawalId();
+            }
+            loaded += page.size();
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        log.info("Scheduled {} open loans for overdue detection in {} ms", loaded, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Schedules a loan once the surrounding transaction commits, or right away outside one.
+     */
+    public void schedule(DueLoan loan) {
+        AfterCommit.run(() -> add(loan));
+    }
+
+    /**
+     * Drops a returned loan once the surrounding transaction commits, or right away outside one.
+     */
+    public void cancel(Long withdrawalId) {
+        AfterCommit.run(() -> remove(withdrawalId));
+    }
+
+    // Plain listeners, the wheel is refilled from the open loans on startup so there is nothing to replay.
+    // A return handled before its borrow leaves the loan in the wheel, markOverdue then finds the return and does nothing
+    @EventListener
+    public void on(BookBorrowed event) {
+        schedule(new DueLoan(event.withdrawalId(), event.userId(), event.bookId(), event.expectedReturnDate()));
+    }
+
+    @EventListener
+    public void on(BookReturned event) {
+        cancel(event.withdrawalId());
+    }
+
+    @Scheduled(fixedDelayString = "${library.overdue.tick-millis:60000}")
+    public void tick() {
+        List<DueLoan> expired;
+        synchronized (this) {
+            wheel.advance(clock.millis(), due::add);
+            expired = new ArrayList<>(due);
+            due.clear();
+            for (DueLoan loan : expired) {
+                timers.remove(loan.withdrawalId());
+            }
+        }
+
+        // handled outside the lock, borrows and returns never wait on the database work
+        for (DueLoan loan : expired) {
+            handle(loan);
+        }
+    }
+
+    public synchronized int pending() {
+        return wheel.size() + due.size();
+    }
+
+    private synchronized void add(DueLoan loan) {
+        wheel.cancel(timers.remove(loan.withdrawalId()));
+
+        TimingWheel.Timer<DueLoan> timer = wheel.add(overdueAt(loan), loan);
+        if (timer == null) {
+            due.add(loan);
+        } else {
+            timers.put(loan.withdrawalId(), timer);
+        }
+    }
+
+    private synchronized void remove(Long withdrawalId) {
+        wheel.cancel(timers.remove(withdrawalId));
+        due.removeIf(loan -> loan.withdrawalId().equals(withdrawalId));
+    }
+
+    private void handle(DueLoan loan) {
+        try {
+            Boolean marked = transactionOperations.execute(status -> {
+                if (bookWithdrawalRepository.markOverdue(loan.withdrawalId()) == 0) {
+                    return false;
+                }
+                // published inside the transaction, so transactional listeners only see committed marks
+                eventPublisher.publishEvent(new LoanOverdueEvent(
+                        loan.withdrawalId(), loan.userId(), loan.bookId(), loan.expectedReturnDate()));
+                return true;
+            });
+
+            if (Boolean.TRUE.equals(marked)) {
+                log.info("Withdrawal {} of book {} by user {} is overdue since {}",
+                        loan.withdrawalId(), loan.bookId(), loan.userId(), loan.expectedReturnDate());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not mark withdrawal {} overdue, retrying next tick", loan.withdrawalId(), e);
+            synchronized (this) {
+                due.add(loan);
+            }
+        }
+    }
+
+    // a loan is overdue once the whole expected return day has passed
+    private long overdueAt(DueLoan loan) {
+        return loan.expectedReturnDate().toLocalDate().plusDays(1)
+                .atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+    }
+}
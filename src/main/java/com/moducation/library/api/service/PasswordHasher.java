@@ -0,0 +1,157 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.exceptions.PasswordHashingBusyException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * BCrypt hashing on its own pool, one thread per core by default, so a login storm can use all
+ * CPUs but never more, and request threads serving other endpoints keep running.
+ * <p>
+ * Hashes wait in a queue of {@code hash-queue-limit}. When it is full a new hash is rejected right
+ * away with {@link PasswordHashingBusyException} instead of piling up, and a caller that waited
+ * {@code hash-max-wait} gives up the same way. A hash nobody waits for anymore leaves the queue.
+ * <p>
+ * New hashes use {@code bcrypt-strength}. {@link #needsRehash} tells whether a stored hash was made
+ * with a different cost, so it can be replaced the next time its password is known.
+ */
+@Slf4j
+@Component
+public class PasswordHasher implements MeterBinder {
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final long maxWaitNanos;
+    private final ThreadPoolExecutor pool;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    @Autowired
+    public PasswordHasher(@Value("${library.auth.bcrypt-strength:10}") int strength,
+                          @Value("${library.auth.hash-threads:0}") int threads,
+                          @Value("${library.auth.hash-queue-limit:64}") int queueLimit,
+                          @Value("${library.auth.hash-max-wait:2s}") Duration maxWait) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return await(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    public String encode(String rawPassword) {
+        return await(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Whether the hash was made with another cost factor than the configured one.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        // $2a$10$... the cost is the two digits after the version
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return false;
+        }
+
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hashes the password with the configured cost in the background and hands the result to {@code onHashed}.
+     * Skipped when the pool is full, the next login tries again.
+     */
+    public void rehashLater(String rawPassword, Consumer<String> onHashed) {
+        try {
+            pool.execute(() -> {
+                try {
+                    onHashed.accept(encoder.encode(rawPassword));
+                } catch (Exception e) {
+                    log.warn("Could not store rehashed password", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.auth.hash.queue", pool, executor -> executor.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(registry);
+        FunctionCounter.builder("library.auth.hash.rejected", rejected, LongAdder::sum)
+                .description("Password hashes refused because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("library.auth.hash.timeouts", timedOut, LongAdder::sum)
+                .description("Password checks given up after hash-max-wait")
+                .register(registry);
+    }
+
+    private <T> T await(Callable<T> hash) {
+        Future<T> future;
+        try {
+            future = pool.submit(hash);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException("Too many logins right now, please try again shortly.");
+        }
+
+        try {
+            return future.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // still queued, make room for a caller that is still waiting
+            future.cancel(false);
+            pool.remove((Runnable) future);
+            timedOut.increment();
+            throw new PasswordHashingBusyException("Too many logins right now, please try again shortly.");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while checking the password.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
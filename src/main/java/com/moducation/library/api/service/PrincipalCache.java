@@ -0,0 +1,95 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.AuthenticatedUser;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Id and role of recently active users, so requests that only need to know who is logged in skip
+ * the user row. Entries expire {@code ttl} after they were loaded, which bounds how long a change
+ * made on another instance goes unseen; changes made here evict the entry. At most {@code maxSize}
+ * users are cached, further ones are loaded every time until expired entries are swept.
+ */
+@Component
+public class PrincipalCache implements MeterBinder {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public PrincipalCache(@Value("${library.principal-cache.max-size:10000}") int maxSize,
+                          @Value("${library.principal-cache.ttl:1m}") Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    PrincipalCache(int maxSize, Duration ttl, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public AuthenticatedUser get(Long userId) {
+        Entry entry = userId == null ? null : entries.get(userId);
+        if (entry != null && nanoClock.getAsLong() - entry.expiresAt() <= 0) {
+            hits.increment();
+            return entry.user();
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    public void put(AuthenticatedUser user) {
+        if (user != null && (entries.size() < maxSize || entries.containsKey(user.id()))) {
+            entries.put(user.id(), new Entry(user, nanoClock.getAsLong() + ttlNanos));
+        }
+    }
+
+    public void evict(Long userId) {
+        if (userId != null) {
+            entries.remove(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.principal-cache.sweep-millis:60000}")
+    public void sweep() {
+        long now = nanoClock.getAsLong();
+        entries.values().removeIf(entry -> now - entry.expiresAt() > 0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.principal.cache.gets", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("library.principal.cache.gets", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Principal lookups that had to go to the database")
+                .register(registry);
+        Gauge.builder("library.principal.cache.size", this, PrincipalCache::size)
+                .register(registry);
+    }
+
+    private record Entry(AuthenticatedUser user, long expiresAt) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.repositories.BookRepository;
+import com.moducation.library.api.repositories.RatingShardRepository;
+import com.moducation.library.api.utils.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps {@code Book.sumRating}, {@code numberOfRatings} and {@code avgRating} current without ever
+ * rescanning reviews. Most changes are one atomic UPDATE of the book row. Once a book receives more
+ * than {@code hot-threshold} changes inside {@code hot-window}, its changes go to a random
+ * {@link com.moducation.library.api.models.RatingShard} row instead, and {@link #foldShards()} moves
+ * them onto the book row in the background. Either way {@link BookAutocomplete} is re-ranked from
+ * the book row once the change to it commits.
+ */
+@Slf4j
+@Component
+public class RatingAggregator {
+    private static final String DRAIN_SHARDS =
+            "DELETE FROM rating_shard WHERE book_id = ? RETURNING sum_delta, count_delta";
+
+    private final BookRepository bookRepository;
+    private final RatingShardRepository ratingShardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final BookCache bookCache;
+    private final Leaderboards leaderboards;
+    private final BookAutocomplete bookAutocomplete;
+    private final int shards;
+    private final int hotThreshold;
+    private final long hotWindowMillis;
+    private final Clock clock;
+
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RatingAggregator(BookRepository bookRepository,
+                            RatingShardRepository ratingShardRepository,
+                            JdbcTemplate jdbcTemplate,
+                            TransactionOperations transactionOperations,
+                            BookCache bookCache,
+                            Leaderboards leaderboards,
+                            BookAutocomplete bookAutocomplete,
+                            @Value("${library.ratings.shards:8}") int shards,
+                            @Value("${library.ratings.hot-threshold:20}") int hotThreshold,
+                            @Value("${library.ratings.hot-window-millis:10000}") long hotWindowMillis) {
+        this(bookRepository, ratingShardRepository, jdbcTemplate, transactionOperations, bookCache, leaderboards,
+                bookAutocomplete, shards, hotThreshold, hotWindowMillis, Clock.systemUTC());
+    }
+
+    RatingAggregator(BookRepository bookRepository, RatingShardRepository ratingShardRepository, JdbcTemplate jdbcTemplate,
+                     TransactionOperations transactionOperations, BookCache bookCache, Leaderboards leaderboards,
+                     BookAutocomplete bookAutocomplete, int shards, int hotThreshold, long hotWindowMillis, Clock clock) {
+        this.bookRepository = bookRepository;
+        this.ratingShardRepository = ratingShardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.bookCache = bookCache;
+        this.leaderboards = leaderboards;
+        this.bookAutocomplete = bookAutocomplete;
+        this.shards = shards;
+        this.hotThreshold = hotThreshold;
+        this.hotWindowMillis = hotWindowMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Applies a rating change inside the caller's transaction. The cached book is evicted again
+     * and the book re-ranked once that transaction commits.
+     */
+    public void apply(long bookId, float sumDelta, float countDelta) {
+        if (isHot(bookId)) {
+            ratingShardRepository.addToShard(bookId, ThreadLocalRandom.current().nextInt(shards), sumDelta, countDelta);
+        } else {
+            bookRepository.applyRatingDelta(bookId, sumDelta, countDelta);
+            bookCache.evictAfterCommit(bookId);
+            AfterCommit.run(() -> rerank(bookId));
+        }
+        leaderboards.recordRating(bookId, sumDelta, countDelta);
+    }
+
+    @Scheduled(fixedDelayString = "${library.ratings.fold-interval-millis:60000}")
+    public void foldShards() {
+        int folded = 0;
+        for (Long bookId : ratingShardRepository.findBookIdsWithPendingDeltas()) {
+            try {
+                transactionOperations.executeWithoutResult(status -> fold(bookId));
+                bookCache.evict(bookId);
+                rerank(bookId);
+                folded++;
+            } catch (RuntimeException e) {
+                log.error("Could not fold rating shards for book " + bookId, e);
+            }
+        }
+
+        long now = clock.millis();
+        windows.values().removeIf(window -> now - window.start() > hotWindowMillis);
+        if (folded > 0) {
+            log.info("Folded rating shards of {} books", folded);
+        }
+    }
+
+    private void fold(Long bookId) {
+        // delete-returning takes the pending deltas atomically, later reviews just start new shard rows
+        float[] totals = new float[2];
+        jdbcTemplate.query(DRAIN_SHARDS, resultSet -> {
+            totals[0] += resultSet.getFloat("sum_delta");
+            totals[1] += resultSet.getFloat("count_delta");
+        }, bookId);
+
+        if (totals[0] != 0 || totals[1] != 0) {
+            bookRepository.applyRatingDelta(bookId, totals[0], totals[1]);
+        }
+    }
+
+    // read back from the row, the update computed the new average in the database
+    private void rerank(long bookId) {
+        try {
+            bookRepository.findRatingById(bookId).ifPresent(rating ->
+                    bookAutocomplete.rerank(bookId, rating.getAvgRating(), rating.getNumberOfRatings()));
+        } catch (RuntimeException e) {
+            log.warn("Could not re-rank autocomplete for book " + bookId, e);
+        }
+    }
+
+    boolean isHot(long bookId) {
+        long now = clock.millis();
+        Window window = windows.compute(bookId, (id, current) -> current == null || now - current.start() > hotWindowMillis
+                ? new Window(now, 1)
+                : new Window(current.start(), current.count() + 1));
+
+        return window.count() > hotThreshold;
+    }
+
+    private record Window(long start, int count) {
+    }
+}
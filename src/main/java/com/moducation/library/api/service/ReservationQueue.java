@@ -0,0 +1,81 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.QueuedReservation;
+import com.moducation.library.api.models.BookReservation;
+import com.moducation.library.api.repositories.BookReservationRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Active reservations as one FIFO queue per book, kept in the reservation table so every instance
+ * serves the same queue.
+ * <p>
+ * {@link #claimNext} locks the oldest active reservation of the book with {@code FOR UPDATE SKIP
+ * LOCKED}: racing returns of the same title, on any instance, each take a different reservation
+ * and none waits for another's lock. A cancellation of a reservation being claimed waits for the
+ * claim and then finds it inactive. The partial unique index on (user, book) of active rows
+ * ({@code db/book-reservation-indexes.sql}) keeps a user from queueing twice for one book.
+ */
+@Component
+public class ReservationQueue {
+    private static final String UK_ACTIVE_USER_BOOK = "uk_book_reservation_active_user_book";
+
+    private final BookReservationRepository bookReservationRepository;
+
+    @Autowired
+    public ReservationQueue(BookReservationRepository bookReservationRepository) {
+        this.bookReservationRepository = bookReservationRepository;
+    }
+
+    /**
+     * Stores the reservation at the back of its book's queue. Throws when the user already has an
+     * active reservation for the book, including one made by a racing request.
+     */
+    public BookReservation add(BookReservation reservation) {
+        try {
+            return bookReservationRepository.save(reservation);
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && UK_ACTIVE_USER_BOOK.equalsIgnoreCase(violation.getConstraintName())) {
+                throw new IllegalArgumentException("You have already reserved this book.");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the user's active reservation for the book. Returns false when there was none.
+     */
+    public boolean cancel(long userId, long bookId) {
+        return bookReservationRepository.cancel(userId, bookId) > 0;
+    }
+
+    public boolean isQueued(long userId, long bookId) {
+        return bookReservationRepository.existsByLibraryUser_IdAndBook_IdAndActiveTrue(userId, bookId);
+    }
+
+    /**
+     * Assigns the oldest active reservation of the book, or returns null when nobody is waiting.
+     * Must run in the transaction that hands the copy over, a rollback leaves the reservation waiting.
+     */
+    public QueuedReservation claimNext(long bookId) {
+        BookReservationRepository.NextReservation next = bookReservationRepository.findNextForUpdate(bookId);
+        if (next == null) {
+            return null;
+        }
+
+        // the row is locked, nobody else can have claimed or cancelled it since
+        bookReservationRepository.claim(next.getReservationId());
+
+        return new QueuedReservation(next.getReservationId(), next.getUserId(), bookId);
+    }
+
+    /**
+     * Active reservations of the book.
+     */
+    public int waiting(long bookId) {
+        return (int) bookReservationRepository.countByBook_IdAndActiveTrue(bookId);
+    }
+}
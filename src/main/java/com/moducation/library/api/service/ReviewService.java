@@ -0,0 +1,129 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.ReviewRequest;
+import com.moducation.library.api.dto.ReviewView;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.BookReview;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.repositories.BookReviewRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+import static com.moducation.library.api.utils.Constants.MAX_RATING;
+import static com.moducation.library.api.utils.Constants.MIN_RATING;
+
+/**
+ * Review write path. Every change adjusts the book's rating aggregates by the difference it makes,
+ * so averages never need a scan of the review table.
+ */
+@Service
+public class ReviewService {
+    private final BookReviewRepository bookReviewRepository;
+    private final RatingAggregator ratingAggregator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ReviewService(BookReviewRepository bookReviewRepository, RatingAggregator ratingAggregator) {
+        this.bookReviewRepository = bookReviewRepository;
+        this.ratingAggregator = ratingAggregator;
+    }
+
+    public ReviewService(BookReviewRepository bookReviewRepository, RatingAggregator ratingAggregator, EntityManager entityManager) {
+        this(bookReviewRepository, ratingAggregator);
+        this.entityManager = entityManager;
+    }
+
+    @Transactional
+    public ReviewView submit(long userId, ReviewRequest request) {
+        validateRating(request.rating());
+        if (request.bookId() == null || request.title() == null || request.title().isBlank()) {
+            throw new IllegalArgumentException("bookId and title are required.");
+        }
+
+        BookReview review = BookReview.builder()
+                .book(entityManager.getReference(Book.class, request.bookId()))
+                .libraryUser(entityManager.getReference(LibraryUser.class, userId))
+                .rating(request.rating())
+                .title(request.title())
+                .text(request.text()).build();
+        entityManager.persist(review);
+
+        ratingAggregator.apply(request.bookId(), request.rating(), 1);
+
+        return new ReviewView(review.getId(), request.bookId(), userId, review.getRating(), review.getTitle(),
+                review.getText(), review.getReviewDate());
+    }
+
+    /**
+     * Edits the user's own review. Returns null when there is no such review or it belongs to someone else.
+     */
+    @Transactional
+    public ReviewView edit(long userId, long reviewId, ReviewRequest request) {
+        BookReview review = findOwnReview(userId, reviewId);
+        if (review == null) {
+            return null;
+        }
+
+        if (request.rating() != null) {
+            validateRating(request.rating());
+            float difference = request.rating() - review.getRating();
+            if (difference != 0) {
+                ratingAggregator.apply(review.getBook().getId(), difference, 0);
+            }
+            review.setRating(request.rating());
+        }
+        if (request.title() != null && !request.title().isBlank()) {
+            review.setTitle(request.title());
+        }
+        if (request.text() != null) {
+            review.setText(request.text());
+        }
+
+        return toView(review);
+    }
+
+    @Transactional
+    public boolean delete(long userId, long reviewId) {
+        BookReview review = findOwnReview(userId, reviewId);
+        if (review == null) {
+            return false;
+        }
+
+        bookReviewRepository.delete(review);
+        ratingAggregator.apply(review.getBook().getId(), -review.getRating(), -1);
+
+        return true;
+    }
+
+    public List<ReviewView> findByBook(long bookId) {
+        return bookReviewRepository.findViewsByBookId(bookId);
+    }
+
+    // locked, two edits or deletes of one review would otherwise both apply a difference from the same old rating
+    private BookReview findOwnReview(long userId, long reviewId) {
+        BookReview review = bookReviewRepository.findByIdForUpdate(reviewId).orElse(null);
+        if (review == null || !review.getLibraryUser().getId().equals(userId)) {
+            return null;
+        }
+
+        return review;
+    }
+
+    private static void validateRating(Float rating) {
+        if (rating == null || rating < MIN_RATING || rating > MAX_RATING) {
+            throw new IllegalArgumentException("rating must be between " + MIN_RATING + " and " + MAX_RATING + ".");
+        }
+    }
+
+    private static ReviewView toView(BookReview review) {
+        return new ReviewView(review.getId(), review.getBook().getId(), review.getLibraryUser().getId(), review.getRating(),
+                review.getTitle(), review.getText(), review.getReviewDate());
+    }
+}
@@ -0,0 +1,76 @@
+package com.moducation.library.api.service;
+
+import org.springframework.session.MapSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Where {@link CachingSessionRepository} keeps sessions so every node sees them. Every save moves a
+ * stored session to its next version and only succeeds from the version it was merged against, so
+ * two nodes changing one session never overwrite each other's attributes. Touches keep the version.
+ */
+public interface SessionStore {
+    // sessions only hold ids and strings, anything else in stored data is refused
+    ObjectInputFilter ALLOWED = ObjectInputFilter.Config.createFilter(
+            "maxdepth=10;java.lang.*;java.util.*;java.time.*;org.springframework.session.*;!*");
+
+    /**
+     * The stored session and its version, or null when there is none.
+     */
+    Stored load(String id);
+
+    /**
+     * Stores the session if the stored one is still at {@code expectedVersion}, or, with 0, if there
+     * is none yet. Returns false when another save came first; the session is then left as it is.
+     */
+    boolean save(MapSession session, long expectedVersion);
+
+    /**
+     * Moves the session's last access forward to {@code lastAccessedTime}. Does nothing when it is already later.
+     */
+    void touch(String id, Instant lastAccessedTime);
+
+    void delete(String id);
+
+    /**
+     * Deletes the sessions that expired before {@code now} and returns how many there were.
+     */
+    int deleteExpired(Instant now);
+
+    record Stored(MapSession session, long version) {
+    }
+
+    static boolean isExpired(MapSession session, Instant now) {
+        Duration maxInactive = session.getMaxInactiveInterval();
+        return !maxInactive.isNegative() && !now.minus(maxInactive).isBefore(session.getLastAccessedTime());
+    }
+
+    static byte[] serialize(MapSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(session);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize session " + session.getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static MapSession deserialize(byte[] data) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            in.setObjectInputFilter(ALLOWED);
+            return (MapSession) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read stored session", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Could not read stored session", e);
+        }
+    }
+}
@@ -1,24 +1,26 @@
 package com.moducation.library.api.service;
 
+import com.moducation.library.api.dto.AuthenticatedUser;
 import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.utils.AfterCommit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.moducation.library.api.repositories.UserRepository;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
-    private final PasswordEncoder encoder;
+    private final PasswordHasher passwordHasher;
+    private final PrincipalCache principalCache;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher, PrincipalCache principalCache) {
         this.userRepository = userRepository;
-        this.encoder = new BCryptPasswordEncoder();
+        this.passwordHasher = passwordHasher;
+        this.principalCache = principalCache;
     }
 
     public LibraryUser getUserById(Long id) {
@@ -27,6 +29,19 @@ public class UserService {
         return user.orElse(null);
     }
 
+    /**
+     * Id and role of the user, served from {@link PrincipalCache}. Null when there is no such user.
+     */
+    public AuthenticatedUser getPrincipal(Long id) {
+        AuthenticatedUser user = principalCache.get(id);
+        if (user == null) {
+            user = userRepository.findPrincipal(id);
+            principalCache.put(user);
+        }
+
+        return user;
+    }
+
     public LibraryUser getUserByUsername(String username) {
         return this.userRepository.findByUsername(username);
     }
@@ -36,12 +51,33 @@ public class UserService {
     }
 
     public LibraryUser saveUser(LibraryUser libraryUser) {
-        String encodedPassword = encoder.encode(libraryUser.getPassword());
+        String encodedPassword = passwordHasher.encode(libraryUser.getPassword());
         libraryUser.setPassword(encodedPassword);
-        return userRepository.save(libraryUser);
+        LibraryUser saved = userRepository.save(libraryUser);
+        // the id and role may have changed, drop the cached principal once the change is visible
+        AfterCommit.run(() -> principalCache.evict(libraryUser.getId()));
+        return saved;
     }
 
+    /**
+     * Checks the password on the {@link PasswordHasher} pool. Throws
+     * {@link com.moducation.library.api.exceptions.PasswordHashingBusyException} when the pool is full.
+     */
     public boolean verifyPassword(String rawPassword, String encodedPassword) {
-        return this.encoder.matches(rawPassword, encodedPassword);
+        return this.passwordHasher.matches(rawPassword, encodedPassword);
+    }
+
+    /**
+     * Replaces the user's stored hash in the background when it was made with another cost factor
+     * than the configured one. Only call with a password that was just verified.
+     */
+    public void rehashIfNeeded(LibraryUser libraryUser, String rawPassword) {
+        String oldHash = libraryUser.getPassword();
+        if (!passwordHasher.needsRehash(oldHash)) {
+            return;
+        }
+
+        passwordHasher.rehashLater(rawPassword,
+                newHash -> userRepository.replacePasswordHash(libraryUser.getId(), oldHash, newHash));
     }
 }
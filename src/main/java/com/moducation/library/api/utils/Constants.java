@@ -5,5 +5,15 @@ public final class Constants {
     public static final Long ONE_WEEK_IN_MILLIS = 604_800_000L;
     public static final Integer WITHDRAWAL_CODE = 1;
     public static final Integer RETURN_CODE = 2;
-    // public static final Integer RESERVE_CODE = 3;
+    public static final Integer RESERVE_CODE = 3;
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_BATCH_SIZE = 50;
+    public static final float MIN_RATING = 1f;
+    public static final float MAX_RATING = 5f;
+    public static final Integer NOTIFICATION_OVERDUE = 1;
+    public static final Integer NOTIFICATION_FINE = 2;
+    public static final Integer NOTIFICATION_EVENT = 3;
+    public static final byte ROLE_ADMIN = 1;
+    public static final byte ROLE_LIBRARIAN = 2;
 }
@@ -0,0 +1,35 @@
+package com.moducation.library.api.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination token: the sort the page was produced with plus the sort value
+ * and id of the last row returned. Clients pass it back unchanged to get the next page.
+ */
+public record KeysetCursor(String sort, String value, long id) {
+    private static final char SEPARATOR = '\u001F';
+
+    public String encode() {
+        String raw = sort + SEPARATOR + id + SEPARATOR + (value == null ? "" : value);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int first = raw.indexOf(SEPARATOR);
+            int second = raw.indexOf(SEPARATOR, first + 1);
+            if (first < 0 || second < 0) {
+                throw new IllegalArgumentException("Malformed cursor.");
+            }
+
+            return new KeysetCursor(raw.substring(0, first),
+                    raw.substring(second + 1),
+                    Long.parseLong(raw.substring(first + 1, second)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.", e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.moducation.library.api.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing long -> int map with linear probing, storing keys and values in two primitive
+ * arrays, so an entry costs 12 bytes instead of two boxed objects plus a node. Missing keys read as 0.
+ * Not thread safe.
+ */
+public final class LongIntHashMap {
+    private static final long FREE = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    // the free marker can't be stored in the table, so key 0 lives on the side
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public LongIntHashMap() {
+        this(8);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int get(long key) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : 0;
+        }
+
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+
+        return 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasFreeKey;
+        }
+
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public void put(long key, int value) {
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                size++;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+
+        int slot = slotFor(key);
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            if (++size > resizeAt) {
+                values[slot] = value;
+                grow();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the key's value (a missing key counts as 0) and returns the new value.
+     */
+    public int addTo(long key, int delta) {
+        int value = get(key) + delta;
+        put(key, value);
+
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(Consumer consumer) {
+        if (hasFreeKey) {
+            consumer.accept(FREE, freeKeyValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Keeps only the {@code limit} entries with the highest values; ties at the cut are broken arbitrarily.
+     */
+    public void retainTop(int limit) {
+        if (size <= limit) {
+            return;
+        }
+
+        int[] sorted = new int[size];
+        int[] count = {0};
+        forEach((key, value) -> sorted[count[0]++] = value);
+        Arrays.sort(sorted);
+        int threshold = sorted[sorted.length - limit];
+
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean oldHasFreeKey = hasFreeKey;
+        int oldFreeKeyValue = freeKeyValue;
+        allocate(keys.length);
+
+        int[] ties = {limit - (int) Arrays.stream(sorted).filter(value -> value > threshold).count()};
+        Consumer keep = (key, value) -> {
+            if (value > threshold || (value == threshold && ties[0]-- > 0)) {
+                put(key, value);
+            }
+        };
+        if (oldHasFreeKey) {
+            keep.accept(FREE, oldFreeKeyValue);
+        }
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                keep.accept(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private int slotFor(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean oldHasFreeKey = hasFreeKey;
+        int oldFreeKeyValue = freeKeyValue;
+        allocate(keys.length * 2);
+
+        if (oldHasFreeKey) {
+            put(FREE, oldFreeKeyValue);
+        }
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        size = 0;
+        hasFreeKey = false;
+        freeKeyValue = 0;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // sequential ids would otherwise cluster into neighbouring slots
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, int value);
+    }
+}
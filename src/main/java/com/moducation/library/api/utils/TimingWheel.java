@@ -0,0 +1,150 @@
+package com.moducation.library.api.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level 0 has {@code wheelSize} buckets of {@code tickMillis} each; every
+ * further level, created only when a deadline is that far away, has buckets as wide as the whole
+ * level below. Adding and cancelling are O(1), and advancing the clock only touches the buckets
+ * that came due, no matter how many timers are pending. A timer moves down a level each time its
+ * bucket comes due, until it lands in a level 0 bucket and expires.
+ * <p>
+ * Timers never expire early: a timer is placed on the first tick boundary at or after its deadline,
+ * so it expires on the first {@link #advance} past that boundary. Not thread safe.
+ */
+public final class TimingWheel<T> {
+    private final Level<T> root;
+    private int size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.root = new Level<>(tickMillis, wheelSize, startMillis);
+    }
+
+    /**
+     * Schedules {@code value} at {@code deadlineMillis}. Returns null and schedules nothing when the
+     * deadline has already been reached; the caller should handle the value right away.
+     */
+    public Timer<T> add(long deadlineMillis, T value) {
+        Timer<T> timer = new Timer<>(deadlineMillis, deadlineMillis + root.tick - 1, value);
+        if (!root.add(timer)) {
+            return null;
+        }
+        size++;
+
+        return timer;
+    }
+
+    public boolean cancel(Timer<T> timer) {
+        if (timer == null || timer.bucket == null) {
+            return false;
+        }
+
+        timer.bucket.remove(timer);
+        timer.bucket = null;
+        size--;
+
+        return true;
+    }
+
+    /**
+     * Moves the clock to {@code nowMillis} and hands every timer that expired to {@code expired}, earliest tick first.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        // lower levels first, so a timer handed down from a higher level never lands in a bucket already passed
+        for (Level<T> level = root; level != null; level = level.overflow) {
+            while (level.currentTime + level.tick <= nowMillis) {
+                level.currentTime += level.tick;
+                Set<Timer<T>> bucket = level.buckets[level.index(level.currentTime)];
+                if (bucket.isEmpty()) {
+                    continue;
+                }
+
+                List<Timer<T>> due = new ArrayList<>(bucket);
+                bucket.clear();
+                for (Timer<T> timer : due) {
+                    timer.bucket = null;
+                    size--;
+                    if (root.add(timer)) {
+                        size++;
+                    } else {
+                        expired.accept(timer.value);
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static final class Timer<T> {
+        private final long deadline;
+        // deadline rounded into the tick that ends at or after it, what the buckets are keyed by
+        private final long slot;
+        private final T value;
+        private Set<Timer<T>> bucket;
+
+        private Timer(long deadline, long slot, T value) {
+            this.deadline = deadline;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        public long deadline() {
+            return deadline;
+        }
+
+        public T value() {
+            return value;
+        }
+    }
+
+    private static final class Level<T> {
+        private final long tick;
+        private final int wheelSize;
+        private final long interval;
+        private final Set<Timer<T>>[] buckets;
+        private long currentTime;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tick, int wheelSize, long startMillis) {
+            this.tick = tick;
+            this.wheelSize = wheelSize;
+            this.interval = tick * wheelSize;
+            this.buckets = new Set[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new LinkedHashSet<>();
+            }
+            this.currentTime = startMillis - Math.floorMod(startMillis, tick);
+        }
+
+        private boolean add(Timer<T> timer) {
+            if (timer.slot < currentTime + tick) {
+                return false;
+            }
+
+            if (timer.slot < currentTime + interval) {
+                Set<Timer<T>> bucket = buckets[index(timer.slot)];
+                bucket.add(timer);
+                timer.bucket = bucket;
+                return true;
+            }
+
+            if (overflow == null) {
+                overflow = new Level<>(interval, wheelSize, currentTime);
+            }
+
+            return overflow.add(timer);
+        }
+
+        private int index(long time) {
+            return (int) Math.floorMod(Math.floorDiv(time, tick), (long) wheelSize);
+        }
+    }
+}
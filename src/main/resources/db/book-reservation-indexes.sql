@@ -0,0 +1,21 @@
+-- Reservations are queued in book_reservation itself: a return locks the oldest active row of the
+-- book, and a user may hold one active reservation per book. ddl-auto: update cannot create partial
+-- indexes, so run this once on every database, new or upgraded, with the application stopped:
+--   psql -d library -f src/main/resources/db/book-reservation-indexes.sql
+
+BEGIN;
+
+-- an older version could queue a user twice when two requests raced, keep the first of each
+UPDATE book_reservation r SET active = false
+WHERE r.active AND EXISTS (
+    SELECT 1 FROM book_reservation o
+    WHERE o.active AND o.user_id = r.user_id AND o.book_id = r.book_id AND o.id < r.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_book_reservation_active_user_book
+    ON book_reservation (user_id, book_id) WHERE active;
+
+-- the head of a book's queue without reading assigned or cancelled reservations
+CREATE INDEX IF NOT EXISTS idx_book_reservation_queue
+    ON book_reservation (book_id, id) WHERE active;
+
+COMMIT;
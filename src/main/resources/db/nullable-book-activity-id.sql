@@ -0,0 +1,12 @@
+-- One-time migration: withdrawals and returns are now inserted before their activity history row,
+-- which ActivityHistoryRecorder writes and links after commit, so book_activity_id starts out null.
+-- ddl-auto: update never drops a NOT NULL, so on a database created by an older version every
+-- checkout and checkin fails until this has run. Run it once, with the application stopped:
+--   psql -d library -f src/main/resources/db/nullable-book-activity-id.sql
+
+BEGIN;
+
+ALTER TABLE book_withdrawal ALTER COLUMN book_activity_id DROP NOT NULL;
+ALTER TABLE book_return ALTER COLUMN book_activity_id DROP NOT NULL;
+
+COMMIT;
@@ -0,0 +1,67 @@
+-- One-time migration: turns book_activity_history into a table range-partitioned by month on "date".
+-- Run it once, with the application stopped, against a database created by ddl-auto: update:
+--   psql -d library -f src/main/resources/db/partition-book-activity-history.sql
+-- Afterwards ActivityArchiveService creates future partitions and archives old ones on its own.
+
+BEGIN;
+
+-- a partitioned table can only be referenced through a key that includes the partition column,
+-- so the foreign keys from book_withdrawal and book_return to the activity id go away
+DO $$
+DECLARE
+    constraint_row RECORD;
+BEGIN
+    FOR constraint_row IN
+        SELECT conrelid::regclass AS referencing_table, conname
+        FROM pg_constraint
+        WHERE contype = 'f' AND confrelid = 'book_activity_history'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', constraint_row.referencing_table, constraint_row.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE book_activity_history RENAME TO book_activity_history_legacy;
+ALTER INDEX IF EXISTS idx_activity_type_date RENAME TO idx_activity_type_date_legacy;
+ALTER INDEX IF EXISTS idx_activity_user_book_type_date RENAME TO idx_activity_user_book_type_date_legacy;
+ALTER INDEX IF EXISTS idx_activity_user_date_id RENAME TO idx_activity_user_date_id_legacy;
+
+CREATE TABLE book_activity_history (
+    id      BIGINT  NOT NULL,
+    type    INTEGER NOT NULL,
+    user_id BIGINT  NOT NULL REFERENCES library_user (id),
+    book_id BIGINT  NOT NULL REFERENCES book (id),
+    date    DATE    NOT NULL,
+    PRIMARY KEY (id, date)
+) PARTITION BY RANGE (date);
+
+-- catches rows outside every monthly partition, should stay empty
+CREATE TABLE book_activity_history_default PARTITION OF book_activity_history DEFAULT;
+
+-- one partition per month from the oldest row up to two months ahead
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE((SELECT min(date) FROM book_activity_history_legacy), current_date));
+BEGIN
+    WHILE month_start <= date_trunc('month', current_date) + INTERVAL '2 months' LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF book_activity_history FOR VALUES FROM (%L) TO (%L)',
+                       'book_activity_history_p' || to_char(month_start, 'YYYYMM'),
+                       month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO book_activity_history (id, type, user_id, book_id, date)
+SELECT id, type, user_id, book_id, date FROM book_activity_history_legacy;
+
+DROP TABLE book_activity_history_legacy;
+
+-- return lookups: newest activity of one user on one book
+CREATE INDEX idx_activity_user_book_type_date ON book_activity_history (user_id, book_id, type, date);
+-- a user's history, newest first, paged on (date, id)
+CREATE INDEX idx_activity_user_date_id ON book_activity_history (user_id, date, id);
+-- leaderboard and co-borrow rebuilds: withdrawals since a date
+CREATE INDEX idx_activity_type_date ON book_activity_history (type, date);
+-- rows are appended in date order, so a BRIN index answers date ranges from a few pages per partition
+CREATE INDEX idx_activity_date_brin ON book_activity_history USING brin (date);
+
+COMMIT;
@@ -0,0 +1,27 @@
+-- One-time migration: the tables below now take their ids from sequences (GenerationType.SEQUENCE,
+-- 50 ids per allocation) instead of identity columns. Run it once, with the application stopped,
+-- before starting this version against a database created by an older one:
+--   psql -d library -f src/main/resources/db/sequence-ids.sql
+-- Without it ddl-auto: update creates each sequence at 1 and the first inserts collide with existing ids.
+
+BEGIN;
+
+CREATE FUNCTION pg_temp.move_to_sequence(table_name TEXT) RETURNS VOID AS $$
+DECLARE
+    sequence_name TEXT := table_name || '_seq';
+    max_id BIGINT;
+BEGIN
+    EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', table_name);
+    EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50', sequence_name);
+    EXECUTE format('SELECT COALESCE(max(id), 0) FROM %I', table_name) INTO max_id;
+    -- Hibernate uses the 50 ids ending at the value nextval returns, so the first block starts at max(id) + 1
+    PERFORM setval(sequence_name::regclass, max_id + 50, false);
+END $$ LANGUAGE plpgsql;
+
+SELECT pg_temp.move_to_sequence('book_activity_history');
+SELECT pg_temp.move_to_sequence('book_withdrawal');
+SELECT pg_temp.move_to_sequence('book_return');
+SELECT pg_temp.move_to_sequence('book');
+SELECT pg_temp.move_to_sequence('notification');
+
+COMMIT;
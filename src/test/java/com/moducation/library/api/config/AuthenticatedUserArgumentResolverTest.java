@@ -0,0 +1,60 @@
+package com.moducation.library.api.config;
+
+import com.moducation.library.api.dto.AuthenticatedUser;
+import com.moducation.library.api.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthenticatedUserArgumentResolverTest {
+    private UserService userService;
+    private AuthenticatedUserArgumentResolver resolver;
+
+    @BeforeEach
+    public void setUp() {
+        userService = mock(UserService.class);
+        resolver = new AuthenticatedUserArgumentResolver(userService);
+    }
+
+    @Test
+    public void testResolvesOncePerRequest() {
+        AuthenticatedUser user = new AuthenticatedUser(1L, (byte) 0);
+        when(userService.getPrincipal(1L)).thenReturn(user);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.getSession().setAttribute("userId", 1L);
+
+        assertEquals(user, resolver.resolve(request));
+        assertEquals(user, resolver.resolve(request));
+
+        verify(userService, times(1)).getPrincipal(1L);
+    }
+
+    @Test
+    public void testNoSession() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        assertNull(resolver.resolve(request));
+        assertNull(request.getSession(false));
+        verify(userService, never()).getPrincipal(any());
+    }
+
+    @Test
+    public void testUserNoLongerExists() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.getSession().setAttribute("userId", 2L);
+
+        assertNull(resolver.resolve(request));
+        assertNull(resolver.resolve(request));
+
+        verify(userService, times(1)).getPrincipal(2L);
+    }
+}
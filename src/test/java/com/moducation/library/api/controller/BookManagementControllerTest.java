@@ -1,26 +1,25 @@
 package com.moducation.library.api.controller;
 
+import com.moducation.library.api.dto.AuthenticatedUser;
+import com.moducation.library.api.dto.BatchItemResult;
+import com.moducation.library.api.dto.LoanReceipt;
+import com.moducation.library.api.dto.ReservationReceipt;
+import com.moducation.library.api.dto.ReturnReceipt;
 import com.moducation.library.api.models.Book;
-import com.moducation.library.api.models.BookActivityHistory;
-import com.moducation.library.api.models.BookReturn;
-import com.moducation.library.api.models.BookWithdrawal;
-import com.moducation.library.api.models.LibraryUser;
 import com.moducation.library.api.service.BookService;
-import com.moducation.library.api.service.UserService;
 
+import java.sql.Date;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
-import jakarta.servlet.http.HttpSession;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
 
-import static com.moducation.library.api.utils.Constants.RETURN_CODE;
-import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -34,16 +33,16 @@ import static org.springframework.http.HttpStatus.*;
 
 class BookManagementControllerTest {
 
+    private static final AuthenticatedUser USER = new AuthenticatedUser(1L, (byte) 0);
+
     private BookService bookService;
-    private UserService userService;
 
     private BookManagementController bookController;
 
     @BeforeEach
     void setup() {
         bookService = mock(BookService.class);
-        userService = mock(UserService.class);
-        bookController = new BookManagementController(bookService, userService);
+        bookController = new BookManagementController(bookService);
     }
 
     @Test
@@ -256,156 +255,181 @@ class BookManagementControllerTest {
     @Test
     void testBorrowBook_Success() {
         Book book = Book.builder().id(1L).title("Test Book").build();
-        LibraryUser user = LibraryUser.builder().username("testUser").firstname("Test USer").build();
-
-        HttpSession session = mock(HttpSession.class);
-        when(session.getAttribute("userId")).thenReturn(1L);
-        when(userService.getUserById(1L)).thenReturn(user);
-        when(bookService.checkIfBookIsAvailable(1L)).thenReturn(true);
 
-        BookActivityHistory activityHistory = BookActivityHistory.builder().type(1).book(book).libraryUser(user).build();
-        when(bookService.newActivity(book, user, 1)).thenReturn(activityHistory);
+        LoanReceipt receipt = new LoanReceipt(1L, 1L, 1L, new Date(System.currentTimeMillis()));
+        when(bookService.checkout(1L, 1L)).thenReturn(receipt);
 
-        BookWithdrawal withdrawal = BookWithdrawal.builder().id(1L).bookActivity(activityHistory).libraryUser(user).build();
-        when(bookService.newWithdrawal(activityHistory, user)).thenReturn(withdrawal);
-
-        ResponseEntity<Object> response = bookController.borrowBook(book, session);
+        ResponseEntity<Object> response = bookController.borrowBook(book, USER);
 
         assertEquals(200, response.getStatusCode().value());
-        assertNotNull(response.getBody());
-        assertEquals(withdrawal, response.getBody());
+        assertEquals(receipt, response.getBody());
 
-        verify(bookService, times(1)).checkIfBookIsAvailable(1L);
-        verify(bookService, times(1)).borrowBook(1L);
-        verify(bookService, times(1)).newActivity(book, user, 1);
-        verify(bookService, times(1)).newWithdrawal(activityHistory, user);
+        verify(bookService, times(1)).checkout(1L, 1L);
     }
 
     @Test
     void testBorrowBook_BookNotAvailable() {
         Book book = Book.builder().id(1L).title("Test Book").build();
-        HttpSession session = mock(HttpSession.class);
-        LibraryUser user = LibraryUser.builder().username("testUser").firstname("Test USer").build();
-        when(session.getAttribute("userId")).thenReturn(1L);
-        when(userService.getUserById(1L)).thenReturn(user);
-        when(bookService.checkIfBookIsAvailable(1L)).thenReturn(false);
+        when(bookService.checkout(1L, 1L)).thenReturn(null);
 
-        ResponseEntity<Object> response = bookController.borrowBook(book, session);
+        ResponseEntity<Object> response = bookController.borrowBook(book, USER);
 
         assertEquals(400, response.getStatusCode().value());
         assertEquals("book is not available.", response.getBody());
 
-        verify(bookService, times(1)).checkIfBookIsAvailable(1L);
-        verify(bookService, never()).borrowBook(anyLong());
-        verify(bookService, never()).newActivity(book, user, 1);
-        verify(bookService, never()).newWithdrawal(any(), any());
+        verify(bookService, times(1)).checkout(1L, 1L);
     }
 
     @Test
     void testBorrowBook_NoUserInSession() {
         Book book = Book.builder().id(1L).title("Test Book").build();
-        HttpSession session = mock(HttpSession.class);
-        when(session.getAttribute("userId")).thenReturn(null);
 
-        ResponseEntity<Object> response = bookController.borrowBook(book, session);
+        ResponseEntity<Object> response = bookController.borrowBook(book, null);
 
         assertEquals(401, response.getStatusCode().value());
-        assertEquals("please login", response.getBody()); // Assuming session.getAttribute("user") returns null
+        assertEquals("please login", response.getBody());
 
-        verify(bookService, never()).checkIfBookIsAvailable(anyLong());
-        verify(bookService, never()).borrowBook(anyLong());
-        verify(bookService, never()).newActivity(any(), any(), anyInt());
-        verify(bookService, never()).newWithdrawal(any(), any());
+        verify(bookService, never()).checkout(anyLong(), anyLong());
     }
 
     @Test
     void testBorrowBook_Exception() {
         Book book = Book.builder().id(1L).title("Test Book").build();
-        LibraryUser user = LibraryUser.builder().username("testUser").firstname("Test USer").build();
-        HttpSession session = mock(HttpSession.class);
-        when(session.getAttribute("userId")).thenReturn(1L);
-        when(userService.getUserById(1L)).thenReturn(user);
 
-        when(bookService.checkIfBookIsAvailable(1L)).thenThrow(new RuntimeException("Unexpected error"));
+        when(bookService.checkout(1L, 1L)).thenThrow(new RuntimeException("Unexpected error"));
 
-        ResponseEntity<Object> response = bookController.borrowBook(book, session);
+        ResponseEntity<Object> response = bookController.borrowBook(book, USER);
 
         assertEquals(500, response.getStatusCode().value());
         assertEquals("Unexpected error", response.getBody());
 
-        verify(bookService, times(1)).checkIfBookIsAvailable(1L);
-        verify(bookService, never()).borrowBook(anyLong());
-        verify(bookService, never()).newActivity(any(), any(), anyInt());
-        verify(bookService, never()).newWithdrawal(any(), any());
+        verify(bookService, times(1)).checkout(1L, 1L);
     }
+
     @Test
-    public void testReturnBook_Success() {
-        Long userId = 1L;
-        HttpSession session = mock(HttpSession.class);
-        when(session.getAttribute("userId")).thenReturn(userId);
+    void testBorrowBooks_TooMany() {
 
-        Book book = new Book();
-        book.setId(1L);
+        ResponseEntity<Object> response = bookController.borrowBooks(Collections.nCopies(51, 1L), USER);
 
-        LibraryUser user = new LibraryUser();
-        user.setId(userId);
+        assertEquals(400, response.getStatusCode().value());
+        verify(bookService, never()).checkoutBatch(anyLong(), anyList());
+    }
 
-        BookActivityHistory activityHistory = new BookActivityHistory();
-        BookActivityHistory withdrawalActivity = new BookActivityHistory();
-        BookWithdrawal withdrawal = new BookWithdrawal();
-        BookReturn bookReturn = new BookReturn();
+    @Test
+    void testBorrowBooks_Success() {
+        List<BatchItemResult<LoanReceipt>> results = List.of(BatchItemResult.failure(2L, "book is not available."));
+        when(bookService.checkoutBatch(1L, List.of(2L))).thenReturn(results);
 
-        when(userService.getUserById(userId)).thenReturn(user);
-        doNothing().when(bookService).returnBook(book.getId());
-        when(bookService.newActivity(book, user, RETURN_CODE)).thenReturn(activityHistory);
-        when(bookService.getBookActivityHistory(WITHDRAWAL_CODE, user, book)).thenReturn(withdrawalActivity);
-        when(bookService.getBookWithdrawal(withdrawalActivity, user)).thenReturn(withdrawal);
-        when(bookService.newReturn(activityHistory, user, book, withdrawal)).thenReturn(bookReturn);
+        ResponseEntity<Object> response = bookController.borrowBooks(List.of(2L), USER);
 
-        ResponseEntity<Object> response = bookController.returnBook(book, session);
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(results, response.getBody());
+    }
 
-        assertEquals(OK, response.getStatusCode());
-        assertEquals(bookReturn, response.getBody());
+    @Test
+    void testBatchesNeedALogin() {
+        assertEquals("please login", bookController.borrowBooks(List.of(2L), null).getBody());
+        assertEquals("please login", bookController.returnBooks(List.of(2L), null).getBody());
+
+        verify(bookService, never()).checkoutBatch(anyLong(), anyList());
+        verify(bookService, never()).checkinBatch(anyLong(), anyList());
     }
 
     @Test
-    public void testReturnBook_UserIdNull() {
+    public void testReturnBook_Success() {
         Book book = new Book();
-        HttpSession session = mock(HttpSession.class);
+        book.setId(1L);
 
-        ResponseEntity<Object> response = bookController.returnBook(book, session);
+        ReturnReceipt receipt = new ReturnReceipt(3L, 2L, 1L, 1L, false);
+        when(bookService.checkin(1L, 1L)).thenReturn(receipt);
 
-        assertEquals(UNAUTHORIZED, response.getStatusCode());
-        assertEquals("user id is null.", response.getBody());
+        ResponseEntity<Object> response = bookController.returnBook(book, USER);
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(receipt, response.getBody());
     }
 
     @Test
-    public void testReturnBook_UserNotFound() {
-        Long userId = 1L;
-        HttpSession session = mock(HttpSession.class);
-        when(session.getAttribute("userId")).thenReturn(1L);
+    public void testReturnBook_NoOpenLoan() {
+        Book book = new Book();
+        book.setId(1L);
+
+        when(bookService.checkin(1L, 1L)).thenReturn(null);
+
+        ResponseEntity<Object> response = bookController.returnBook(book, USER);
 
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals("You have not borrowed this book.", response.getBody());
+    }
+
+    @Test
+    public void testReturnBook_NotLoggedIn() {
         Book book = new Book();
-        when(userService.getUserById(userId)).thenReturn(null);
 
-        ResponseEntity<Object> response = bookController.returnBook(book, session);
+        ResponseEntity<Object> response = bookController.returnBook(book, null);
 
         assertEquals(UNAUTHORIZED, response.getStatusCode());
-        assertEquals("User not found.", response.getBody());
+        assertEquals("please login", response.getBody());
+        verify(bookService, never()).checkin(anyLong(), anyLong());
     }
 
     @Test
     public void testReturnBook_ExceptionThrown() {
-        Long userId = 1L;
-        HttpSession session = mock(HttpSession.class);
-        when(session.getAttribute("userId")).thenReturn(1L);
-
         Book book = new Book();
-        when(userService.getUserById(userId)).thenThrow(new RuntimeException("Database error"));
+        book.setId(1L);
+        when(bookService.checkin(1L, 1L)).thenThrow(new RuntimeException("Database error"));
 
-        ResponseEntity<Object> response = bookController.returnBook(book, session);
+        ResponseEntity<Object> response = bookController.returnBook(book, USER);
 
         assertEquals(INTERNAL_SERVER_ERROR, response.getStatusCode());
         assertEquals("Database error", response.getBody());
     }
+
+    @Test
+    public void testReserveBook_Success() {
+        ReservationReceipt receipt = new ReservationReceipt(3L, 2L, 1L, 4);
+        when(bookService.reserve(1L, 2L)).thenReturn(receipt);
+
+        ResponseEntity<Object> response = bookController.reserveBook(Book.builder().id(2L).build(), USER);
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(receipt, response.getBody());
+    }
+
+    @Test
+    public void testReserveBook_Available() {
+        when(bookService.reserve(1L, 2L)).thenReturn(null);
+
+        ResponseEntity<Object> response = bookController.reserveBook(Book.builder().id(2L).build(), USER);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals("book is available, borrow it instead.", response.getBody());
+    }
+
+    @Test
+    public void testReserveBook_AlreadyReserved() {
+        when(bookService.reserve(1L, 2L)).thenThrow(new IllegalArgumentException("You have already reserved this book."));
+
+        ResponseEntity<Object> response = bookController.reserveBook(Book.builder().id(2L).build(), USER);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testReserveBook_NotLoggedIn() {
+        ResponseEntity<Object> response = bookController.reserveBook(Book.builder().id(2L).build(), null);
+
+        assertEquals(UNAUTHORIZED, response.getStatusCode());
+        assertEquals("please login", response.getBody());
+        verify(bookService, never()).reserve(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testCancelReservation() {
+        when(bookService.cancelReservation(1L, 2L)).thenReturn(true);
+
+        assertEquals(OK, bookController.cancelReservation(2L, USER).getStatusCode());
+        assertEquals(BAD_REQUEST, bookController.cancelReservation(3L, USER).getStatusCode());
+        assertEquals(UNAUTHORIZED, bookController.cancelReservation(2L, null).getStatusCode());
+    }
 }
@@ -0,0 +1,102 @@
+package com.moducation.library.api.controller;
+
+import com.moducation.library.api.dto.EventRegistration;
+import com.moducation.library.api.dto.EventRequest;
+import com.moducation.library.api.dto.EventSeats;
+import com.moducation.library.api.models.Event;
+import com.moducation.library.api.service.EventService;
+import jakarta.servlet.http.HttpSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+class EventControllerTest {
+    private EventService eventService;
+    private EventController eventController;
+    private HttpSession session;
+
+    @BeforeEach
+    void setup() {
+        eventService = mock(EventService.class);
+        eventController = new EventController(eventService);
+        session = mock(HttpSession.class);
+        when(session.getAttribute("userId")).thenReturn(1L);
+    }
+
+    @Test
+    void testCreateEvent() {
+        Event event = Event.builder().id(5L).capacity(100).build();
+        when(eventService.create(2L, "Reading", 100)).thenReturn(event);
+
+        ResponseEntity<Object> response = eventController.createEvent(new EventRequest(2L, "Reading", 100), session);
+
+        assertEquals(CREATED, response.getStatusCode());
+        assertEquals(event, response.getBody());
+    }
+
+    @Test
+    void testCreateEvent_NoCapacity() {
+        ResponseEntity<Object> response = eventController.createEvent(new EventRequest(2L, "Reading", 0), session);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        verify(eventService, never()).create(any(), any(), anyInt());
+    }
+
+    @Test
+    void testCreateEvent_NoBook() {
+        ResponseEntity<Object> response = eventController.createEvent(new EventRequest(2L, "Reading", 10), session);
+
+        assertEquals(NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testGetSeats() {
+        EventSeats seats = new EventSeats(5L, 100, 37);
+        when(eventService.seats(5L)).thenReturn(seats);
+
+        assertEquals(seats, eventController.getSeats(5L).getBody());
+        assertEquals(NOT_FOUND, eventController.getSeats(6L).getStatusCode());
+    }
+
+    @Test
+    void testRegister() {
+        EventRegistration registration = new EventRegistration(5L, 1L, true);
+        when(eventService.register(1L, 5L)).thenReturn(registration);
+
+        ResponseEntity<Object> response = eventController.register(5L, session);
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(registration, response.getBody());
+        assertEquals(NOT_FOUND, eventController.register(6L, session).getStatusCode());
+    }
+
+    @Test
+    void testRegister_NotLoggedIn() {
+        ResponseEntity<Object> response = eventController.register(5L, mock(HttpSession.class));
+
+        assertEquals(UNAUTHORIZED, response.getStatusCode());
+        verify(eventService, never()).register(anyLong(), anyLong());
+    }
+
+    @Test
+    void testCancelRegistration() {
+        when(eventService.cancel(1L, 5L)).thenReturn(true);
+
+        assertEquals(OK, eventController.cancelRegistration(5L, session).getStatusCode());
+        assertEquals(BAD_REQUEST, eventController.cancelRegistration(6L, session).getStatusCode());
+    }
+}
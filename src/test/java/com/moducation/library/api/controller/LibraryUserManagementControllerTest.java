@@ -1,6 +1,15 @@
 package com.moducation.library.api.controller;
 
+import com.moducation.library.api.config.AuthenticatedUserArgumentResolver;
+import com.moducation.library.api.dto.AuthenticatedUser;
+import com.moducation.library.api.dto.LoanHistoryEntry;
+import com.moducation.library.api.dto.LoanHistoryPage;
+import com.moducation.library.api.dto.NotificationMessage;
+import com.moducation.library.api.exceptions.PasswordHashingBusyException;
 import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.service.LoanHistoryService;
+import com.moducation.library.api.service.LoginThrottle;
+import com.moducation.library.api.service.NotificationService;
 import com.moducation.library.api.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,11 +23,17 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.sql.Date;
+import java.util.List;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.hamcrest.Matchers.is;
 
@@ -30,6 +45,15 @@ class LibraryUserManagementControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private LoanHistoryService loanHistoryService;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
     @InjectMocks
     private UserManagementController userController;
 
@@ -41,7 +65,8 @@ class LibraryUserManagementControllerTest {
     @BeforeEach
     void setUp() {
         passwordEncoder = new BCryptPasswordEncoder();
-        mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(userController)
+                .setCustomArgumentResolvers(new AuthenticatedUserArgumentResolver(userService)).build();
     }
 
 
@@ -85,6 +110,46 @@ class LibraryUserManagementControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    public void testLoginUserThrottledBeforeHashing() throws Exception {
+        when(loginThrottle.acquire(username, "127.0.0.1")).thenReturn(42L);
+        mockMvc.perform(post("/users/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "42"));
+
+        verify(userService, never()).getUserByUsername(Mockito.anyString());
+        verify(userService, never()).verifyPassword(Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void testLoginUserHashingPoolFull() throws Exception {
+        LibraryUser libraryUser = LibraryUser.builder().id(1L).username(username).password(passwordEncoder.encode(password)).build();
+        when(userService.getUserByUsername(username)).thenReturn(libraryUser);
+        when(userService.verifyPassword(Mockito.anyString(), Mockito.anyString()))
+                .thenThrow(new PasswordHashingBusyException("busy"));
+        mockMvc.perform(post("/users/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    public void testLoginUserSuccessTakesBackTheAttempt() throws Exception {
+        LibraryUser libraryUser = LibraryUser.builder().id(1L).username(username).password(passwordEncoder.encode(password)).build();
+        when(userService.getUserByUsername(username)).thenReturn(libraryUser);
+        when(userService.verifyPassword(Mockito.anyString(), Mockito.anyString())).thenReturn(true);
+        mockMvc.perform(post("/users/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk());
+
+        verify(loginThrottle).succeeded(username, "127.0.0.1");
+        verify(userService).rehashIfNeeded(libraryUser, password);
+    }
+
     @Test
     public void testRegisterUserSuccess() throws Exception {
         LibraryUser libraryUser = LibraryUser.builder().id(1L).username("testuser").build();
@@ -158,4 +223,66 @@ class LibraryUserManagementControllerTest {
         mockMvc.perform(get("/users/1/profile"))
                 .andExpect(status().isInternalServerError());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetLoanHistory() throws Exception {
+        when(userService.getPrincipal(1L)).thenReturn(new AuthenticatedUser(1L, (byte) 3));
+        LoanHistoryEntry entry = new LoanHistoryEntry(5L, 1, Date.valueOf("2024-03-01"), 2L, "Dune", "Frank Herbert");
+        when(loanHistoryService.findPage(1L, null, null)).thenReturn(new LoanHistoryPage(List.of(entry), "next"));
+
+        mockMvc.perform(get("/users/1/history").sessionAttr("userId", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entries[0].title", is("Dune")))
+                .andExpect(jsonPath("$.nextCursor", is("next")));
+    }
+
+    @Test
+    public void testGetLoanHistoryNotLoggedIn() throws Exception {
+        mockMvc.perform(get("/users/1/history"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void testGetLoanHistoryOfAnotherUser() throws Exception {
+        when(userService.getPrincipal(1L)).thenReturn(new AuthenticatedUser(1L, (byte) 3));
+
+        mockMvc.perform(get("/users/2/history").sessionAttr("userId", 1L))
+                .andExpect(status().isForbidden());
+        verify(loanHistoryService, never()).findPage(2L, null, null);
+    }
+
+    @Test
+    public void testGetLoanHistoryOfAnotherUserAsLibrarian() throws Exception {
+        when(userService.getPrincipal(1L)).thenReturn(new AuthenticatedUser(1L, (byte) 2));
+        when(loanHistoryService.findPage(2L, null, null)).thenReturn(new LoanHistoryPage(List.of(), null));
+
+        mockMvc.perform(get("/users/2/history").sessionAttr("userId", 1L))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testGetLoanHistoryBadCursor() throws Exception {
+        when(userService.getPrincipal(1L)).thenReturn(new AuthenticatedUser(1L, (byte) 3));
+        when(loanHistoryService.findPage(1L, "bad", null)).thenThrow(new IllegalArgumentException("Invalid cursor."));
+
+        mockMvc.perform(get("/users/1/history").param("cursor", "bad").sessionAttr("userId", 1L))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testGetNotifications() throws Exception {
+        NotificationMessage message = new NotificationMessage(7L, 1, "\"Dune\" was due back on 2024-03-01.", Date.valueOf("2024-03-02"));
+        when(notificationService.latest(1L, null)).thenReturn(List.of(message));
+
+        mockMvc.perform(get("/users/1/notifications").sessionAttr("userId", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(7)))
+                .andExpect(jsonPath("$[0].type", is(1)));
+    }
+
+    @Test
+    public void testGetNotificationsOfAnotherUser() throws Exception {
+        mockMvc.perform(get("/users/2/notifications").sessionAttr("userId", 1L))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,161 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.moducation.library.api.dto.ActivityExportRow;
+import com.moducation.library.api.models.ActivityArchive;
+import com.moducation.library.api.repositories.ActivityArchiveRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ActivityArchiveServiceTest {
+    @TempDir
+    Path archiveDir;
+
+    private ObjectMapper objectMapper;
+    private ActivityArchiveRepository activityArchiveRepository;
+    private JdbcTemplate jdbcTemplate;
+    private ActivityArchiveService activityArchiveService;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        activityArchiveRepository = mock(ActivityArchiveRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        activityArchiveService = new ActivityArchiveService(jdbcTemplate, TransactionOperations.withoutTransaction(),
+                activityArchiveRepository, objectMapper, 2, 12, archiveDir.toString());
+    }
+
+    @Test
+    public void testPartitionName() {
+        assertEquals("book_activity_history_p202403", ActivityArchiveService.partitionName(YearMonth.of(2024, 3)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMaintenanceSkipsDatabasesOtherThanPostgres() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(false);
+
+        activityArchiveService.maintain();
+        activityArchiveService.maintain();
+
+        // asked once, and the Postgres catalogs are never queried
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Boolean.class), any(Object[].class));
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    public void testMaintenanceSkipsWhileAnotherInstanceHoldsTheLock() throws SQLException {
+        PreparedStatement unlock = onPartitionedPostgres(false);
+
+        activityArchiveService.maintain();
+
+        // another instance holds the lock, nothing is created or archived here
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(unlock, never()).execute();
+    }
+
+    @Test
+    public void testMaintenanceRunsUnderTheLockAndReleasesIt() throws SQLException {
+        PreparedStatement unlock = onPartitionedPostgres(true);
+
+        activityArchiveService.maintain();
+
+        // this month and the two ahead
+        verify(jdbcTemplate, times(3)).execute(startsWith("CREATE TABLE IF NOT EXISTS book_activity_history_p"));
+        verify(unlock).execute();
+    }
+
+    @Test
+    public void testExportArchivedFiltersRangeUserAndBook() throws IOException {
+        ActivityArchive january = archive("2023-01-01", "2023-02-01", List.of(
+                new ActivityExportRow(1L, 1, 7L, 10L, Date.valueOf("2023-01-05")),
+                new ActivityExportRow(2L, 1, 8L, 10L, Date.valueOf("2023-01-20")),
+                new ActivityExportRow(3L, 2, 7L, 10L, Date.valueOf("2023-01-31"))));
+        ActivityArchive february = archive("2023-02-01", "2023-03-01", List.of(
+                new ActivityExportRow(4L, 1, 7L, 11L, Date.valueOf("2023-02-02")),
+                new ActivityExportRow(5L, 1, 7L, 10L, Date.valueOf("2023-02-25"))));
+        when(activityArchiveRepository.findOverlapping(any(), any())).thenReturn(List.of(january, february));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = activityArchiveService.exportArchived(out, false,
+                LocalDate.of(2023, 1, 10), LocalDate.of(2023, 2, 10), 7L, 10L);
+
+        assertEquals(1, count);
+        ActivityExportRow row = objectMapper.readValue(out.toString(StandardCharsets.UTF_8).trim(), ActivityExportRow.class);
+        assertEquals(3L, row.id());
+    }
+
+    // every ConnectionCallback runs against a Postgres connection whose advisory lock is free or taken
+    @SuppressWarnings("unchecked")
+    private PreparedStatement onPartitionedPostgres(boolean lockFree) throws SQLException {
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+
+        PreparedStatement lock = mock(PreparedStatement.class);
+        ResultSet locked = mock(ResultSet.class);
+        when(connection.prepareStatement("SELECT pg_try_advisory_lock(?)")).thenReturn(lock);
+        when(lock.executeQuery()).thenReturn(locked);
+        when(locked.next()).thenReturn(true);
+        when(locked.getBoolean(1)).thenReturn(lockFree);
+        PreparedStatement unlock = mock(PreparedStatement.class);
+        when(connection.prepareStatement("SELECT pg_advisory_unlock(?)")).thenReturn(unlock);
+
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any(Object[].class))).thenReturn(true);
+
+        return unlock;
+    }
+
+    private ActivityArchive archive(String start, String end, List<ActivityExportRow> rows) throws IOException {
+        Path file = archiveDir.resolve(start + ".ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (ActivityExportRow row : rows) {
+                out.write((objectMapper.writeValueAsString(row) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        return ActivityArchive.builder()
+                .partitionName(start)
+                .rangeStart(Date.valueOf(start))
+                .rangeEnd(Date.valueOf(end))
+                .filePath(file.toString())
+                .rowCount((long) rows.size()).build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReserved;
+import com.moducation.library.api.events.BookReturned;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.BookActivityHistory;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.repositories.BookReservationRepository;
+import com.moducation.library.api.repositories.BookReturnRepository;
+import com.moducation.library.api.repositories.BookWithdrawalRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Date;
+
+import static com.moducation.library.api.utils.Constants.RESERVE_CODE;
+import static com.moducation.library.api.utils.Constants.RETURN_CODE;
+import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ActivityHistoryRecorderTest {
+    @Mock
+    private BookWithdrawalRepository bookWithdrawalRepository;
+
+    @Mock
+    private BookReturnRepository bookReturnRepository;
+
+    @Mock
+    private BookReservationRepository bookReservationRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private ActivityHistoryRecorder activityHistoryRecorder;
+
+    @BeforeEach
+    public void setUp() {
+        activityHistoryRecorder = new ActivityHistoryRecorder(bookWithdrawalRepository, bookReturnRepository,
+                bookReservationRepository, entityManager);
+    }
+
+    @Test
+    public void testBorrowWritesAndLinksHistory() {
+        Date borrowedOn = Date.valueOf("2024-03-01");
+        when(bookWithdrawalRepository.existsByIdAndBookActivityIsNotNull(1L)).thenReturn(false);
+
+        activityHistoryRecorder.on(new BookBorrowed(1L, 10L, 100L, Date.valueOf("2024-03-08"), borrowedOn));
+
+        ArgumentCaptor<BookActivityHistory> activity = ArgumentCaptor.forClass(BookActivityHistory.class);
+        verify(entityManager).persist(activity.capture());
+        assertEquals(WITHDRAWAL_CODE, activity.getValue().getType());
+        assertEquals(borrowedOn, activity.getValue().getDate());
+        verify(entityManager).getReference(LibraryUser.class, 10L);
+        verify(entityManager).getReference(Book.class, 100L);
+        verify(bookWithdrawalRepository).linkActivity(1L, activity.getValue());
+    }
+
+    @Test
+    public void testRepublishedBorrowIsSkipped() {
+        when(bookWithdrawalRepository.existsByIdAndBookActivityIsNotNull(1L)).thenReturn(true);
+
+        activityHistoryRecorder.on(new BookBorrowed(1L, 10L, 100L, Date.valueOf("2024-03-08"), Date.valueOf("2024-03-01")));
+
+        verify(entityManager, never()).persist(any());
+        verify(bookWithdrawalRepository, never()).linkActivity(anyLong(), any());
+    }
+
+    @Test
+    public void testReturnWritesAndLinksHistory() {
+        when(bookReturnRepository.existsByIdAndBookActivityHistoryIsNotNull(7L)).thenReturn(false);
+
+        activityHistoryRecorder.on(new BookReturned(7L, 1L, 10L, 100L, false, Date.valueOf("2024-03-05")));
+
+        ArgumentCaptor<BookActivityHistory> activity = ArgumentCaptor.forClass(BookActivityHistory.class);
+        verify(entityManager).persist(activity.capture());
+        assertEquals(RETURN_CODE, activity.getValue().getType());
+        verify(bookReturnRepository).linkActivity(7L, activity.getValue());
+    }
+
+    @Test
+    public void testReservationWritesAndLinksHistoryOnce() {
+        Date reservedOn = Date.valueOf("2024-03-02");
+        when(bookReservationRepository.existsByIdAndBookActivityIsNotNull(4L)).thenReturn(false, true);
+
+        activityHistoryRecorder.on(new BookReserved(4L, 10L, 100L, reservedOn));
+        activityHistoryRecorder.on(new BookReserved(4L, 10L, 100L, reservedOn));
+
+        ArgumentCaptor<BookActivityHistory> activity = ArgumentCaptor.forClass(BookActivityHistory.class);
+        verify(entityManager).persist(activity.capture());
+        assertEquals(RESERVE_CODE, activity.getValue().getType());
+        assertEquals(reservedOn, activity.getValue().getDate());
+        verify(bookReservationRepository).linkActivity(4L, activity.getValue());
+    }
+}
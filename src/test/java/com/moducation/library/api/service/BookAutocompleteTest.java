@@ -0,0 +1,174 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.Suggestion;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class BookAutocompleteTest {
+    private BookAutocomplete autocomplete;
+
+    @BeforeEach
+    public void setUp() {
+        autocomplete = new BookAutocomplete(mock(BookRepository.class), 3);
+        autocomplete.rebuild(List.of(
+                new Book(1L, "The Hobbit", "J.R.R. Tolkien", "Fantasy", 3, 4.5f, 45f, 10f),
+                new Book(2L, "The Silmarillion", "J.R.R. Tolkien", "Fantasy", 1, 4.0f, 8f, 2f),
+                new Book(3L, "Dune", "Frank Herbert", "Science Fiction", 2, 4.8f, 96f, 20f),
+                new Book(4L, "The Hunger Games", "Suzanne Collins", "Fiction", 2, null, null, null)
+        ));
+    }
+
+    @Test
+    public void testPrefixMatchesAnyWordRankedByScore() {
+        assertEquals(List.of("The Hobbit", "The Silmarillion", "The Hunger Games"), texts(autocomplete.suggest("the", 10)));
+        assertEquals(List.of("The Hobbit"), texts(autocomplete.suggest("HOB", 10)));
+        assertEquals(List.of("Frank Herbert"), texts(autocomplete.suggest("herb", 10)));
+    }
+
+    @Test
+    public void testAuthorsAndTitlesShareTheRanking() {
+        List<Suggestion> suggestions = autocomplete.suggest("h", 10);
+
+        assertEquals(List.of("Frank Herbert", "The Hobbit", "The Hunger Games"), texts(suggestions));
+    }
+
+    @Test
+    public void testLimitAndUnknownPrefix() {
+        assertEquals(1, autocomplete.suggest("the", 1).size());
+        assertTrue(autocomplete.suggest("xyz", 10).isEmpty());
+        assertTrue(autocomplete.suggest(" ", 10).isEmpty());
+    }
+
+    @Test
+    public void testIndexReplacesAndRemoveDeletes() {
+        autocomplete.index(new Book(4L, "Catching Fire", "Suzanne Collins", "Fiction", 2, 5.0f, 500f, 100f));
+
+        assertTrue(autocomplete.suggest("hunger", 10).isEmpty());
+        assertEquals(List.of("Catching Fire"), texts(autocomplete.suggest("catch", 10)));
+        assertEquals("Suzanne Collins", autocomplete.suggest("col", 10).getFirst().text());
+
+        autocomplete.remove(4L);
+
+        assertTrue(autocomplete.suggest("catch", 10).isEmpty());
+        assertTrue(autocomplete.suggest("suz", 10).isEmpty());
+    }
+
+    @Test
+    public void testPartialUpdateKeepsScore() {
+        double before = autocomplete.suggest("dune", 1).getFirst().score();
+
+        autocomplete.index(new Book(3L, "Dune Messiah", "Frank Herbert", "Science Fiction", 2, null, null, null));
+
+        assertEquals(before, autocomplete.suggest("dune", 1).getFirst().score());
+    }
+
+    @Test
+    public void testRerankMovesTheBookAndItsAuthor() {
+        double tolkien = autocomplete.suggest("tolk", 1).getFirst().score();
+
+        autocomplete.rerank(2L, 5.0f, 200f);
+
+        assertEquals(List.of("The Silmarillion", "The Hobbit", "The Hunger Games"), texts(autocomplete.suggest("the", 10)));
+        assertEquals(BookAutocomplete.score(new Book(2L, "The Silmarillion", "J.R.R. Tolkien", "Fantasy", 1, 5.0f, 1000f, 200f)),
+                autocomplete.suggest("silm", 1).getFirst().score());
+        assertTrue(autocomplete.suggest("tolk", 1).getFirst().score() > tolkien);
+
+        // an unknown book changes nothing
+        autocomplete.rerank(99L, 5.0f, 200f);
+        assertEquals(3, autocomplete.suggest("the", 10).size());
+    }
+
+    @Test
+    public void testPrefixesEndingInsideAnEdge() {
+        autocomplete.index(new Book(5L, "Dark Tower", "Stephen King", "Fantasy", 1, 4.0f, 4f, 1f));
+        autocomplete.index(new Book(6L, "Dart Board", "Stephen Kingsley", "Fiction", 1, 3.0f, 3f, 1f));
+
+        assertEquals(List.of("Dark Tower", "Dart Board"), texts(autocomplete.suggest("da", 10)));
+        assertEquals(List.of("Dark Tower"), texts(autocomplete.suggest("dark t", 10)));
+        assertTrue(autocomplete.suggest("darx", 10).isEmpty());
+        assertTrue(autocomplete.suggest("dark towers", 10).isEmpty());
+        assertEquals(List.of("Stephen King", "Stephen Kingsley"), texts(autocomplete.suggest("king", 10)));
+
+        autocomplete.remove(5L);
+
+        assertEquals(List.of("Dart Board"), texts(autocomplete.suggest("dar", 10)));
+        assertEquals(List.of("Stephen Kingsley"), texts(autocomplete.suggest("kings", 10)));
+        assertEquals(List.of("Stephen Kingsley"), texts(autocomplete.suggest("king", 10)));
+    }
+
+    @Test
+    public void testRemovingMatchesRebuildingWithoutTheBook() {
+        String[] words = {"the", "then", "theory", "dark", "dart", "dune", "hobbit", "hollow", "war", "ward"};
+        Random random = new Random(7);
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            float rating = random.nextInt(5) + 1;
+            books.add(new Book(id, title, words[random.nextInt(words.length)] + " Writer", "Fiction", 1, rating, rating, 1f));
+        }
+
+        BookAutocomplete indexed = new BookAutocomplete(mock(BookRepository.class), 3);
+        indexed.rebuild(books);
+        List<Book> kept = new ArrayList<>();
+        for (Book book : books) {
+            if (book.getId() % 3 == 0) {
+                indexed.remove(book.getId());
+            } else {
+                kept.add(book);
+            }
+        }
+        BookAutocomplete rebuilt = new BookAutocomplete(mock(BookRepository.class), 3);
+        rebuilt.rebuild(kept);
+
+        for (String key : words) {
+            for (int end = 1; end <= key.length(); end++) {
+                String prefix = key.substring(0, end);
+                assertEquals(rebuilt.suggest(prefix, 3), indexed.suggest(prefix, 3), prefix);
+                assertEquals(rebuilt.suggest(prefix + " w", 3), indexed.suggest(prefix + " w", 3), prefix + " w");
+            }
+        }
+    }
+
+    @Test
+    public void testRebuildMatchesIndexingOneByOne() {
+        String[] words = {"the", "then", "theory", "dark", "dart", "dune", "hobbit", "hollow", "war", "ward"};
+        String[] authors = {"Ann Dart", "Ann Darton", "Bo Ward", "Tolkien", "The Authors"};
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            // few distinct ratings, so equal scores and repeated titles tie
+            float rating = random.nextInt(3) + 3;
+            books.add(new Book(id, title, authors[random.nextInt(authors.length)], "Fiction", 1, rating, rating * 4, 4f));
+        }
+
+        BookAutocomplete rebuilt = new BookAutocomplete(mock(BookRepository.class), 3);
+        rebuilt.rebuild(books);
+        BookAutocomplete indexed = new BookAutocomplete(mock(BookRepository.class), 3);
+        indexed.rebuild(List.of());
+        books.forEach(indexed::index);
+
+        List<String> keys = new ArrayList<>(List.of(words));
+        keys.addAll(List.of("ann", "darton", "bo", "tolkien", "authors"));
+        for (String key : keys) {
+            for (int end = 1; end <= key.length(); end++) {
+                String prefix = key.substring(0, end);
+                assertEquals(indexed.suggest(prefix, 3), rebuilt.suggest(prefix, 3), prefix);
+            }
+        }
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::text).toList();
+    }
+}
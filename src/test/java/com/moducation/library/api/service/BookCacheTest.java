@@ -0,0 +1,107 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.Book;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BookCacheTest {
+    private AtomicLong clock;
+    private BookCache cache;
+
+    private Book book1;
+    private Book book2;
+    private Book book3;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new AtomicLong();
+        cache = new BookCache(2, Duration.ofSeconds(10), clock::get);
+
+        book1 = new Book(1L, "title", "author", "genre", 7, 3.0f, 30f, 10f);
+        book2 = new Book(2L, "title2", "author2", "genre", 9, 3.8f, 38f, 10f);
+        book3 = new Book(3L, "not", "author3", "genre", 9, 3.8f, 38f, 10f);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        assertNull(cache.get(1L));
+        cache.put(book1);
+
+        assertSame(book1, cache.get(1L));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testEvictAfterCommitEvictsAgainOnCommit() {
+        cache.put(book1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evictAfterCommit(1L);
+            // a reader between the update and the commit puts the old row back
+            cache.put(book1);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        cache.put(book1);
+        cache.put(book2);
+        cache.get(1L);
+        cache.put(book3);
+
+        assertNull(cache.get(2L));
+        assertSame(book1, cache.get(1L));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void testExpiresAfterTtl() {
+        cache.put(book1);
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void testGetAllReturnsOnlyCached() {
+        cache.put(book1);
+
+        Map<Long, Book> found = cache.getAll(List.of(1L, 2L));
+
+        assertEquals(Map.of(1L, book1), found);
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.put(book1);
+        cache.get(1L);
+        cache.get(2L);
+
+        assertEquals(1.0, registry.get("library.book.cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("library.book.cache.gets").tag("result", "miss").functionCounter().count());
+    }
+}
@@ -0,0 +1,101 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class BookFacetIndexTest {
+    private BookFacetIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new BookFacetIndex(mock(BookRepository.class), 10);
+        index.rebuild(List.of(
+                new Book(1L, "The Hobbit", "J.R.R. Tolkien", "Fantasy", 3, null, null, null),
+                new Book(2L, "The Silmarillion", "J.R.R. Tolkien", "Fantasy", 0, null, null, null),
+                new Book(3L, "Dune", "Frank Herbert", "Science Fiction", 2, null, null, null),
+                new Book(4L, "Earthsea", "Ursula K. Le Guin", "Fantasy", 1, null, null, null)
+        ));
+    }
+
+    @Test
+    public void testNoFilters() {
+        BookFacetIndex.Result result = index.search(null, null, null, null, 0, 10);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), result.ids());
+        assertEquals(Map.of("Fantasy", 3, "Science Fiction", 1), result.facets().get(BookFacetIndex.GENRE));
+        assertEquals(Map.of("available", 3, "unavailable", 1), result.facets().get(BookFacetIndex.AVAILABILITY));
+    }
+
+    @Test
+    public void testCombinedFiltersIgnoreCase() {
+        BookFacetIndex.Result result = index.search(List.of("fantasy"), List.of("j.r.r. tolkien"), true, null, 0, 10);
+
+        assertEquals(List.of(1L), result.ids());
+        assertEquals(1, result.total());
+    }
+
+    @Test
+    public void testFacetCountsExcludeTheirOwnFilter() {
+        BookFacetIndex.Result result = index.search(List.of("Fantasy"), null, true, null, 0, 10);
+
+        assertEquals(List.of(1L, 4L), result.ids());
+        // genre counts ignore the genre filter but keep the availability one
+        assertEquals(Map.of("Fantasy", 2, "Science Fiction", 1), result.facets().get(BookFacetIndex.GENRE));
+        assertEquals(Map.of("J.R.R. Tolkien", 1, "Ursula K. Le Guin", 1), result.facets().get(BookFacetIndex.AUTHOR));
+        assertEquals(Map.of("available", 2, "unavailable", 1), result.facets().get(BookFacetIndex.AVAILABILITY));
+    }
+
+    @Test
+    public void testSeveralValuesOfOneFacetAreOred() {
+        BookFacetIndex.Result result = index.search(null, List.of("Frank Herbert", "Ursula K. Le Guin"), null, null, 0, 10);
+
+        assertEquals(List.of(3L, 4L), result.ids());
+    }
+
+    @Test
+    public void testCandidatesAndPaging() {
+        BookFacetIndex.Result result = index.search(List.of("Fantasy"), null, null, List.of(1L, 2L, 3L), 1, 1);
+
+        assertEquals(List.of(2L), result.ids());
+        assertEquals(2, result.total());
+    }
+
+    @Test
+    public void testOnlyTheLargestCountsAreReturned() {
+        BookFacetIndex small = new BookFacetIndex(mock(BookRepository.class), 2);
+        small.rebuild(List.of(
+                new Book(1L, "The Hobbit", "J.R.R. Tolkien", "Fantasy", 3, null, null, null),
+                new Book(2L, "The Silmarillion", "J.R.R. Tolkien", "Fantasy", 0, null, null, null),
+                new Book(3L, "Dune", "Frank Herbert", "Science Fiction", 2, null, null, null),
+                new Book(4L, "Earthsea", "Ursula K. Le Guin", "Fantasy", 1, null, null, null),
+                new Book(5L, "Neuromancer", "William Gibson", "Cyberpunk", 1, null, null, null)
+        ));
+
+        BookFacetIndex.Result result = small.search(null, null, null, null, 0, 10);
+
+        // ties are broken by name
+        assertEquals(List.of("J.R.R. Tolkien", "Frank Herbert"), List.copyOf(result.facets().get(BookFacetIndex.AUTHOR).keySet()));
+        assertEquals(Map.of("Fantasy", 3, "Cyberpunk", 1), result.facets().get(BookFacetIndex.GENRE));
+        assertEquals(5, result.total());
+    }
+
+    @Test
+    public void testAvailabilityAndRemoval() {
+        index.adjustAvailability(2L, 1);
+        index.adjustAvailability(4L, -1);
+        index.remove(3L);
+
+        BookFacetIndex.Result result = index.search(null, null, true, null, 0, 10);
+
+        assertEquals(List.of(1L, 2L), result.ids());
+        assertEquals(Map.of("Fantasy", 2), result.facets().get(BookFacetIndex.GENRE));
+    }
+}
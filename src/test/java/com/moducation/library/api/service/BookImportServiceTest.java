@@ -0,0 +1,115 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moducation.library.api.dto.ImportReport;
+import com.moducation.library.api.models.Book;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BookImportServiceTest {
+    private EntityManager entityManager;
+    private BookSearchIndex bookSearchIndex;
+    private BookImportService bookImportService;
+
+    @BeforeEach
+    public void setUp() {
+        entityManager = mock(EntityManager.class);
+        bookSearchIndex = mock(BookSearchIndex.class);
+        bookImportService = new BookImportService(TransactionOperations.withoutTransaction(), bookSearchIndex,
+                mock(BookFacetIndex.class), mock(BookAutocomplete.class), new ObjectMapper(), 2, entityManager);
+
+        AtomicLong ids = new AtomicLong();
+        doAnswer(invocation -> {
+            ((Book) invocation.getArgument(0)).setId(ids.incrementAndGet());
+            return null;
+        }).when(entityManager).persist(any(Book.class));
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testImportCsvInChunks() throws IOException {
+        ImportReport report = bookImportService.importCsv(body("""
+                title,author,genre,availability
+                Dune,Frank Herbert,Science Fiction,3
+                "The Hobbit, or There and Back Again",J.R.R. Tolkien,Fantasy,2
+                Emma,Jane Austen,Classic,1
+                """));
+
+        assertEquals(3, report.rowsRead());
+        assertEquals(3, report.rowsImported());
+        assertEquals(0, report.rowsFailed());
+        verify(entityManager, times(3)).persist(any(Book.class));
+        verify(entityManager, times(2)).flush();
+        verify(bookSearchIndex, times(3)).index(any(Book.class));
+    }
+
+    @Test
+    public void testImportCsvReportsBadRows() throws IOException {
+        ImportReport report = bookImportService.importCsv(body("""
+                title,author,genre,availability
+                Dune,Frank Herbert,Science Fiction,lots
+                ,Nobody,Fantasy,1
+                Emma,Jane Austen,Classic,1
+                """));
+
+        assertEquals(3, report.rowsRead());
+        assertEquals(1, report.rowsImported());
+        assertEquals(List.of(2L, 3L), report.errors().stream().map(ImportReport.ImportError::row).toList());
+    }
+
+    @Test
+    public void testImportCsvRejectsMissingHeader() {
+        assertThrows(IllegalStateException.class, () -> bookImportService.importCsv(body("Dune,Frank Herbert,Science Fiction,3\n")));
+    }
+
+    @Test
+    public void testImportNdjson() throws IOException {
+        ImportReport report = bookImportService.importNdjson(body("""
+                {"title": "Dune", "author": "Frank Herbert", "genre": "Science Fiction", "availability": 3}
+                {"title": "Emma", "author": "Jane Austen", "genre": "Classic", "availability": -1}
+                not json
+                """));
+
+        assertEquals(3, report.rowsRead());
+        assertEquals(1, report.rowsImported());
+        assertEquals(2, report.rowsFailed());
+    }
+
+    @Test
+    public void testFailedChunkMarksEveryRow() throws IOException {
+        doThrow(new IllegalStateException("duplicate key")).when(entityManager).flush();
+
+        ImportReport report = bookImportService.importNdjson(body("""
+                {"title": "Dune", "author": "Frank Herbert", "genre": "Science Fiction", "availability": 3}
+                """));
+
+        assertEquals(0, report.rowsImported());
+        assertEquals(1, report.rowsFailed());
+    }
+
+    @Test
+    public void testParseCsvLine() {
+        assertEquals(List.of("a", "b \"c\"", ""), BookImportService.parseCsvLine("a,\"b \"\"c\"\"\","));
+    }
+}
@@ -0,0 +1,69 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class BookSearchIndexTest {
+    private BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new BookSearchIndex(mock(BookRepository.class));
+        index.rebuild(List.of(
+                new Book(1L, "The Hobbit", "J.R.R. Tolkien", "Fantasy", 3, null, null, null),
+                new Book(2L, "The Silmarillion", "J.R.R. Tolkien", "Fantasy", 1, null, null, null),
+                new Book(3L, "Dune", "Frank Herbert", "Science Fiction", 2, null, null, null)
+        ));
+    }
+
+    @Test
+    public void testSearchSubstringIgnoresCase() {
+        assertTrue(index.isReady());
+        assertEquals(List.of(1L, 2L), index.search("title", "THE"));
+        assertEquals(List.of(1L), index.search("title", "obbi"));
+        assertEquals(List.of(3L), index.search("genre", "fiction"));
+    }
+
+    @Test
+    public void testSearchShortKey() {
+        assertEquals(List.of(1L, 2L, 3L), index.search("author", "r"));
+        assertEquals(List.of(1L, 2L, 3L), index.search("title", ""));
+    }
+
+    @Test
+    public void testSearchNoMatch() {
+        assertEquals(List.of(), index.search("author", "tolkein"));
+    }
+
+    @Test
+    public void testIndexReplacesExistingBook() {
+        index.index(new Book(3L, "Children of Dune", "Frank Herbert", "Science Fiction", 2, null, null, null));
+
+        assertEquals(List.of(3L), index.search("title", "children"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testRemove() {
+        index.remove(1L);
+
+        assertEquals(List.of(2L), index.search("author", "tolkien"));
+        assertFalse(index.search("title", "hobbit").contains(1L));
+    }
+
+    @Test
+    public void testUnknownField() {
+        assertFalse(index.supports("isbn"));
+        assertThrows(IllegalArgumentException.class, () -> index.search("isbn", "123"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.BatchItemResult;
+import com.moducation.library.api.dto.LoanReceipt;
+import com.moducation.library.api.dto.ReservationReceipt;
+import com.moducation.library.api.dto.ReturnReceipt;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.BookReservation;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.models.OpenLoan;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs checkout against an embedded database and counts the SQL it sends.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+@Import({BookService.class, BookSearchIndex.class, BookCache.class, Leaderboards.class, BookFacetIndex.class,
+        BookAutocomplete.class, CoBorrowIndex.class, OverdueScheduler.class, ReservationQueue.class})
+public class BookServiceCheckoutTest {
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReservationQueue reservationQueue;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private LibraryUser user;
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        user = testEntityManager.persist(LibraryUser.builder()
+                .username("reader").email("reader@example.com").password("x")
+                .firstname("Re").lastname("Ader").role((byte) 3).build());
+        book = testEntityManager.persist(Book.builder()
+                .title("Dune").author("Frank Herbert").genre("Science Fiction").availability(2).build());
+        testEntityManager.flush();
+        testEntityManager.clear();
+    }
+
+    @Test
+    public void testCheckoutIssuesThreeStatements() {
+        // the first checkout also pre-allocates ids from the sequences
+        bookService.checkout(user.getId(), book.getId());
+        testEntityManager.flush();
+        statistics.clear();
+
+        LoanReceipt receipt = bookService.checkout(user.getId(), book.getId());
+        testEntityManager.flush();
+
+        // availability UPDATE plus the withdrawal and open loan INSERTs, the history row is written
+        // after commit by ActivityHistoryRecorder. The old path issued a user SELECT, two availability
+        // SELECTs, an UPDATE, three merge SELECTs and two INSERTs.
+        assertNotNull(receipt.withdrawalId());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    public void testCheckinFindsLoanWithoutHistoryLookup() {
+        // warm the id sequences up first, like the checkout test does
+        bookService.checkout(user.getId(), book.getId());
+        bookService.checkin(user.getId(), book.getId());
+        LoanReceipt loan = bookService.checkout(user.getId(), book.getId());
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics.clear();
+
+        ReturnReceipt receipt = bookService.checkin(user.getId(), book.getId());
+        testEntityManager.flush();
+
+        // open loan SELECT, availability UPDATE, return INSERT, open loan DELETE
+        assertEquals(loan.withdrawalId(), receipt.withdrawalId());
+        assertFalse(receipt.wasOverdue());
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertNull(bookService.checkin(user.getId(), book.getId()));
+    }
+
+    @Test
+    public void testCheckoutBatchReportsEachBook() {
+        List<BatchItemResult<LoanReceipt>> results = bookService.checkoutBatch(user.getId(), List.of(book.getId(), book.getId(), book.getId()));
+        testEntityManager.flush();
+
+        assertEquals(List.of(true, true, false), results.stream().map(BatchItemResult::success).toList());
+        assertEquals("book is not available.", results.get(2).message());
+
+        List<BatchItemResult<ReturnReceipt>> returns = bookService.checkinBatch(user.getId(), List.of(book.getId(), book.getId(), book.getId()));
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        assertEquals(List.of(true, true, false), returns.stream().map(BatchItemResult::success).toList());
+        assertEquals(results.get(0).receipt().withdrawalId(), returns.get(0).receipt().withdrawalId());
+        assertEquals(2, testEntityManager.find(Book.class, book.getId()).getAvailability());
+    }
+
+    @Test
+    public void testCheckoutWhenNoCopyLeft() {
+        bookService.checkout(user.getId(), book.getId());
+        bookService.checkout(user.getId(), book.getId());
+
+        assertNull(bookService.checkout(user.getId(), book.getId()));
+        testEntityManager.clear();
+        assertEquals(0, testEntityManager.find(Book.class, book.getId()).getAvailability());
+    }
+
+    @Test
+    public void testReturnedCopyGoesToOldestReservation() {
+        LibraryUser first = testEntityManager.persist(LibraryUser.builder()
+                .username("first").email("first@example.com").password("x")
+                .firstname("Fi").lastname("Rst").role((byte) 3).build());
+        LibraryUser second = testEntityManager.persist(LibraryUser.builder()
+                .username("second").email("second@example.com").password("x")
+                .firstname("Se").lastname("Cond").role((byte) 3).build());
+        bookService.checkout(user.getId(), book.getId());
+        bookService.checkout(user.getId(), book.getId());
+
+        ReservationReceipt reservation = bookService.reserve(first.getId(), book.getId());
+        bookService.reserve(second.getId(), book.getId());
+        testEntityManager.flush();
+
+        bookService.checkin(user.getId(), book.getId());
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        assertEquals(0, testEntityManager.find(Book.class, book.getId()).getAvailability());
+        BookReservation assigned = testEntityManager.find(BookReservation.class, reservation.reservationId());
+        assertFalse(assigned.getActive());
+        assertNotNull(assigned.getAssignedOn());
+        OpenLoan loan = testEntityManager.getEntityManager()
+                .createQuery("SELECT o FROM OpenLoan o WHERE o.userId = :userId", OpenLoan.class)
+                .setParameter("userId", first.getId()).getSingleResult();
+        assertEquals(book.getId(), loan.getBookId());
+        assertEquals(1, reservationQueue.waiting(book.getId()));
+    }
+}
@@ -0,0 +1,198 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.LoanReceipt;
+import com.moducation.library.api.dto.ReservationReceipt;
+import com.moducation.library.api.dto.ReturnReceipt;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.BookReservation;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.models.OpenLoan;
+import com.moducation.library.api.repositories.BookRepository;
+import com.moducation.library.api.repositories.BookReservationRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import com.moducation.library.api.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs checkouts, checkins and reservations from many threads against an embedded database. Every
+ * call commits on its own connection, so the tests are not transactional and H2 is told to wait for
+ * row locks longer than its default.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:concurrency;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({BookService.class, BookSearchIndex.class, BookCache.class, Leaderboards.class, BookFacetIndex.class,
+        BookAutocomplete.class, CoBorrowIndex.class, OverdueScheduler.class, ReservationQueue.class})
+public class BookServiceConcurrencyTest {
+    private static final AtomicInteger USERS = new AtomicInteger();
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OpenLoanRepository openLoanRepository;
+
+    @Autowired
+    private BookReservationRepository bookReservationRepository;
+
+    @Test
+    public void testConcurrentCheckoutsNeverOversell() throws Exception {
+        Book book = book(10);
+        List<LibraryUser> readers = users(64);
+
+        List<LoanReceipt> receipts = runConcurrently(readers.size(),
+                i -> bookService.checkout(readers.get(i).getId(), book.getId()));
+
+        long loans = receipts.stream().filter(Objects::nonNull).count();
+        int availability = bookRepository.getAvailability(book.getId());
+        assertEquals(10, loans);
+        assertEquals(0, availability);
+        assertEquals(10, loans + availability);
+        assertEquals(loans, openLoans(book.getId()));
+    }
+
+    @Test
+    public void testConcurrentCheckoutsAndCheckinsKeepTheStock() throws Exception {
+        Book book = book(5);
+        List<LibraryUser> readers = users(32);
+        AtomicInteger lowest = new AtomicInteger(5);
+
+        List<Integer> borrowed = runConcurrently(readers.size(), i -> {
+            long userId = readers.get(i).getId();
+            int loans = 0;
+            for (int round = 0; round < 20; round++) {
+                if (bookService.checkout(userId, book.getId()) != null) {
+                    loans++;
+                    lowest.accumulateAndGet(bookRepository.getAvailability(book.getId()), Math::min);
+                    assertNotNull(bookService.checkin(userId, book.getId()));
+                }
+            }
+            return loans;
+        });
+
+        // every loan was returned, so the stock is whole again and no copy was lent twice
+        assertTrue(borrowed.stream().mapToInt(Integer::intValue).sum() > 0);
+        assertTrue(lowest.get() >= 0);
+        assertEquals(5, bookRepository.getAvailability(book.getId()));
+        assertEquals(0, openLoans(book.getId()));
+    }
+
+    @Test
+    public void testRacingReturnsServeReservationsOnceAndInOrder() throws Exception {
+        int copies = 12;
+        Book book = book(copies);
+        List<LibraryUser> holders = users(copies);
+        for (LibraryUser holder : holders) {
+            assertNotNull(bookService.checkout(holder.getId(), book.getId()));
+        }
+        List<LibraryUser> reservers = users(40);
+
+        List<ReservationReceipt> reservations = runConcurrently(reservers.size(),
+                i -> bookService.reserve(reservers.get(i).getId(), book.getId()));
+        List<ReturnReceipt> returns = runConcurrently(holders.size(),
+                i -> bookService.checkin(holders.get(i).getId(), book.getId()));
+
+        assertTrue(returns.stream().allMatch(Objects::nonNull));
+        assertTrue(reservations.stream().allMatch(Objects::nonNull));
+        List<BookReservation> queue = bookReservationRepository.findAll().stream()
+                .filter(reservation -> reservation.getBook().getId().equals(book.getId()))
+                .sorted(Comparator.comparing(BookReservation::getId)).toList();
+        assertEquals(reservers.size(), queue.size());
+
+        // every copy went to a different reservation, the oldest ones, and nobody got two
+        List<BookReservation> assigned = queue.stream().filter(reservation -> reservation.getAssignedOn() != null).toList();
+        assertEquals(queue.subList(0, copies), assigned);
+        assertTrue(queue.subList(copies, queue.size()).stream().allMatch(BookReservation::getActive));
+        Set<Long> assignedUsers = Set.copyOf(assigned.stream().map(reservation -> reservation.getLibraryUser().getId()).toList());
+        List<Long> borrowers = openLoanRepository.findAll().stream()
+                .filter(loan -> loan.getBookId() == book.getId()).map(OpenLoan::getUserId).toList();
+        assertEquals(copies, borrowers.size());
+        assertEquals(assignedUsers, Set.copyOf(borrowers));
+        assertEquals(0, bookRepository.getAvailability(book.getId()));
+        assertNull(bookService.checkin(holders.get(0).getId(), book.getId()));
+    }
+
+    private Book book(int copies) {
+        return bookRepository.save(Book.builder()
+                .title("Dune").author("Frank Herbert").genre("Science Fiction").availability(copies).build());
+    }
+
+    private List<LibraryUser> users(int count) {
+        List<LibraryUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int n = USERS.incrementAndGet();
+            users.add(userRepository.save(LibraryUser.builder()
+                    .username("reader" + n).email("reader" + n + "@example.com").password("x")
+                    .firstname("Re").lastname("Ader").role((byte) 3).build()));
+        }
+        return users;
+    }
+
+    private long openLoans(long bookId) {
+        return openLoanRepository.findAll().stream().filter(loan -> loan.getBookId() == bookId).count();
+    }
+
+    private interface Task<T> {
+        T run(int index);
+    }
+
+    private static <T> List<T> runConcurrently(int threads, Task<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int index = i;
+                Callable<T> call = () -> {
+                    start.await();
+                    return task.run(index);
+                };
+                futures.add(executor.submit(call));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
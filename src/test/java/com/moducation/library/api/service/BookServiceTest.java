@@ -1,28 +1,39 @@
 package com.moducation.library.api.service;
 
+import com.moducation.library.api.dto.BookPage;
+import com.moducation.library.api.dto.QueuedReservation;
+import com.moducation.library.api.dto.ReservationReceipt;
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReserved;
+import com.moducation.library.api.events.BookReturned;
 import com.moducation.library.api.exceptions.IncorrectFilterException;
 import com.moducation.library.api.models.Book;
-import com.moducation.library.api.models.BookActivityHistory;
-import com.moducation.library.api.models.BookWithdrawal;
-import com.moducation.library.api.models.BookReturn;
+import com.moducation.library.api.models.BookReservation;
 import com.moducation.library.api.models.LibraryUser;
-import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.models.OpenLoan;
 import com.moducation.library.api.repositories.BookRepository;
-import com.moducation.library.api.repositories.BookReturnRepository;
-import com.moducation.library.api.repositories.BookWithdrawalRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import com.moducation.library.api.utils.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import jakarta.persistence.EntityManager;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.Mockito.when;
@@ -33,16 +44,34 @@ public class BookServiceTest {
     private BookRepository bookRepository;
 
     @Mock
-    private BookActivityHistoryRepository bookActivityHistoryRepository;
+    private EntityManager entityManager;
 
     @Mock
-    private BookWithdrawalRepository bookWithdrawalRepository;
+    private OpenLoanRepository openLoanRepository;
 
     @Mock
-    private EntityManager entityManager;
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookCache bookCache;
+
+    @Mock
+    private Leaderboards leaderboards;
+
+    @Mock
+    private BookFacetIndex bookFacetIndex;
 
     @Mock
-    private BookReturnRepository bookReturnRepository;
+    private BookAutocomplete bookAutocomplete;
+
+    @Mock
+    private CoBorrowIndex coBorrowIndex;
+
+    @Mock
+    private ReservationQueue reservationQueue;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private BookService bookService;
@@ -51,17 +80,13 @@ public class BookServiceTest {
     private Book book3;
 
     private LibraryUser libraryUser;
-    private BookActivityHistory bookActivityHistory;
-    private BookWithdrawal bookWithdrawal;
 
     @BeforeEach
     public void setUp() {
         book1 = new Book(1L, "title", "author", "genre", 7, 3.0f, 30f, 10f);
         book2 = new Book(2L, "title2", "author2", "genre", 9, 3.8f, 38f, 10f);
         book3 = new Book(3L, "not", "author3", "genre", 9, 3.8f, 38f, 10f);
-        bookWithdrawal = BookWithdrawal.builder().id(1L).build();
         libraryUser = LibraryUser.builder().id(1L).build();
-        bookActivityHistory = BookActivityHistory.builder().id(1L).build();
     }
 
     @Test
@@ -94,6 +119,28 @@ public class BookServiceTest {
         assertNull(result);
     }
 
+    @Test
+    public void testFindByIdCacheHit() {
+        when(bookCache.get(1L)).thenReturn(book1);
+
+        Book result = bookService.findById(1L);
+
+        verify(bookRepository, never()).findById(any());
+        assertEquals(book1.getId(), result.getId());
+    }
+
+    @Test
+    public void testFindAllByIdLoadsOnlyMisses() {
+        when(bookCache.getAll(List.of(1L, 2L, 3L))).thenReturn(Map.of(2L, book2));
+        when(bookRepository.findAllById(List.of(1L, 3L))).thenReturn(List.of(book3, book1));
+
+        List<Book> books = bookService.findAllById(List.of(1L, 2L, 3L));
+
+        assertEquals(List.of(book1, book2, book3), books);
+        verify(bookCache).put(book1);
+        verify(bookCache).put(book3);
+    }
+
     @Test
     public void testFindAll() {
         when(bookRepository.findAll()).thenReturn(List.of(book1, book2, book3));
@@ -107,6 +154,35 @@ public class BookServiceTest {
         assertEquals("genre", books.getFirst().getGenre());
     }
 
+    @Test
+    public void testFindPageReturnsCursorWhenMoreRows() throws IncorrectFilterException {
+        when(bookRepository.findFirstPageById(any())).thenReturn(List.of(book1, book2, book3));
+
+        BookPage page = bookService.findPage("id", null, 2);
+
+        assertEquals(2, page.books().size());
+        assertNotNull(page.nextCursor());
+        assertEquals(2L, KeysetCursor.decode(page.nextCursor()).id());
+    }
+
+    @Test
+    public void testFindPageAfterCursor() throws IncorrectFilterException {
+        String cursor = new KeysetCursor("title", "not", 3L).encode();
+        when(bookRepository.findPageByTitle(eq("not"), eq(3L), any())).thenReturn(List.of(book1));
+
+        BookPage page = bookService.findPage("title", cursor, 2);
+
+        assertEquals(1, page.books().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    public void testFindPageCursorForOtherSort() {
+        String cursor = new KeysetCursor("id", null, 3L).encode();
+
+        assertThrows(IncorrectFilterException.class, () -> bookService.findPage("title", cursor, 2));
+    }
+
     @Test
     public void delete() {
         bookService.delete(book1.getId());
@@ -155,6 +231,28 @@ public class BookServiceTest {
         assertEquals("genre", books.getFirst().getGenre());
     }
 
+    @Test
+    public void testFindBooksByFilterUsesIndex() throws IncorrectFilterException {
+        when(bookSearchIndex.isReady()).thenReturn(true);
+        when(bookSearchIndex.supports("title")).thenReturn(true);
+        when(bookSearchIndex.search("title", "itl")).thenReturn(List.of(1L, 2L));
+        when(bookRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(book1, book2));
+
+        List<Book> books = bookService.findBooksByFilter("title", "itl");
+
+        verify(bookRepository, never()).findByTitle(any());
+        assertEquals(2, books.size());
+    }
+
+    @Test
+    public void testSaveIndexesBook() {
+        when(bookRepository.save(book1)).thenReturn(book1);
+
+        bookService.save(book1);
+
+        verify(bookSearchIndex).index(book1);
+    }
+
     @Test
     public void testFindBooksByFilterFail() {
         assertThrows(IncorrectFilterException.class, () -> bookService.findBooksByFilter("not", "genre"));
@@ -199,81 +297,95 @@ public class BookServiceTest {
     }
 
     @Test
-    public void testBorrowBook() {
-        when(bookRepository.getAvailability(1L)).thenReturn(1);
+    public void testCheckoutPublishesBookBorrowed() {
+        when(bookRepository.takeAvailability(1L, 1)).thenReturn(1);
 
-        bookService.borrowBook(1L);
+        assertNotNull(bookService.checkout(libraryUser.getId(), 1L));
 
-        verify(bookRepository).updateAvailability(0, 1L);
+        ArgumentCaptor<BookBorrowed> event = ArgumentCaptor.forClass(BookBorrowed.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(libraryUser.getId(), event.getValue().userId());
+        assertEquals(1L, event.getValue().bookId());
+        verify(leaderboards, never()).recordBorrow(anyLong());
     }
 
     @Test
-    public void testNewActivity() {
-        when(entityManager.merge(libraryUser)).thenReturn(libraryUser);  // Return the same user instance
-        when(entityManager.merge(book1)).thenReturn(book1);
-        when(bookActivityHistoryRepository.save(any())).thenReturn(bookActivityHistory);
+    public void testCheckoutNotAvailablePublishesNothing() {
+        when(bookRepository.takeAvailability(1L, 1)).thenReturn(0);
 
-        BookActivityHistory result = bookService.newActivity(book1, libraryUser, 1);
+        assertNull(bookService.checkout(libraryUser.getId(), 1L));
 
-        assertEquals(bookActivityHistory.getId(), result.getId());
-        verify(bookActivityHistoryRepository).save(any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
     }
 
     @Test
-    public void testNewWithdrawal() {
-        when(entityManager.merge(libraryUser)).thenReturn(libraryUser);  // Return the same user instance
-        when(entityManager.merge(bookActivityHistory)).thenReturn(bookActivityHistory);
-        when(bookWithdrawalRepository.save(any())).thenReturn(bookWithdrawal);
+    public void testCheckinPublishesBookReturned() {
+        OpenLoan openLoan = OpenLoan.builder().id(5L).userId(1L).bookId(1L).withdrawalId(1L)
+                .expectedReturnDate(new java.sql.Date(0)).build();
+        when(openLoanRepository.findFirstByUserIdAndBookIdOrderByIdAsc(1L, 1L)).thenReturn(openLoan);
+
+        assertNotNull(bookService.checkin(1L, 1L));
 
-        BookWithdrawal result = bookService.newWithdrawal(bookActivityHistory, libraryUser);
-        assertEquals(result.getId(), bookWithdrawal.getId());
+        ArgumentCaptor<BookReturned> event = ArgumentCaptor.forClass(BookReturned.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().withdrawalId());
+        assertTrue(event.getValue().wasOverdue());
     }
 
     @Test
-    public void testReturnBook() {
-        bookService.returnBook(1L);
-
-        verify(bookRepository).updateAvailability(1, 1L);
+    public void testCheckinHandsCopyToNextReservation() {
+        OpenLoan openLoan = OpenLoan.builder().id(5L).userId(1L).bookId(1L).withdrawalId(1L)
+                .expectedReturnDate(new java.sql.Date(System.currentTimeMillis())).build();
+        when(openLoanRepository.findFirstByUserIdAndBookIdOrderByIdAsc(1L, 1L)).thenReturn(openLoan);
+        when(reservationQueue.claimNext(1L)).thenReturn(new QueuedReservation(9L, 2L, 1L));
+
+        assertNotNull(bookService.checkin(1L, 1L));
+
+        verify(bookRepository, never()).releaseAvailability(anyLong(), eq(1));
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        BookBorrowed borrowed = (BookBorrowed) events.getAllValues().get(0);
+        assertEquals(2L, borrowed.userId());
+        assertEquals(1L, borrowed.bookId());
+        assertEquals(1L, ((BookReturned) events.getAllValues().get(1)).userId());
     }
 
     @Test
-    public void testNewReturn() {
-        when(entityManager.merge(libraryUser)).thenReturn(libraryUser);  // Return the same user instance
-        when(entityManager.merge(book1)).thenReturn(book1);
-
-        BookReturn bookReturn = BookReturn.builder()
-                .id(1L)
-                .libraryUser(libraryUser)
-                .book(book1)
-                .bookActivityHistory(bookActivityHistory)
-                .bookWithdrawal(bookWithdrawal).build();
-
-        when(bookReturnRepository.save(any())).thenReturn(bookReturn);
-
-        BookReturn result = bookService.newReturn(bookActivityHistory, libraryUser, book1, bookWithdrawal);
-
-        assertEquals(1L, result.getId());
+    public void testReserveWhenNoCopyLeft() {
+        when(bookRepository.getAvailability(1L)).thenReturn(0);
+        when(reservationQueue.waiting(1L)).thenReturn(3);
+        when(reservationQueue.add(any(BookReservation.class))).thenAnswer(invocation -> {
+            BookReservation reservation = invocation.getArgument(0);
+            reservation.setId(9L);
+            reservation.setDate(new java.util.Date());
+            return reservation;
+        });
+
+        ReservationReceipt receipt = bookService.reserve(2L, 1L);
+
+        assertEquals(9L, receipt.reservationId());
+        assertEquals(3, receipt.ahead());
+        verify(entityManager, never()).persist(any());
+        ArgumentCaptor<BookReserved> event = ArgumentCaptor.forClass(BookReserved.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(9L, event.getValue().reservationId());
+        assertEquals(2L, event.getValue().userId());
     }
 
     @Test
-    public void testGetBookActivityHistory() {
-        BookActivityHistory bookActivityHistory = BookActivityHistory.builder().id(1L).build();
+    public void testReserveWhenAvailable() {
+        when(bookRepository.getAvailability(1L)).thenReturn(2);
 
-        when(bookActivityHistoryRepository.findBookActivityForWithdrawal(1, libraryUser, book1)).thenReturn(bookActivityHistory);
+        assertNull(bookService.reserve(2L, 1L));
 
-        BookActivityHistory result = bookService.getBookActivityHistory(1, libraryUser, book1);
-
-        assertEquals(bookActivityHistory.getId(), result.getId());
+        verify(reservationQueue, never()).add(any());
     }
 
     @Test
-    public void testGetBookWithdrawal() {
-        BookWithdrawal bookWithdrawal = BookWithdrawal.builder().id(1L).build();
-
-        when(bookWithdrawalRepository.findByBookActivityHistoryAndLibraryUser(bookActivityHistory, libraryUser)).thenReturn(bookWithdrawal);
-
-        BookWithdrawal result = bookService.getBookWithdrawal(bookActivityHistory, libraryUser);
+    public void testReserveTwice() {
+        when(bookRepository.getAvailability(1L)).thenReturn(0);
+        when(reservationQueue.isQueued(2L, 1L)).thenReturn(true);
 
-        assertEquals(bookWithdrawal.getId(), result.getId());
+        assertThrows(IllegalArgumentException.class, () -> bookService.reserve(2L, 1L));
     }
 }
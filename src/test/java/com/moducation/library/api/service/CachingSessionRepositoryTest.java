@@ -0,0 +1,330 @@
+package com.moducation.library.api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.session.MapSession;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CachingSessionRepositoryTest {
+    private static final Duration TTL = Duration.ofSeconds(5);
+    private static final Duration TIMEOUT = Duration.ofMinutes(30);
+
+    private MutableClock clock;
+    private CountingStore store;
+    private CachingSessionRepository node;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2024-09-02T08:00:00Z"));
+        store = new CountingStore();
+        node = new CachingSessionRepository(store, TTL, 1000, TIMEOUT, clock);
+    }
+
+    @Test
+    public void testAccessOnlyRequestsAreCoalescedIntoOneTouch() {
+        String id = login(node, 1L);
+        assertEquals(1, store.saves);
+
+        for (int i = 0; i < 100; i++) {
+            clock.advance(Duration.ofMillis(20));
+            request(node, id);
+        }
+        assertEquals(1, store.saves);
+        assertEquals(0, store.touches.size());
+
+        node.flush();
+
+        assertEquals(List.of(clock.instant()), store.touches);
+        assertEquals(clock.instant(), stored(id).getLastAccessedTime());
+    }
+
+    @Test
+    public void testReadsWithinTtlAreServedFromTheNearCache() {
+        String id = login(node, 1L);
+
+        clock.advance(Duration.ofSeconds(4));
+        assertEquals(1L, (Long) node.findById(id).getAttribute("userId"));
+        assertEquals(0, store.loads);
+
+        clock.advance(Duration.ofSeconds(2));
+        assertNotNull(node.findById(id));
+        assertEquals(1, store.loads);
+    }
+
+    @Test
+    public void testAttributeChangeIsWrittenRightAway() {
+        String id = login(node, 1L);
+
+        CachingSessionRepository.CachedSession session = node.findById(id);
+        session.setAttribute("userId", 2L);
+        node.save(session);
+
+        assertEquals(2, store.saves);
+        assertEquals(2L, (Long) stored(id).getAttribute("userId"));
+    }
+
+    @Test
+    public void testConcurrentRequestsKeepEachOthersChanges() {
+        String id = login(node, 1L);
+        CachingSessionRepository.CachedSession first = node.findById(id);
+        CachingSessionRepository.CachedSession second = node.findById(id);
+
+        first.setAttribute("cart", "a");
+        second.setAttribute("theme", "dark");
+        node.save(first);
+        node.save(second);
+
+        MapSession stored = stored(id);
+        assertEquals("a", stored.getAttribute("cart"));
+        assertEquals("dark", stored.getAttribute("theme"));
+        assertEquals(1L, (Long) stored.getAttribute("userId"));
+    }
+
+    @Test
+    public void testConcurrentSavesOnTwoNodesKeepBothChanges() {
+        String id = login(node, 1L);
+        CachingSessionRepository otherNode = new CachingSessionRepository(store, TTL, 1000, TIMEOUT, clock);
+        CachingSessionRepository.CachedSession first = node.findById(id);
+        CachingSessionRepository.CachedSession second = otherNode.findById(id);
+
+        first.setAttribute("cart", "a");
+        second.setAttribute("theme", "dark");
+        node.save(first);
+        otherNode.save(second);
+
+        // the second save found the first one's version, read it again and merged
+        assertEquals(1, store.conflicts);
+        MapSession stored = stored(id);
+        assertEquals("a", stored.getAttribute("cart"));
+        assertEquals("dark", stored.getAttribute("theme"));
+        assertEquals(3L, store.sessions.get(id).version());
+    }
+
+    @Test
+    public void testSessionDeletedElsewhereIsNotResurrected() {
+        String id = login(node, 1L);
+        CachingSessionRepository otherNode = new CachingSessionRepository(store, TTL, 1000, TIMEOUT, clock);
+        CachingSessionRepository.CachedSession session = otherNode.findById(id);
+
+        node.deleteById(id);
+        session.setAttribute("cart", "a");
+        otherNode.save(session);
+
+        assertNull(stored(id));
+        assertNull(otherNode.findById(id));
+    }
+
+    @Test
+    public void testSaveGivesUpWhenTheSessionKeepsChanging() {
+        String id = login(node, 1L);
+        CachingSessionRepository.CachedSession session = node.findById(id);
+        session.setAttribute("cart", "a");
+        store.alwaysConflict = true;
+
+        assertThrows(IllegalStateException.class, () -> node.save(session));
+        assertNull(stored(id).getAttribute("cart"));
+    }
+
+    @Test
+    public void testOtherNodeAndRestartSeeTheSession() {
+        String id = login(node, 1L);
+
+        CachingSessionRepository otherNode = new CachingSessionRepository(store, TTL, 1000, TIMEOUT, clock);
+        assertEquals(1L, (Long) otherNode.findById(id).getAttribute("userId"));
+
+        CachingSessionRepository restarted = new CachingSessionRepository(store, TTL, 1000, TIMEOUT, clock);
+        assertEquals(1L, (Long) restarted.findById(id).getAttribute("userId"));
+    }
+
+    @Test
+    public void testLogoutReachesOtherNodesWithinTheTtl() {
+        String id = login(node, 1L);
+        CachingSessionRepository otherNode = new CachingSessionRepository(store, TTL, 1000, TIMEOUT, clock);
+        otherNode.findById(id);
+
+        node.deleteById(id);
+        assertNull(node.findById(id));
+
+        clock.advance(TTL);
+        assertNull(otherNode.findById(id));
+    }
+
+    @Test
+    public void testExpiredSessionIsDeleted() {
+        String id = login(node, 1L);
+
+        clock.advance(TIMEOUT);
+
+        assertNull(node.findById(id));
+        assertNull(stored(id));
+    }
+
+    @Test
+    public void testTouchedSessionDoesNotExpire() {
+        String id = login(node, 1L);
+        clock.advance(Duration.ofMinutes(20));
+        request(node, id);
+        node.flush();
+
+        clock.advance(Duration.ofMinutes(20));
+        node.cleanup();
+
+        assertNotNull(node.findById(id));
+    }
+
+    @Test
+    public void testPendingTouchSurvivesAReload() {
+        String id = login(node, 1L);
+        clock.advance(Duration.ofMinutes(20));
+        request(node, id);
+
+        // the cached copy is gone, the store still has the login time
+        clock.advance(Duration.ofMinutes(15));
+        assertNotNull(node.findById(id));
+    }
+
+    @Test
+    public void testChangedIdMovesTheSession() {
+        String id = login(node, 1L);
+
+        CachingSessionRepository.CachedSession session = node.findById(id);
+        String newId = session.changeSessionId();
+        node.save(session);
+
+        assertNull(stored(id));
+        assertNull(node.findById(id));
+        assertEquals(1L, (Long) node.findById(newId).getAttribute("userId"));
+    }
+
+    @Test
+    public void testFailedTouchIsRetried() {
+        String id = login(node, 1L);
+        clock.advance(Duration.ofSeconds(1));
+        request(node, id);
+        store.failTouches = true;
+
+        node.flush();
+        store.failTouches = false;
+        node.flush();
+
+        assertEquals(List.of(clock.instant()), store.touches);
+    }
+
+    private String login(CachingSessionRepository repository, long userId) {
+        CachingSessionRepository.CachedSession session = repository.createSession();
+        session.setAttribute("userId", userId);
+        repository.save(session);
+        return session.getId();
+    }
+
+    private void request(CachingSessionRepository repository, String id) {
+        CachingSessionRepository.CachedSession session = repository.findById(id);
+        session.setLastAccessedTime(clock.instant());
+        repository.save(session);
+    }
+
+    private MapSession stored(String id) {
+        Versioned versioned = store.sessions.get(id);
+        return versioned == null ? null : SessionStore.deserialize(versioned.data());
+    }
+
+    private record Versioned(long version, byte[] data) {
+    }
+
+    // keeps serialized, versioned copies like the real stores do
+    private static class CountingStore implements SessionStore {
+        private final Map<String, Versioned> sessions = new ConcurrentHashMap<>();
+        private final List<Instant> touches = new ArrayList<>();
+        private int saves;
+        private int conflicts;
+        private int loads;
+        private boolean failTouches;
+        private boolean alwaysConflict;
+
+        @Override
+        public Stored load(String id) {
+            loads++;
+            Versioned versioned = sessions.get(id);
+            return versioned == null ? null : new Stored(SessionStore.deserialize(versioned.data()), versioned.version());
+        }
+
+        @Override
+        public synchronized boolean save(MapSession session, long expectedVersion) {
+            Versioned current = sessions.get(session.getId());
+            if (alwaysConflict || (current == null ? 0 : current.version()) != expectedVersion) {
+                conflicts++;
+                return false;
+            }
+            saves++;
+            sessions.put(session.getId(), new Versioned(expectedVersion + 1, SessionStore.serialize(session)));
+            return true;
+        }
+
+        @Override
+        public synchronized void touch(String id, Instant lastAccessedTime) {
+            if (failTouches) {
+                throw new IllegalStateException("database down");
+            }
+            touches.add(lastAccessedTime);
+            Versioned versioned = sessions.get(id);
+            if (versioned != null) {
+                MapSession session = SessionStore.deserialize(versioned.data());
+                session.setLastAccessedTime(lastAccessedTime);
+                sessions.put(id, new Versioned(versioned.version(), SessionStore.serialize(session)));
+            }
+        }
+
+        @Override
+        public void delete(String id) {
+            sessions.remove(id);
+        }
+
+        @Override
+        public int deleteExpired(Instant now) {
+            int before = sessions.size();
+            sessions.values().removeIf(versioned -> SessionStore.isExpired(SessionStore.deserialize(versioned.data()), now));
+            return before - sessions.size();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
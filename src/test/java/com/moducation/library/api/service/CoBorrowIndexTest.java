@@ -0,0 +1,91 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.BorrowPair;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static com.moducation.library.api.utils.Constants.WITHDRAWAL_CODE;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CoBorrowIndexTest {
+    private CoBorrowIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new CoBorrowIndex(mock(BookActivityHistoryRepository.class), 3, 100);
+        index.rebuild(List.of(
+                new BorrowPair(1L, 10L), new BorrowPair(1L, 20L), new BorrowPair(1L, 30L),
+                new BorrowPair(2L, 10L), new BorrowPair(2L, 20L),
+                new BorrowPair(3L, 10L), new BorrowPair(3L, 40L)
+        ));
+    }
+
+    @Test
+    public void testNeighborsRankedBySharedPatrons() {
+        assertEquals(List.of(Map.entry(20L, 2), Map.entry(30L, 1), Map.entry(40L, 1)), index.neighbors(10L, 10));
+        assertEquals(List.of(Map.entry(10L, 2), Map.entry(30L, 1)), index.neighbors(20L, 10));
+        assertEquals(List.of(Map.entry(20L, 2)), index.neighbors(10L, 1));
+        assertTrue(index.neighbors(99L, 10).isEmpty());
+    }
+
+    @Test
+    public void testIncrementalBorrow() {
+        index.recordBorrow(3L, 20L);
+        // borrowing the same book again doesn't count twice
+        index.recordBorrow(3L, 20L);
+
+        assertEquals(List.of(Map.entry(20L, 3), Map.entry(30L, 1), Map.entry(40L, 1)), index.neighbors(10L, 10));
+        assertEquals(List.of(Map.entry(10L, 3), Map.entry(30L, 1), Map.entry(40L, 1)), index.neighbors(20L, 10));
+        assertEquals(List.of(Map.entry(10L, 1), Map.entry(20L, 1)), index.neighbors(40L, 10));
+    }
+
+    @Test
+    public void testRowsArePrunedToNeighbors() {
+        for (long book = 100; book < 110; book++) {
+            index.recordBorrow(1L, book);
+        }
+
+        // a row is cut back to 3 entries whenever it reaches 6
+        assertTrue(index.neighbors(10L, 100).size() < 6);
+        assertEquals(Map.entry(20L, 2), index.neighbors(10L, 100).getFirst());
+    }
+
+    @Test
+    public void testParallelBuild() {
+        List<BorrowPair> pairs = new ArrayList<>();
+        for (long user = 0; user < 5_000; user++) {
+            pairs.add(new BorrowPair(user, 1L));
+            pairs.add(new BorrowPair(user, 2L + user % 3));
+        }
+        index.rebuild(pairs);
+
+        assertEquals(List.of(Map.entry(2L, 1667), Map.entry(3L, 1667), Map.entry(4L, 1666)), index.neighbors(1L, 10));
+        assertEquals(5_000, index.patrons());
+    }
+
+    @Test
+    public void testBorrowDuringLoadIsKept() {
+        BookActivityHistoryRepository repository = mock(BookActivityHistoryRepository.class);
+        CoBorrowIndex loading = new CoBorrowIndex(repository, 3, 100);
+        when(repository.findDistinctBorrowPairs(WITHDRAWAL_CODE)).thenAnswer(invocation -> {
+            // commits after the query's snapshot, so the result below doesn't have it
+            loading.recordBorrow(2L, 30L);
+            return List.of(new BorrowPair(1L, 10L), new BorrowPair(1L, 30L), new BorrowPair(2L, 10L));
+        });
+
+        loading.load();
+
+        assertEquals(List.of(Map.entry(30L, 2)), loading.neighbors(10L, 10));
+        // replayed once, a later borrow still counts normally
+        loading.recordBorrow(2L, 40L);
+        assertEquals(List.of(Map.entry(10L, 1), Map.entry(30L, 1)), loading.neighbors(40L, 10));
+    }
+}
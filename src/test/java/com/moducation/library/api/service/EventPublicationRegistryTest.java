@@ -0,0 +1,50 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReturned;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.modulith.events.config.EventPublicationAutoConfiguration;
+import org.springframework.modulith.events.jackson.JacksonEventSerializationAutoConfiguration;
+import org.springframework.modulith.events.jpa.JpaEventPublicationAutoConfiguration;
+
+import java.sql.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Publishes checkout and checkin events with the JPA event publication registry enabled and looks
+ * at the publications it keeps. Outstanding publications are republished on restart, so only
+ * listeners that are safe to run twice may be tracked there.
+ */
+@DataJpaTest
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, EventPublicationAutoConfiguration.class,
+        JacksonEventSerializationAutoConfiguration.class, JpaEventPublicationAutoConfiguration.class})
+@Import({ActivityHistoryRecorder.class, Leaderboards.class, CoBorrowIndex.class, OverdueScheduler.class})
+public class EventPublicationRegistryTest {
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testOnlyTheHistoryRecorderIsTracked() {
+        eventPublisher.publishEvent(new BookBorrowed(1L, 10L, 100L, Date.valueOf("2024-03-08"), Date.valueOf("2024-03-01")));
+        eventPublisher.publishEvent(new BookReturned(7L, 1L, 10L, 100L, false, Date.valueOf("2024-03-05")));
+
+        List<String> listeners = jdbcTemplate.queryForList("SELECT listener_id FROM event_publication", String.class);
+
+        // one publication per event, none for the leaderboards, co-borrow index or overdue wheel
+        assertEquals(2, listeners.size());
+        assertTrue(listeners.stream().allMatch(listener -> listener.contains("ActivityHistoryRecorder")));
+    }
+}
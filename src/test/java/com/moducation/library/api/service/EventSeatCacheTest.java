@@ -0,0 +1,66 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.EventSeats;
+import com.moducation.library.api.repositories.EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventSeatCacheTest {
+    private EventRepository eventRepository;
+    private EventSeatCache eventSeatCache;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository = mock(EventRepository.class);
+        eventSeatCache = new EventSeatCache(eventRepository, Duration.ofSeconds(5), () -> now);
+        when(eventRepository.findSeats(1L)).thenReturn(new EventSeats(1L, 100, 40));
+    }
+
+    @Test
+    public void testReadsAreServedFromTheCache() {
+        assertEquals(40, eventSeatCache.get(1L).seatsTaken());
+        assertEquals(40, eventSeatCache.get(1L).seatsTaken());
+
+        verify(eventRepository, times(1)).findSeats(1L);
+    }
+
+    @Test
+    public void testAdjustMovesTheCachedCount() {
+        eventSeatCache.get(1L);
+
+        eventSeatCache.adjust(1L, 1);
+        eventSeatCache.adjust(1L, 1);
+        eventSeatCache.adjust(1L, -1);
+
+        assertEquals(41, eventSeatCache.get(1L).seatsTaken());
+        assertEquals(100, eventSeatCache.get(1L).capacity());
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        eventSeatCache.get(1L);
+        when(eventRepository.findSeats(1L)).thenReturn(new EventSeats(1L, 100, 60));
+
+        now += Duration.ofSeconds(6).toNanos();
+
+        assertEquals(60, eventSeatCache.get(1L).seatsTaken());
+    }
+
+    @Test
+    public void testUnknownEventIsNotCached() {
+        assertNull(eventSeatCache.get(2L));
+        assertNull(eventSeatCache.get(2L));
+
+        verify(eventRepository, times(2)).findSeats(2L);
+    }
+}
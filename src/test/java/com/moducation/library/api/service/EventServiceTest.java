@@ -0,0 +1,309 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.EventRegistration;
+import com.moducation.library.api.dto.WaitlistEntry;
+import com.moducation.library.api.repositories.EventRegisterRepository;
+import com.moducation.library.api.repositories.EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_EVENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventServiceTest {
+    private static final long EVENT_ID = 1L;
+
+    private EventRepository eventRepository;
+    private EventRegisterRepository eventRegisterRepository;
+    private EventSeatCache eventSeatCache;
+    private NotificationService notificationService;
+    private EventService eventService;
+
+    // stand in for the event row and the event_register table, every statement is atomic like in the database
+    private final Object row = new Object();
+    // the event row lock, held from a successful update or an explicit lock until the "transaction" ends
+    private final ReentrantLock rowLock = new ReentrantLock();
+    private int capacity;
+    private int seatsTaken;
+    private int highestSeatsTaken;
+    private final Map<Long, Boolean> registrations = new LinkedHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        eventRepository = mock(EventRepository.class);
+        eventRegisterRepository = mock(EventRegisterRepository.class);
+        eventSeatCache = mock(EventSeatCache.class);
+        notificationService = mock(NotificationService.class);
+        eventService = new EventService(eventRepository, eventRegisterRepository, eventSeatCache,
+                mock(BookService.class), notificationService);
+
+        when(eventRepository.lockById(EVENT_ID)).thenAnswer(invocation -> {
+            rowLock.lock();
+            return EVENT_ID;
+        });
+        when(eventRepository.takeSeat(EVENT_ID)).thenAnswer(invocation -> {
+            rowLock.lock();
+            synchronized (row) {
+                if (seatsTaken >= capacity) {
+                    // an update that matches nothing does not keep the row locked
+                    rowLock.unlock();
+                    return 0;
+                }
+                seatsTaken++;
+                highestSeatsTaken = Math.max(highestSeatsTaken, seatsTaken);
+                return 1;
+            }
+        });
+        when(eventRepository.releaseSeat(EVENT_ID)).thenAnswer(invocation -> {
+            rowLock.lock();
+            synchronized (row) {
+                seatsTaken--;
+                return 1;
+            }
+        });
+        when(eventRegisterRepository.findWaitlisted(anyLong(), eq(EVENT_ID))).thenAnswer(invocation -> {
+            synchronized (row) {
+                return registrations.get((Long) invocation.getArgument(0));
+            }
+        });
+        when(eventRegisterRepository.insertIfAbsent(anyLong(), eq(EVENT_ID), anyBoolean())).thenAnswer(invocation -> {
+            synchronized (row) {
+                return registrations.putIfAbsent(invocation.getArgument(0), invocation.getArgument(2)) == null ? 1 : 0;
+            }
+        });
+        when(eventRegisterRepository.deleteRegistration(anyLong(), eq(EVENT_ID))).thenAnswer(invocation -> {
+            synchronized (row) {
+                return registrations.remove((Long) invocation.getArgument(0)) == null ? 0 : 1;
+            }
+        });
+        when(eventRegisterRepository.findWaitlist(eq(EVENT_ID), any(Pageable.class))).thenAnswer(invocation -> {
+            synchronized (row) {
+                return registrations.entrySet().stream().filter(Map.Entry::getValue)
+                        .map(entry -> new WaitlistEntry(entry.getKey() * 10, entry.getKey())).limit(1).toList();
+            }
+        });
+        when(eventRegisterRepository.promote(anyLong())).thenAnswer(invocation -> {
+            synchronized (row) {
+                return registrations.replace((Long) invocation.getArgument(0) / 10, true, false) ? 1 : 0;
+            }
+        });
+    }
+
+    @Test
+    public void testSeatThenWaitlist() {
+        capacity = 1;
+
+        assertFalse(register(10L, EVENT_ID).waitlisted());
+        assertTrue(register(11L, EVENT_ID).waitlisted());
+
+        assertEquals(1, seatsTaken);
+        verify(eventSeatCache).adjust(EVENT_ID, 1);
+    }
+
+    @Test
+    public void testRegisteringTwiceReturnsTheFirstRegistration() {
+        capacity = 1;
+        register(10L, EVENT_ID);
+
+        EventRegistration again = register(10L, EVENT_ID);
+
+        assertFalse(again.waitlisted());
+        assertEquals(1, seatsTaken);
+    }
+
+    @Test
+    public void testSeatOfALosingDuplicateGoesToTheWaitlist() {
+        capacity = 2;
+        register(10L, EVENT_ID);
+        registrations.put(11L, true);
+        // the second request of user 10 checked before the first one was stored
+        when(eventRegisterRepository.findWaitlisted(10L, EVENT_ID)).thenReturn(null).thenReturn(false);
+
+        assertFalse(register(10L, EVENT_ID).waitlisted());
+
+        assertEquals(2, seatsTaken);
+        assertFalse(registrations.get(11L));
+        verify(notificationService).notify(eq(11L), eq(NOTIFICATION_EVENT), any());
+        verify(eventRepository, never()).releaseSeat(EVENT_ID);
+    }
+
+    @Test
+    public void testDuplicateCancelledMeanwhileRegistersAgain() {
+        capacity = 2;
+        // the insert loses to a registration of the same user that is cancelled before it can be read
+        when(eventRegisterRepository.insertIfAbsent(20L, EVENT_ID, false)).thenReturn(0).thenAnswer(invocation -> {
+            synchronized (row) {
+                registrations.put(20L, false);
+                return 1;
+            }
+        });
+
+        assertFalse(register(20L, EVENT_ID).waitlisted());
+
+        assertEquals(1, seatsTaken);
+        assertFalse(registrations.get(20L));
+        verify(eventRepository).releaseSeat(EVENT_ID);
+    }
+
+    @Test
+    public void testUnknownEvent() {
+        when(eventRepository.lockById(2L)).thenReturn(null);
+
+        assertNull(register(10L, 2L));
+        assertFalse(cancel(10L, 2L));
+        verify(eventRegisterRepository, never()).insertIfAbsent(anyLong(), eq(2L), anyBoolean());
+    }
+
+    @Test
+    public void testCancelledSeatGoesToOldestWaitlisted() {
+        capacity = 1;
+        register(10L, EVENT_ID);
+        register(11L, EVENT_ID);
+        register(12L, EVENT_ID);
+
+        assertTrue(cancel(10L, EVENT_ID));
+
+        assertEquals(1, seatsTaken);
+        assertFalse(registrations.get(11L));
+        assertTrue(registrations.get(12L));
+        verify(notificationService).notify(eq(11L), eq(NOTIFICATION_EVENT), any());
+        verify(eventRepository, never()).releaseSeat(EVENT_ID);
+    }
+
+    @Test
+    public void testCancelledSeatIsReleasedWithoutWaitlist() {
+        capacity = 2;
+        register(10L, EVENT_ID);
+
+        assertTrue(cancel(10L, EVENT_ID));
+        assertFalse(cancel(10L, EVENT_ID));
+
+        assertEquals(0, seatsTaken);
+        verify(eventSeatCache).adjust(EVENT_ID, -1);
+    }
+
+    @Test
+    public void testCancelFromWaitlistKeepsSeats() {
+        capacity = 1;
+        register(10L, EVENT_ID);
+        register(11L, EVENT_ID);
+
+        assertTrue(cancel(11L, EVENT_ID));
+
+        assertEquals(1, seatsTaken);
+        verify(notificationService, never()).notify(anyLong(), any(), any());
+    }
+
+    @Test
+    public void testFlashCrowdNeverOverbooks() throws Exception {
+        capacity = 100;
+
+        // 500 patrons in the same second, each sending the request twice
+        List<EventRegistration> results = runConcurrently(1000, i -> register(i / 2, EVENT_ID));
+
+        assertEquals(100, seatsTaken);
+        assertEquals(100, highestSeatsTaken);
+        assertEquals(500, registrations.size());
+        assertEquals(100, registrations.values().stream().filter(waitlisted -> !waitlisted).count());
+        for (int i = 0; i < results.size(); i += 2) {
+            // both requests of a patron report the same registration
+            assertEquals(results.get(i), results.get(i + 1));
+            assertEquals(registrations.get((long) i / 2), results.get(i).waitlisted());
+        }
+    }
+
+    @Test
+    public void testFlashCrowdWithCancellationsFillsFreedSeats() throws Exception {
+        capacity = 50;
+        for (long user = 0; user < 50; user++) {
+            register(user, EVENT_ID);
+        }
+
+        runConcurrently(400, i -> {
+            if (i % 4 == 0) {
+                cancel(i / 4, EVENT_ID);
+                return null;
+            }
+            return register(1_000 + i, EVENT_ID);
+        });
+
+        long seated = registrations.values().stream().filter(waitlisted -> !waitlisted).count();
+        assertEquals(seatsTaken, seated);
+        assertEquals(50, seatsTaken);
+        assertTrue(highestSeatsTaken <= 50);
+    }
+
+    private EventRegistration register(long userId, long eventId) {
+        try {
+            return eventService.register(userId, eventId);
+        } finally {
+            commit();
+        }
+    }
+
+    private boolean cancel(long userId, long eventId) {
+        try {
+            return eventService.cancel(userId, eventId);
+        } finally {
+            commit();
+        }
+    }
+
+    private void commit() {
+        while (rowLock.isHeldByCurrentThread()) {
+            rowLock.unlock();
+        }
+    }
+
+    private interface Task {
+        EventRegistration run(long index);
+    }
+
+    private static List<EventRegistration> runConcurrently(int threads, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<EventRegistration>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long index = i;
+                Callable<EventRegistration> call = () -> {
+                    start.await();
+                    return task.run(index);
+                };
+                futures.add(executor.submit(call));
+            }
+            start.countDown();
+
+            List<EventRegistration> results = new ArrayList<>();
+            for (Future<EventRegistration> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moducation.library.api.dto.ActivityExportRow;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.repositories.BookRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExportServiceTest {
+    private BookRepository bookRepository;
+    private BookActivityHistoryRepository bookActivityHistoryRepository;
+    private EntityManager entityManager;
+    private ExportService exportService;
+
+    private Book book1;
+    private Book book2;
+
+    @BeforeEach
+    public void setUp() {
+        bookRepository = mock(BookRepository.class);
+        bookActivityHistoryRepository = mock(BookActivityHistoryRepository.class);
+        entityManager = mock(EntityManager.class);
+        exportService = new ExportService(bookRepository, bookActivityHistoryRepository, new ObjectMapper(), entityManager);
+
+        book1 = new Book(1L, "title", "author", "genre", 7, 3.0f, 30f, 10f);
+        book2 = new Book(2L, "title2", "author2", "genre", 9, 3.8f, 38f, 10f);
+    }
+
+    @Test
+    public void testExportBooksWritesOneLinePerBook() throws IOException {
+        when(bookRepository.streamAll()).thenReturn(Stream.of(book1, book2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.exportBooks(out, false);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        assertEquals("title2", new ObjectMapper().readTree(lines[1]).get("title").asText());
+        verify(entityManager).detach(book1);
+        verify(entityManager).detach(book2);
+    }
+
+    @Test
+    public void testExportActivityHistoryGzip() throws IOException {
+        when(bookActivityHistoryRepository.streamAllForExport()).thenReturn(Stream.of(
+                new ActivityExportRow(1L, 1, 4L, 1L, new Date(0)),
+                new ActivityExportRow(2L, 2, 4L, 1L, new Date(0))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.exportActivityHistory(out, true);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            String[] lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, count);
+            assertEquals(2, lines.length);
+            assertEquals(4L, new ObjectMapper().readTree(lines[0]).get("userId").asLong());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.moducation.library.api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.session.MapSession;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileSessionStoreTest {
+    private static final Instant NOW = Instant.parse("2024-09-02T08:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private FileSessionStore store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new FileSessionStore(directory.resolve("sessions"));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        MapSession session = session("a1", NOW);
+        session.setAttribute("userId", 7L);
+
+        store.save(session, 0);
+        MapSession loaded = store.load("a1").session();
+
+        assertEquals(7L, (Long) loaded.getAttribute("userId"));
+        assertEquals(NOW, loaded.getLastAccessedTime());
+        assertNull(store.load("b2"));
+    }
+
+    @Test
+    public void testTouchOnlyMovesForward() {
+        store.save(session("a1", NOW), 0);
+
+        store.touch("a1", NOW.plusSeconds(60));
+        store.touch("a1", NOW.plusSeconds(30));
+
+        assertEquals(NOW.plusSeconds(60), store.load("a1").session().getLastAccessedTime());
+    }
+
+    @Test
+    public void testSaveOnlyFromTheStoredVersion() {
+        MapSession session = session("a1", NOW);
+        assertTrue(store.save(session, 0));
+        assertFalse(store.save(session, 0));
+
+        session.setAttribute("cart", "a");
+        assertTrue(store.save(session, 1));
+        assertFalse(store.save(session, 1));
+
+        // a touch is no change, the version stays
+        store.touch("a1", NOW.plusSeconds(60));
+        assertEquals(2L, store.load("a1").version());
+        assertEquals("a", store.load("a1").session().getAttribute("cart"));
+        assertFalse(store.save(session("b2", NOW), 1));
+    }
+
+    @Test
+    public void testDeleteExpired() {
+        store.save(session("a1", NOW), 0);
+        store.save(session("b2", NOW.plus(Duration.ofMinutes(20))), 0);
+
+        assertEquals(1, store.deleteExpired(NOW.plus(Duration.ofMinutes(30))));
+
+        assertNull(store.load("a1"));
+        assertEquals(NOW.plus(Duration.ofMinutes(20)), store.load("b2").session().getLastAccessedTime());
+    }
+
+    @Test
+    public void testDelete() {
+        store.save(session("a1", NOW), 0);
+
+        store.delete("a1");
+        store.delete("a1");
+
+        assertNull(store.load("a1"));
+    }
+
+    @Test
+    public void testIdsFromTheCookieNeverLeaveTheDirectory() throws Exception {
+        Files.writeString(directory.resolve("secret.session"), "x");
+
+        assertNull(store.load("../secret"));
+        store.delete("../secret");
+        assertThrows(IllegalArgumentException.class, () -> store.save(session("../secret", NOW), 0));
+
+        assertTrue(Files.exists(directory.resolve("secret.session")));
+    }
+
+    private static MapSession session(String id, Instant lastAccessed) {
+        MapSession session = new MapSession(id);
+        session.setCreationTime(lastAccessed);
+        session.setLastAccessedTime(lastAccessed);
+        session.setMaxInactiveInterval(Duration.ofMinutes(30));
+        return session;
+    }
+}
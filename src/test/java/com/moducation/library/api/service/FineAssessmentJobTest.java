@@ -0,0 +1,186 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.models.FineAssessmentRun;
+import com.moducation.library.api.repositories.FineAssessmentRunRepository;
+import com.moducation.library.api.repositories.FineRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_FINE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FineAssessmentJobTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+    private static final Date DAY = Date.valueOf(TODAY);
+
+    private FineRepository fineRepository;
+    private OpenLoanRepository openLoanRepository;
+    private FineAssessmentRunRepository fineAssessmentRunRepository;
+    private NotificationService notificationService;
+    private Clock clock;
+    private FineAssessmentJob job;
+
+    @BeforeEach
+    public void setUp() {
+        fineRepository = mock(FineRepository.class);
+        openLoanRepository = mock(OpenLoanRepository.class);
+        fineAssessmentRunRepository = mock(FineAssessmentRunRepository.class);
+        notificationService = mock(NotificationService.class);
+        clock = Clock.fixed(TODAY.atTime(1, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        job = new FineAssessmentJob(fineRepository, openLoanRepository, fineAssessmentRunRepository,
+                TransactionOperations.withoutTransaction(), notificationService, 0.25f, 3, 2, 7, clock);
+
+        when(fineAssessmentRunRepository.findById(any())).thenReturn(Optional.empty());
+        when(fineAssessmentRunRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(openLoanRepository.findWithdrawalIdAfter(0L, 2)).thenReturn(3L);
+        when(openLoanRepository.findWithdrawalIdAfter(3L, 2)).thenReturn(6L);
+        when(openLoanRepository.findWithdrawalIdAfter(6L, 2)).thenReturn(null);
+        when(fineRepository.assessRange(eq(DAY), eq(0.25f), anyLong(), anyLong())).thenReturn(List.of(fine(7L), fine(8L)));
+    }
+
+    @Test
+    public void testAssessesEveryChunkAndFinishes() {
+        FineAssessmentRun run = assess();
+
+        verify(fineRepository).assessRange(DAY, 0.25f, 0L, 3L);
+        verify(fineRepository).assessRange(DAY, 0.25f, 3L, 6L);
+        verify(fineRepository).assessRange(DAY, 0.25f, 6L, Long.MAX_VALUE);
+        assertEquals(6L, run.getFinesIssued());
+        assertEquals(Long.MAX_VALUE, run.getLastWithdrawalId());
+        assertNotNull(run.getFinishedAt());
+    }
+
+    @Test
+    public void testEveryIssuedFineIsNotified() {
+        assess();
+
+        verify(notificationService, times(3)).notify(7L, NOTIFICATION_FINE,
+                "You were fined 0.25 for a book that was still not returned on 2024-03-10.");
+        verify(notificationService, times(3)).notify(eq(8L), eq(NOTIFICATION_FINE), anyString());
+    }
+
+    @Test
+    public void testFinesOfAChunkThatDidNotCommitAreNotNotified() {
+        when(fineRepository.assessRange(DAY, 0.25f, 3L, 6L)).thenReturn(List.of(fine(9L)));
+        TransactionOperations failingCommit = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                T result = action.doInTransaction(new SimpleTransactionStatus());
+                if (result instanceof List<?> fines && fines.size() == 1) {
+                    throw new TransactionSystemException("commit failed");
+                }
+                return result;
+            }
+        };
+        job = new FineAssessmentJob(fineRepository, openLoanRepository, fineAssessmentRunRepository,
+                failingCommit, notificationService, 0.25f, 3, 2, 7, clock);
+
+        assertThrows(IllegalStateException.class, () -> job.assess(TODAY));
+
+        verify(notificationService, never()).notify(eq(9L), anyInt(), anyString());
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() {
+        when(fineAssessmentRunRepository.findById(DAY)).thenReturn(Optional.of(FineAssessmentRun.builder()
+                .assessedFor(DAY).lastWithdrawalId(3L).finesIssued(2L).startedAt(new Timestamp(0)).build()));
+
+        FineAssessmentRun run = assess();
+
+        verify(fineRepository, never()).assessRange(DAY, 0.25f, 0L, 3L);
+        verify(fineRepository).assessRange(DAY, 0.25f, 3L, 6L);
+        assertEquals(6L, run.getFinesIssued());
+    }
+
+    @Test
+    public void testFinishedDayIsSkipped() {
+        when(fineAssessmentRunRepository.findById(DAY)).thenReturn(Optional.of(FineAssessmentRun.builder()
+                .assessedFor(DAY).lastWithdrawalId(6L).finesIssued(6L)
+                .startedAt(new Timestamp(0)).finishedAt(new Timestamp(1)).build()));
+
+        job.assess(TODAY);
+
+        verify(fineRepository, never()).assessRange(any(), anyFloat(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testDaysToAssess() {
+        assertEquals(List.of(TODAY), job.daysToAssess(TODAY));
+
+        when(fineAssessmentRunRepository.findTopByFinishedAtIsNotNullOrderByAssessedForDesc())
+                .thenReturn(FineAssessmentRun.builder().assessedFor(Date.valueOf(TODAY.minusDays(3))).build());
+        assertEquals(List.of(TODAY.minusDays(2), TODAY.minusDays(1), TODAY), job.daysToAssess(TODAY));
+
+        when(fineAssessmentRunRepository.findTopByFinishedAtIsNotNullOrderByAssessedForDesc())
+                .thenReturn(FineAssessmentRun.builder().assessedFor(Date.valueOf(TODAY.minusDays(30))).build());
+        assertEquals(7, job.daysToAssess(TODAY).size());
+        assertEquals(TODAY.minusDays(6), job.daysToAssess(TODAY).getFirst());
+
+        when(fineAssessmentRunRepository.findTopByFinishedAtIsNotNullOrderByAssessedForDesc())
+                .thenReturn(FineAssessmentRun.builder().assessedFor(DAY).build());
+        assertEquals(List.of(), job.daysToAssess(TODAY));
+    }
+
+    @Test
+    public void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        job.bindTo(registry);
+
+        assess();
+
+        assertEquals(6.0, registry.get("library.fines.issued").functionCounter().count());
+        assertEquals(3.0, registry.get("library.fines.chunks").functionTimer().count());
+    }
+
+    private static FineRepository.IssuedFine fine(long userId) {
+        return new FineRepository.IssuedFine() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Float getAmount() {
+                return 0.25f;
+            }
+        };
+    }
+
+    private FineAssessmentRun assess() {
+        job.assess(TODAY);
+
+        ArgumentCaptor<FineAssessmentRun> saved = ArgumentCaptor.forClass(FineAssessmentRun.class);
+        verify(fineAssessmentRunRepository, atLeastOnce()).save(saved.capture());
+
+        return saved.getValue();
+    }
+}
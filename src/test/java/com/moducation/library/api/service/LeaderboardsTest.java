@@ -0,0 +1,134 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.DailyBorrowCount;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.repositories.RatingShardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class LeaderboardsTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    private MutableClock clock;
+    private Leaderboards leaderboards;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(TODAY);
+        leaderboards = new Leaderboards(mock(BookActivityHistoryRepository.class), mock(RatingShardRepository.class), 2, 7, clock);
+    }
+
+    @Test
+    public void testTopRatedOrdersByAverage() {
+        leaderboards.rebuild(List.of(totals(1L, 8, 2), totals(2L, 9, 2), totals(3L, 5, 1)), List.of());
+
+        assertEquals(List.of(2L, 1L), ids(leaderboards.topRated(10)));
+        assertEquals(4.5, leaderboards.topRated(1).getFirst().score());
+    }
+
+    @Test
+    public void testRatingChangeMovesBook() {
+        leaderboards.rebuild(List.of(totals(1L, 8, 2), totals(2L, 9, 2)), List.of());
+
+        leaderboards.recordRating(1L, 5, 1);
+        leaderboards.recordRating(3L, 5, 1);
+
+        assertEquals(List.of(2L, 1L), ids(leaderboards.topRated(10)));
+
+        leaderboards.recordRating(3L, 5, 1);
+        leaderboards.recordRating(2L, -9, -2);
+
+        assertEquals(List.of(3L, 1L), ids(leaderboards.topRated(10)));
+    }
+
+    @Test
+    public void testTrendingCountsBorrows() {
+        leaderboards.rebuild(List.of(), List.of(borrows(1L, TODAY.minusDays(1), 2)));
+
+        leaderboards.recordBorrow(2L);
+        leaderboards.recordBorrow(2L);
+        leaderboards.recordBorrow(2L);
+
+        assertEquals(List.of(2L, 1L), ids(leaderboards.trending(10)));
+        assertEquals(List.of(2L), ids(leaderboards.trending(1)));
+    }
+
+    @Test
+    public void testTrendingDropsDaysOutsideWindow() {
+        leaderboards.rebuild(List.of(), List.of(
+                borrows(1L, TODAY.minusDays(6), 5),
+                borrows(2L, TODAY, 2),
+                borrows(3L, TODAY.minusDays(30), 9)));
+
+        assertEquals(List.of(1L, 2L), ids(leaderboards.trending(10)));
+
+        clock.today = TODAY.plusDays(1);
+
+        assertEquals(List.of(2L), ids(leaderboards.trending(10)));
+
+        clock.today = TODAY.plusDays(7);
+
+        assertEquals(List.of(), ids(leaderboards.trending(10)));
+    }
+
+    private static List<Long> ids(List<Leaderboards.RankedSet.Ranked> ranking) {
+        return ranking.stream().map(Leaderboards.RankedSet.Ranked::bookId).toList();
+    }
+
+    private static DailyBorrowCount borrows(Long bookId, LocalDate day, long count) {
+        return new DailyBorrowCount(bookId, Date.valueOf(day), count);
+    }
+
+    private static RatingShardRepository.RatingTotals totals(Long bookId, double sum, double count) {
+        return new RatingShardRepository.RatingTotals() {
+            @Override
+            public Long getBookId() {
+                return bookId;
+            }
+
+            @Override
+            public Double getSumRating() {
+                return sum;
+            }
+
+            @Override
+            public Double getNumberOfRatings() {
+                return count;
+            }
+        };
+    }
+
+    private static class MutableClock extends Clock {
+        private LocalDate today;
+
+        MutableClock(LocalDate today) {
+            this.today = today;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return today.atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.moducation.library.api.service;
 
+import com.moducation.library.api.dto.AuthenticatedUser;
 import com.moducation.library.api.models.LibraryUser;
 import com.moducation.library.api.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,9 +12,19 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -21,13 +33,15 @@ public class LibraryUserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    private PasswordHasher passwordHasher;
     private UserService userService;
     private LibraryUser libraryUser;
 
     @BeforeEach
     public void setUp() {
         PasswordEncoder encoder = new BCryptPasswordEncoder();
-        userService = new UserService(userRepository);
+        passwordHasher = new PasswordHasher(10, 0, 64, Duration.ofSeconds(2));
+        userService = new UserService(userRepository, passwordHasher, new PrincipalCache(1000, Duration.ofMinutes(1)));
         libraryUser = new LibraryUser();
         libraryUser.setId(1L);
         libraryUser.setUsername("testUser");
@@ -35,6 +49,11 @@ public class LibraryUserServiceTest {
         libraryUser.setPassword(encoder.encode("password123"));
     }
 
+    @AfterEach
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
     @Test
     public void testVerifyPassword() {
         String password = "password123";
@@ -86,4 +105,50 @@ public class LibraryUserServiceTest {
         assertEquals(1L, libraryUser.getId());
         assertEquals("testUser", libraryUser.getUsername());
     }
+
+    @Test
+    public void testRehashAfterCostChange() {
+        String oldHash = libraryUser.getPassword();
+        PasswordHasher cheaperHasher = new PasswordHasher(4, 1, 4, Duration.ofSeconds(2));
+        try {
+            userService = new UserService(userRepository, cheaperHasher, new PrincipalCache(10, Duration.ofMinutes(1)));
+            assertTrue(userService.verifyPassword("password123", oldHash));
+
+            userService.rehashIfNeeded(libraryUser, "password123");
+
+            verify(userRepository, timeout(5000)).replacePasswordHash(eq(1L), eq(oldHash),
+                    argThat(newHash -> newHash.startsWith("$2a$04$") && cheaperHasher.matches("password123", newHash)));
+        } finally {
+            cheaperHasher.shutdown();
+        }
+    }
+
+    @Test
+    public void testNoRehashAtTheConfiguredCost() {
+        userService.rehashIfNeeded(libraryUser, "password123");
+
+        verify(userRepository, after(200).never()).replacePasswordHash(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    public void testPrincipalIsLoadedOnce() {
+        AuthenticatedUser principal = new AuthenticatedUser(1L, (byte) 0);
+        when(userRepository.findPrincipal(1L)).thenReturn(principal);
+
+        assertEquals(principal, userService.getPrincipal(1L));
+        assertEquals(principal, userService.getPrincipal(1L));
+
+        verify(userRepository, times(1)).findPrincipal(1L);
+    }
+
+    @Test
+    public void testSavingTheUserEvictsThePrincipal() {
+        when(userRepository.findPrincipal(1L))
+                .thenReturn(new AuthenticatedUser(1L, (byte) 0), new AuthenticatedUser(1L, (byte) 1));
+        userService.getPrincipal(1L);
+
+        userService.saveUser(libraryUser);
+
+        assertEquals((byte) 1, userService.getPrincipal(1L).role());
+    }
 }
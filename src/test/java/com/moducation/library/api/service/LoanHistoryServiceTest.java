@@ -0,0 +1,68 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.LoanHistoryEntry;
+import com.moducation.library.api.dto.LoanHistoryPage;
+import com.moducation.library.api.repositories.BookActivityHistoryRepository;
+import com.moducation.library.api.utils.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.sql.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class LoanHistoryServiceTest {
+    @Mock
+    private BookActivityHistoryRepository bookActivityHistoryRepository;
+
+    @InjectMocks
+    private LoanHistoryService loanHistoryService;
+
+    private final LoanHistoryEntry newest = entry(9L, "2024-03-05");
+    private final LoanHistoryEntry middle = entry(7L, "2024-03-01");
+    private final LoanHistoryEntry oldest = entry(8L, "2024-02-20");
+
+    @Test
+    public void testFirstPageHasCursorWhenMoreRows() {
+        when(bookActivityHistoryRepository.findFirstHistoryPage(1L, PageRequest.ofSize(3))).thenReturn(List.of(newest, middle, oldest));
+
+        LoanHistoryPage page = loanHistoryService.findPage(1L, null, 2);
+
+        assertEquals(List.of(newest, middle), page.entries());
+        KeysetCursor cursor = KeysetCursor.decode(page.nextCursor());
+        assertEquals("2024-03-01", cursor.value());
+        assertEquals(7L, cursor.id());
+    }
+
+    @Test
+    public void testNextPageContinuesAfterCursor() {
+        String cursor = new KeysetCursor("history", "2024-03-01", 7L).encode();
+        when(bookActivityHistoryRepository.findHistoryPage(1L, Date.valueOf("2024-03-01"), 7L, PageRequest.ofSize(3)))
+                .thenReturn(List.of(oldest));
+
+        LoanHistoryPage page = loanHistoryService.findPage(1L, cursor, 2);
+
+        assertEquals(List.of(oldest), page.entries());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    public void testCursorFromAnotherListing() {
+        String cursor = new KeysetCursor("title", "Dune", 3L).encode();
+
+        assertThrows(IllegalArgumentException.class, () -> loanHistoryService.findPage(1L, cursor, 2));
+    }
+
+    private static LoanHistoryEntry entry(Long id, String date) {
+        return new LoanHistoryEntry(id, 1, Date.valueOf(date), 2L, "Dune", "Frank Herbert");
+    }
+}
@@ -0,0 +1,119 @@
+package com.moducation.library.api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoginThrottleTest {
+    private final AtomicLong now = new AtomicLong();
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    public void setUp() {
+        loginThrottle = new LoginThrottle(3, 5, Duration.ofMinutes(1), now::get);
+    }
+
+    @Test
+    public void testUsernameLimit() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, loginThrottle.acquire("alice", "10.0.0." + i));
+        }
+
+        assertEquals(60, loginThrottle.acquire("alice", "10.0.0.9"));
+        assertEquals(0, loginThrottle.acquire("bob", "10.0.0.9"));
+    }
+
+    @Test
+    public void testAddressLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, loginThrottle.acquire("user" + i, "10.0.0.1"));
+        }
+
+        assertTrue(loginThrottle.acquire("someone", "10.0.0.1") > 0);
+        // the rejected attempt was not counted against the username
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, loginThrottle.acquire("someone", "10.0.0.2"));
+        }
+    }
+
+    @Test
+    public void testWindowResets() {
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.acquire("alice", "10.0.0.1");
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(45));
+        assertEquals(15, loginThrottle.acquire("alice", "10.0.0.1"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(15));
+        assertEquals(0, loginThrottle.acquire("alice", "10.0.0.1"));
+    }
+
+    @Test
+    public void testSuccessfulLoginsDoNotAddUp() {
+        // a whole class logging in from the lab's address
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, loginThrottle.acquire("student" + i, "10.0.0.1"));
+            loginThrottle.succeeded("student" + i, "10.0.0.1");
+        }
+
+        for (int i = 0; i < 2; i++) {
+            loginThrottle.acquire("alice", "10.0.0.1");
+        }
+        loginThrottle.succeeded("alice", "10.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, loginThrottle.acquire("alice", "10.0.0.1"));
+        }
+    }
+
+    @Test
+    public void testSweepDropsExpiredWindows() {
+        loginThrottle.acquire("alice", "10.0.0.1");
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+        loginThrottle.sweep();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, loginThrottle.acquire("alice", "10.0.0.1"));
+        }
+    }
+
+    @Test
+    public void testConcurrentGuessesNeverPassTheLimit() throws Exception {
+        loginThrottle = new LoginThrottle(3, 1000, Duration.ofMinutes(1), now::get);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String address = "10.0.0." + (i % 200);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return loginThrottle.acquire("alice", address);
+                }));
+            }
+            start.countDown();
+
+            int allowed = 0;
+            for (Future<Long> future : futures) {
+                if (future.get() == 0) {
+                    allowed++;
+                }
+            }
+            assertEquals(3, allowed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
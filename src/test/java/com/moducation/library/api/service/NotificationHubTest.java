@@ -0,0 +1,101 @@
+package com.moducation.library.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moducation.library.api.dto.NotificationMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotificationHubTest {
+    private static final NotificationMessage MESSAGE = new NotificationMessage(7L, 1, "due", null);
+
+    private NotificationHub notificationHub;
+
+    @BeforeEach
+    public void setUp() {
+        notificationHub = new NotificationHub(new ObjectMapper(), 1000, 1024, 2, 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notificationHub.shutdown();
+    }
+
+    @Test
+    public void testPushReachesEveryConnectionOfTheUser() throws IOException {
+        WebSocketSession phone = session("a");
+        WebSocketSession laptop = session("b");
+        WebSocketSession someoneElse = session("c");
+        notificationHub.register(1L, phone);
+        notificationHub.register(1L, laptop);
+        notificationHub.register(2L, someoneElse);
+
+        notificationHub.push(1L, MESSAGE);
+
+        ArgumentCaptor<TextMessage> frame = ArgumentCaptor.forClass(TextMessage.class);
+        verify(phone, timeout(1000)).sendMessage(frame.capture());
+        assertTrue(frame.getValue().getPayload().contains("\"id\":7"));
+        verify(laptop, timeout(1000)).sendMessage(any(TextMessage.class));
+        verify(someoneElse, after(100).never()).sendMessage(any());
+        assertEquals(3, notificationHub.connections());
+    }
+
+    @Test
+    public void testClosedConnectionGetsNothing() throws IOException {
+        WebSocketSession session = session("a");
+        notificationHub.register(1L, session);
+        notificationHub.unregister(1L, "a");
+
+        notificationHub.push(1L, MESSAGE);
+
+        verify(session, after(100).never()).sendMessage(any());
+        assertEquals(0, notificationHub.connections());
+    }
+
+    @Test
+    public void testFailedSendClosesTheConnection() throws IOException {
+        WebSocketSession session = session("a");
+        doThrow(new IOException("broken pipe")).when(session).sendMessage(any());
+        notificationHub.register(1L, session);
+
+        notificationHub.push(1L, MESSAGE);
+
+        verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    public void testPingReachesIdleConnections() throws IOException {
+        WebSocketSession session = session("a");
+        notificationHub.register(1L, session);
+
+        notificationHub.ping();
+
+        verify(session, timeout(1000)).sendMessage(any(PingMessage.class));
+        verify(session, never()).sendMessage(any(TextMessage.class));
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
@@ -0,0 +1,112 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.NotificationMessage;
+import com.moducation.library.api.events.LoanOverdueEvent;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.models.Notification;
+import com.moducation.library.api.repositories.NotificationRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_EVENT;
+import static com.moducation.library.api.utils.Constants.NOTIFICATION_OVERDUE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotificationServiceTest {
+    private NotificationRepository notificationRepository;
+    private NotificationHub notificationHub;
+    private BookService bookService;
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        notificationHub = mock(NotificationHub.class);
+        bookService = mock(BookService.class);
+        entityManager = mock(EntityManager.class);
+
+        AtomicLong ids = new AtomicLong();
+        when(entityManager.getReference(eq(LibraryUser.class), anyLong()))
+                .thenAnswer(invocation -> LibraryUser.builder().id(invocation.getArgument(1)).build());
+        when(notificationRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Notification> notifications = invocation.getArgument(0);
+            notifications.forEach(notification -> notification.setId(ids.incrementAndGet()));
+            return notifications;
+        });
+    }
+
+    @Test
+    public void testFlushStoresInBatchesThenPushes() {
+        NotificationService notificationService = service(2, 100);
+        notificationService.notify(1L, NOTIFICATION_EVENT, "a");
+        notificationService.notify(2L, NOTIFICATION_EVENT, "b");
+        notificationService.notify(1L, NOTIFICATION_EVENT, "c");
+
+        notificationService.flush();
+
+        verify(notificationRepository, times(2)).saveAll(any());
+        verify(notificationHub).push(1L, new NotificationMessage(1L, NOTIFICATION_EVENT, "a", null));
+        verify(notificationHub).push(2L, new NotificationMessage(2L, NOTIFICATION_EVENT, "b", null));
+        verify(notificationHub).push(1L, new NotificationMessage(3L, NOTIFICATION_EVENT, "c", null));
+        assertEquals(0, notificationService.pending());
+    }
+
+    @Test
+    public void testFullQueueIsFlushedByTheCaller() {
+        NotificationService notificationService = service(10, 2);
+        notificationService.notify(1L, NOTIFICATION_EVENT, "a");
+        notificationService.notify(1L, NOTIFICATION_EVENT, "b");
+        notificationService.notify(1L, NOTIFICATION_EVENT, "c");
+
+        verify(notificationRepository).saveAll(any());
+        assertEquals(1, notificationService.pending());
+    }
+
+    @Test
+    public void testFailedBatchIsDropped() {
+        NotificationService notificationService = service(10, 100);
+        doThrow(new IllegalStateException("down")).when(notificationRepository).saveAll(any());
+        notificationService.notify(1L, NOTIFICATION_EVENT, "a");
+
+        notificationService.flush();
+
+        assertEquals(0, notificationService.pending());
+        verify(notificationHub, never()).push(anyLong(), any());
+    }
+
+    @Test
+    public void testOverdueNotificationNamesTheBook() {
+        NotificationService notificationService = service(10, 100);
+        when(bookService.findById(5L)).thenReturn(Book.builder().id(5L).title("Dune").build());
+
+        notificationService.onLoanOverdue(new LoanOverdueEvent(9L, 1L, 5L, Date.valueOf("2024-03-01")));
+        notificationService.flush();
+
+        ArgumentCaptor<NotificationMessage> message = ArgumentCaptor.forClass(NotificationMessage.class);
+        verify(notificationHub).push(eq(1L), message.capture());
+        assertEquals(NOTIFICATION_OVERDUE, message.getValue().type());
+        assertEquals("\"Dune\" was due back on 2024-03-01.", message.getValue().message());
+    }
+
+    private NotificationService service(int batchSize, int queueCapacity) {
+        return new NotificationService(notificationRepository, notificationHub, bookService,
+                TransactionOperations.withoutTransaction(), batchSize, queueCapacity, entityManager);
+    }
+}
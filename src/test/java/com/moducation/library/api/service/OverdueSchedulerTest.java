@@ -0,0 +1,165 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.DueLoan;
+import com.moducation.library.api.events.BookBorrowed;
+import com.moducation.library.api.events.BookReturned;
+import com.moducation.library.api.events.LoanOverdueEvent;
+import com.moducation.library.api.repositories.BookWithdrawalRepository;
+import com.moducation.library.api.repositories.OpenLoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OverdueSchedulerTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+    private static final long ONE_HOUR = 3_600_000L;
+
+    private MutableClock clock;
+    private OpenLoanRepository openLoanRepository;
+    private BookWithdrawalRepository bookWithdrawalRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private OverdueScheduler overdueScheduler;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(TODAY.atStartOfDay());
+        openLoanRepository = mock(OpenLoanRepository.class);
+        bookWithdrawalRepository = mock(BookWithdrawalRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        overdueScheduler = new OverdueScheduler(openLoanRepository, bookWithdrawalRepository,
+                TransactionOperations.withoutTransaction(), eventPublisher, ONE_HOUR, 24, clock);
+        when(bookWithdrawalRepository.markOverdue(anyLong())).thenReturn(1);
+    }
+
+    @Test
+    public void testFiresOnceTheReturnDayHasPassed() {
+        overdueScheduler.schedule(loan(1L, TODAY.plusDays(2)));
+
+        clock.now = TODAY.plusDays(2).atTime(23, 0);
+        overdueScheduler.tick();
+        verify(bookWithdrawalRepository, never()).markOverdue(anyLong());
+
+        clock.now = TODAY.plusDays(3).atStartOfDay();
+        overdueScheduler.tick();
+        verify(bookWithdrawalRepository).markOverdue(1L);
+        verify(eventPublisher).publishEvent(new LoanOverdueEvent(1L, 10L, 100L, Date.valueOf(TODAY.plusDays(2))));
+        assertEquals(0, overdueScheduler.pending());
+
+        clock.now = TODAY.plusDays(4).atStartOfDay();
+        overdueScheduler.tick();
+        verify(bookWithdrawalRepository, times(1)).markOverdue(1L);
+    }
+
+    @Test
+    public void testFollowsBorrowAndReturnEvents() {
+        Date due = Date.valueOf(TODAY);
+        overdueScheduler.on(new BookBorrowed(1L, 10L, 100L, due, Date.valueOf(TODAY.minusDays(7))));
+        overdueScheduler.on(new BookBorrowed(2L, 10L, 101L, due, Date.valueOf(TODAY.minusDays(7))));
+        overdueScheduler.on(new BookReturned(7L, 2L, 10L, 101L, false, due));
+
+        clock.now = TODAY.plusDays(1).atStartOfDay();
+        overdueScheduler.tick();
+
+        verify(bookWithdrawalRepository).markOverdue(1L);
+        verify(bookWithdrawalRepository, never()).markOverdue(2L);
+    }
+
+    @Test
+    public void testReturnedLoanNeverFires() {
+        overdueScheduler.schedule(loan(1L, TODAY));
+        overdueScheduler.cancel(1L);
+
+        clock.now = TODAY.plusDays(30).atStartOfDay();
+        overdueScheduler.tick();
+
+        verify(bookWithdrawalRepository, never()).markOverdue(anyLong());
+        assertEquals(0, overdueScheduler.pending());
+    }
+
+    @Test
+    public void testLoadRecoversLoansAndHandlesTheOnesAlreadyDue() {
+        when(openLoanRepository.findPendingAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(loan(1L, TODAY.minusDays(3)), loan(2L, TODAY.plusDays(1))));
+
+        overdueScheduler.load();
+        assertEquals(2, overdueScheduler.pending());
+
+        overdueScheduler.tick();
+        verify(bookWithdrawalRepository).markOverdue(1L);
+        verify(bookWithdrawalRepository, never()).markOverdue(2L);
+        assertEquals(1, overdueScheduler.pending());
+    }
+
+    @Test
+    public void testNoEventWhenAlreadyMarked() {
+        when(bookWithdrawalRepository.markOverdue(1L)).thenReturn(0);
+        overdueScheduler.schedule(loan(1L, TODAY.minusDays(1)));
+
+        overdueScheduler.tick();
+
+        verify(bookWithdrawalRepository).markOverdue(1L);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void testFailedHandlingIsRetried() {
+        when(bookWithdrawalRepository.markOverdue(1L)).thenThrow(new IllegalStateException("down")).thenReturn(1);
+        overdueScheduler.schedule(loan(1L, TODAY.minusDays(1)));
+
+        overdueScheduler.tick();
+        assertEquals(1, overdueScheduler.pending());
+
+        overdueScheduler.tick();
+        verify(bookWithdrawalRepository, times(2)).markOverdue(1L);
+        verify(eventPublisher).publishEvent(any(LoanOverdueEvent.class));
+        assertEquals(0, overdueScheduler.pending());
+    }
+
+    private static DueLoan loan(Long withdrawalId, LocalDate expectedReturnDate) {
+        return new DueLoan(withdrawalId, 10L, 100L, Date.valueOf(expectedReturnDate));
+    }
+
+    private static class MutableClock extends Clock {
+        private LocalDateTime now;
+
+        MutableClock(LocalDateTime now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.toInstant(ZoneOffset.UTC);
+        }
+    }
+}
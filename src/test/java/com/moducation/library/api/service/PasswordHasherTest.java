@@ -0,0 +1,86 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.exceptions.PasswordHashingBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PasswordHasherTest {
+    private PasswordHasher passwordHasher;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        // one thread and room for one waiting hash
+        passwordHasher = new PasswordHasher(4, 1, 1, Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    public void testMatches() {
+        String hash = passwordHasher.encode("password123");
+
+        assertTrue(passwordHasher.matches("password123", hash));
+        assertFalse(passwordHasher.matches("password124", hash));
+    }
+
+    @Test
+    public void testFullQueueIsRejectedWithoutWaiting() throws InterruptedException {
+        String hash = passwordHasher.encode("password123");
+        CountDownLatch started = new CountDownLatch(1);
+        passwordHasher.rehashLater("a", newHash -> block(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        passwordHasher.rehashLater("b", newHash -> block(null));
+
+        long start = System.nanoTime();
+        assertThrows(PasswordHashingBusyException.class, () -> passwordHasher.matches("password123", hash));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testGivesUpAfterMaxWait() throws InterruptedException {
+        String hash = passwordHasher.encode("password123");
+        CountDownLatch started = new CountDownLatch(1);
+        passwordHasher.rehashLater("a", newHash -> block(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(PasswordHashingBusyException.class, () -> passwordHasher.matches("password123", hash));
+
+        // the abandoned check left the queue free again
+        release.countDown();
+        assertTrue(passwordHasher.matches("password123", hash));
+    }
+
+    @Test
+    public void testNeedsRehashWhenTheCostChanged() {
+        assertFalse(passwordHasher.needsRehash(new BCryptPasswordEncoder(4).encode("password123")));
+        assertTrue(passwordHasher.needsRehash(new BCryptPasswordEncoder(5).encode("password123")));
+        assertFalse(passwordHasher.needsRehash("plain"));
+        assertFalse(passwordHasher.needsRehash(null));
+    }
+
+    private void block(CountDownLatch started) {
+        if (started != null) {
+            started.countDown();
+        }
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.AuthenticatedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PrincipalCacheTest {
+    private static final AuthenticatedUser ALICE = new AuthenticatedUser(1L, (byte) 0);
+    private static final AuthenticatedUser BOB = new AuthenticatedUser(2L, (byte) 1);
+
+    private final AtomicLong now = new AtomicLong();
+    private PrincipalCache principalCache;
+
+    @BeforeEach
+    public void setUp() {
+        principalCache = new PrincipalCache(1, Duration.ofSeconds(30), now::get);
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        principalCache.put(ALICE);
+        assertEquals(ALICE, principalCache.get(1L));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertNull(principalCache.get(1L));
+    }
+
+    @Test
+    public void testEvict() {
+        principalCache.put(ALICE);
+
+        principalCache.evict(1L);
+        principalCache.evict(null);
+
+        assertNull(principalCache.get(1L));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        principalCache.put(ALICE);
+        principalCache.put(BOB);
+
+        assertNull(principalCache.get(2L));
+        assertEquals(1, principalCache.size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        principalCache.sweep();
+        principalCache.put(BOB);
+
+        assertEquals(BOB, principalCache.get(2L));
+    }
+}
@@ -0,0 +1,201 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.repositories.BookRepository;
+import com.moducation.library.api.repositories.RatingShardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.ResultSet;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RatingAggregatorTest {
+    private static final int SHARDS = 4;
+    private static final int HOT_THRESHOLD = 3;
+    private static final long HOT_WINDOW_MILLIS = 10_000;
+
+    private BookRepository bookRepository;
+    private RatingShardRepository ratingShardRepository;
+    private JdbcTemplate jdbcTemplate;
+    private BookCache bookCache;
+    private Leaderboards leaderboards;
+    private BookAutocomplete bookAutocomplete;
+    private MutableClock clock;
+    private RatingAggregator aggregator;
+
+    @BeforeEach
+    public void setUp() {
+        bookRepository = mock(BookRepository.class);
+        ratingShardRepository = mock(RatingShardRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        bookCache = mock(BookCache.class);
+        leaderboards = mock(Leaderboards.class);
+        bookAutocomplete = mock(BookAutocomplete.class);
+        clock = new MutableClock(Instant.parse("2024-09-02T08:00:00Z"));
+        aggregator = new RatingAggregator(bookRepository, ratingShardRepository, jdbcTemplate,
+                TransactionOperations.withoutTransaction(), bookCache, leaderboards, bookAutocomplete,
+                SHARDS, HOT_THRESHOLD, HOT_WINDOW_MILLIS, clock);
+    }
+
+    @Test
+    public void testColdBookUpdatesTheBookRow() {
+        rated(7L, 4f, 1f);
+
+        aggregator.apply(7L, 4f, 1);
+
+        verify(bookRepository).applyRatingDelta(7L, 4f, 1f);
+        verify(bookCache).evictAfterCommit(7L);
+        verify(bookAutocomplete).rerank(7L, 4f, 1f);
+        verify(leaderboards).recordRating(7L, 4f, 1);
+        verify(ratingShardRepository, never()).addToShard(anyLong(), anyInt(), anyFloat(), anyFloat());
+    }
+
+    @Test
+    public void testHotBookSpreadsOverTheShards() {
+        for (int i = 0; i < HOT_THRESHOLD + 20; i++) {
+            aggregator.apply(7L, 5f, 1);
+        }
+
+        verify(bookRepository, times(HOT_THRESHOLD)).applyRatingDelta(7L, 5f, 1f);
+        // only the changes that reached the book row re-rank it, the fold does the rest
+        verify(bookRepository, times(HOT_THRESHOLD)).findRatingById(7L);
+        ArgumentCaptor<Integer> shards = ArgumentCaptor.forClass(Integer.class);
+        verify(ratingShardRepository, times(20)).addToShard(eq(7L), shards.capture(), eq(5f), eq(1f));
+        assertTrue(shards.getAllValues().stream().allMatch(shard -> shard >= 0 && shard < SHARDS));
+        // every change still reaches the leaderboards, sharded or not
+        verify(leaderboards, times(HOT_THRESHOLD + 20)).recordRating(7L, 5f, 1);
+    }
+
+    @Test
+    public void testHotnessIsCountedPerBookAndWindow() {
+        for (int i = 0; i < HOT_THRESHOLD; i++) {
+            assertFalse(aggregator.isHot(7L));
+        }
+        assertTrue(aggregator.isHot(7L));
+        assertFalse(aggregator.isHot(8L));
+
+        clock.advance(Duration.ofMillis(HOT_WINDOW_MILLIS));
+        assertTrue(aggregator.isHot(7L));
+
+        // a new window starts once the old one is over
+        clock.advance(Duration.ofMillis(1));
+        assertFalse(aggregator.isHot(7L));
+    }
+
+    @Test
+    public void testFoldMovesShardTotalsOntoTheBookRow() {
+        when(ratingShardRepository.findBookIdsWithPendingDeltas()).thenReturn(List.of(7L, 8L));
+        drains(7L, new float[][]{{9f, 2f}, {-3f, -1f}});
+        drains(8L, new float[][]{{4f, 0f}, {-4f, 0f}});
+        rated(7L, 4.5f, 6f);
+
+        aggregator.foldShards();
+
+        verify(bookRepository).applyRatingDelta(7L, 6f, 1f);
+        // deltas that cancel out leave the book row alone
+        verify(bookRepository, never()).applyRatingDelta(eq(8L), anyFloat(), anyFloat());
+        verify(bookCache).evict(7L);
+        verify(bookCache).evict(8L);
+        verify(bookAutocomplete).rerank(7L, 4.5f, 6f);
+    }
+
+    @Test
+    public void testFoldCarriesOnAfterAFailedBook() {
+        when(ratingShardRepository.findBookIdsWithPendingDeltas()).thenReturn(List.of(7L, 8L));
+        doThrow(new DataAccessResourceFailureException("connection reset"))
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(7L));
+        drains(8L, new float[][]{{5f, 1f}});
+
+        aggregator.foldShards();
+
+        verify(bookRepository).applyRatingDelta(8L, 5f, 1f);
+        verify(bookCache, never()).evict(7L);
+        verify(bookCache).evict(8L);
+        verify(bookRepository, never()).findRatingById(7L);
+    }
+
+    @Test
+    public void testFailedRerankDoesNotFailTheRating() {
+        when(bookRepository.findRatingById(7L)).thenThrow(new DataAccessResourceFailureException("connection reset"));
+
+        aggregator.apply(7L, 4f, 1);
+
+        verify(bookRepository).applyRatingDelta(7L, 4f, 1f);
+        verify(bookAutocomplete, never()).rerank(anyLong(), any(), any());
+    }
+
+    // the rating fields the book row holds after the update
+    private void rated(long bookId, Float avgRating, Float numberOfRatings) {
+        BookRepository.BookRating rating = mock(BookRepository.BookRating.class);
+        when(rating.getAvgRating()).thenReturn(avgRating);
+        when(rating.getNumberOfRatings()).thenReturn(numberOfRatings);
+        when(bookRepository.findRatingById(bookId)).thenReturn(Optional.of(rating));
+    }
+
+    // the shard rows the delete-returning hands back for the book
+    private void drains(long bookId, float[][] rows) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (float[] row : rows) {
+                ResultSet resultSet = mock(ResultSet.class);
+                when(resultSet.getFloat("sum_delta")).thenReturn(row[0]);
+                when(resultSet.getFloat("count_delta")).thenReturn(row[1]);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(bookId));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.QueuedReservation;
+import com.moducation.library.api.models.BookReservation;
+import com.moducation.library.api.repositories.BookReservationRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReservationQueueTest {
+    private static final long BOOK_ID = 1L;
+
+    private BookReservationRepository bookReservationRepository;
+    private ReservationQueue reservationQueue;
+
+    @BeforeEach
+    public void setUp() {
+        bookReservationRepository = mock(BookReservationRepository.class);
+        reservationQueue = new ReservationQueue(bookReservationRepository);
+    }
+
+    @Test
+    public void testClaimsTheLockedHead() {
+        when(bookReservationRepository.findNextForUpdate(BOOK_ID)).thenReturn(next(3L, 10L));
+
+        assertEquals(new QueuedReservation(3L, 10L, BOOK_ID), reservationQueue.claimNext(BOOK_ID));
+        verify(bookReservationRepository).claim(3L);
+    }
+
+    @Test
+    public void testNobodyWaiting() {
+        assertNull(reservationQueue.claimNext(BOOK_ID));
+        verify(bookReservationRepository, never()).claim(anyLong());
+    }
+
+    @Test
+    public void testCancel() {
+        when(bookReservationRepository.cancel(10L, BOOK_ID)).thenReturn(1, 0);
+
+        assertTrue(reservationQueue.cancel(10L, BOOK_ID));
+        assertFalse(reservationQueue.cancel(10L, BOOK_ID));
+    }
+
+    @Test
+    public void testAddStoresTheReservation() {
+        BookReservation reservation = BookReservation.builder().active(true).build();
+        when(bookReservationRepository.save(reservation)).thenReturn(reservation);
+
+        assertSame(reservation, reservationQueue.add(reservation));
+    }
+
+    @Test
+    public void testRacingSecondReservationOfTheSameUserIsRefused() {
+        BookReservation reservation = BookReservation.builder().active(true).build();
+        when(bookReservationRepository.save(reservation)).thenThrow(violation("uk_book_reservation_active_user_book"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> reservationQueue.add(reservation));
+        assertEquals("You have already reserved this book.", e.getMessage());
+    }
+
+    @Test
+    public void testOtherViolationsAreRethrown() {
+        BookReservation reservation = BookReservation.builder().active(true).build();
+        when(bookReservationRepository.save(reservation)).thenThrow(violation("fk_book_reservation_user"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> reservationQueue.add(reservation));
+    }
+
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("insert failed", new SQLException("duplicate"), constraint));
+    }
+
+    private static BookReservationRepository.NextReservation next(long reservationId, long userId) {
+        return new BookReservationRepository.NextReservation() {
+            @Override
+            public Long getReservationId() {
+                return reservationId;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+        };
+    }
+}
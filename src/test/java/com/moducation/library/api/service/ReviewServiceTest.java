@@ -0,0 +1,118 @@
+package com.moducation.library.api.service;
+
+import com.moducation.library.api.dto.ReviewRequest;
+import com.moducation.library.api.dto.ReviewView;
+import com.moducation.library.api.models.Book;
+import com.moducation.library.api.models.BookReview;
+import com.moducation.library.api.models.LibraryUser;
+import com.moducation.library.api.repositories.BookReviewRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReviewServiceTest {
+    @Mock
+    private BookReviewRepository bookReviewRepository;
+
+    @Mock
+    private RatingAggregator ratingAggregator;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private ReviewService reviewService;
+
+    private Book book;
+    private LibraryUser owner;
+
+    @BeforeEach
+    public void setUp() {
+        reviewService = new ReviewService(bookReviewRepository, ratingAggregator, entityManager);
+
+        book = new Book();
+        book.setId(7L);
+        owner = new LibraryUser();
+        owner.setId(1L);
+    }
+
+    @Test
+    public void testSubmitAddsRatingAndCount() {
+        when(entityManager.getReference(Book.class, 7L)).thenReturn(book);
+        when(entityManager.getReference(LibraryUser.class, 1L)).thenReturn(owner);
+
+        ReviewView view = reviewService.submit(1L, new ReviewRequest(7L, 4f, "Great", "Loved it"));
+
+        assertEquals(7L, view.bookId());
+        assertEquals(4f, view.rating());
+        verify(ratingAggregator).apply(7L, 4f, 1);
+    }
+
+    @Test
+    public void testSubmitRejectsRatingOutOfRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.submit(1L, new ReviewRequest(7L, 6f, "Great", null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.submit(1L, new ReviewRequest(7L, null, "Great", null)));
+
+        verify(ratingAggregator, never()).apply(anyLong(), anyFloat(), anyFloat());
+    }
+
+    @Test
+    public void testEditAppliesOnlyTheDifference() {
+        BookReview review = review(2f);
+        when(bookReviewRepository.findByIdForUpdate(3L)).thenReturn(Optional.of(review));
+
+        ReviewView view = reviewService.edit(1L, 3L, new ReviewRequest(null, 5f, null, "Better on reread"));
+
+        assertEquals(5f, view.rating());
+        assertEquals("Better on reread", view.text());
+        verify(ratingAggregator).apply(7L, 3f, 0);
+    }
+
+    @Test
+    public void testEditOtherUsersReview() {
+        when(bookReviewRepository.findByIdForUpdate(3L)).thenReturn(Optional.of(review(2f)));
+
+        assertNull(reviewService.edit(2L, 3L, new ReviewRequest(null, 5f, null, null)));
+        verify(ratingAggregator, never()).apply(anyLong(), anyFloat(), anyFloat());
+    }
+
+    @Test
+    public void testDeleteRemovesRatingAndCount() {
+        BookReview review = review(4f);
+        when(bookReviewRepository.findByIdForUpdate(3L)).thenReturn(Optional.of(review));
+
+        assertTrue(reviewService.delete(1L, 3L));
+
+        verify(bookReviewRepository).delete(review);
+        verify(ratingAggregator).apply(7L, -4f, -1);
+    }
+
+    @Test
+    public void testDeleteMissingReview() {
+        when(bookReviewRepository.findByIdForUpdate(3L)).thenReturn(Optional.empty());
+
+        assertFalse(reviewService.delete(1L, 3L));
+    }
+
+    private BookReview review(float rating) {
+        return BookReview.builder().id(3L).book(book).libraryUser(owner).rating(rating).title("Ok").build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.moducation.library.api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongIntHashMapTest {
+    @Test
+    public void testMatchesHashMapThroughResizes() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextInt(2_000) - 10;
+            int delta = random.nextInt(5);
+            expected.merge(key, delta, Integer::sum);
+            assertEquals((int) expected.get(key), map.addTo(key, delta));
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals((int) value, map.get(key)));
+        Map<Long, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void testZeroKeyAndMissingKeys() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertEquals(0, map.get(0L));
+        assertFalse(map.containsKey(0L));
+
+        map.put(0L, 7);
+
+        assertTrue(map.containsKey(0L));
+        assertEquals(7, map.get(0L));
+        assertEquals(0, map.get(99L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRetainTop() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (long key = 1; key <= 10; key++) {
+            map.put(key, (int) key);
+        }
+        map.put(11L, 10);
+
+        map.retainTop(3);
+
+        assertEquals(3, map.size());
+        assertEquals(10, map.get(10L));
+        assertEquals(10, map.get(11L));
+        assertEquals(9, map.get(9L));
+        assertFalse(map.containsKey(8L));
+    }
+}
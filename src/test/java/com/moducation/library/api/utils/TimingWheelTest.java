@@ -0,0 +1,95 @@
+package com.moducation.library.api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+    @Test
+    public void testExpiresOnFirstTickAtOrAfterDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+        wheel.add(25, "a");
+        wheel.add(30, "b");
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(29, expired::add);
+        assertEquals(List.of(), expired);
+
+        wheel.advance(30, expired::add);
+        assertEquals(List.of("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAlreadyDueIsNotScheduled() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 100);
+
+        assertNull(wheel.add(100, "now"));
+        assertNull(wheel.add(50, "past"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+        TimingWheel.Timer<String> timer = wheel.add(1_000, "far");
+        wheel.add(20, "near");
+
+        assertTrue(wheel.cancel(timer));
+        assertFalse(wheel.cancel(timer));
+        assertEquals(1, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(10_000, expired::add);
+        assertEquals(List.of("near"), expired);
+    }
+
+    @Test
+    public void testMatchesDeadlinesAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 8, 0);
+        Map<Long, Long> firedAt = new HashMap<>();
+        Random random = new Random(7);
+
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = 1 + random.nextInt(100_000);
+            deadlines.add(deadline);
+            wheel.add(deadline, (long) i);
+        }
+
+        for (long now = 0; now <= 100_010; now += 10) {
+            long time = now;
+            wheel.advance(now, id -> firedAt.put(id, time));
+        }
+
+        assertEquals(0, wheel.size());
+        for (int i = 0; i < deadlines.size(); i++) {
+            long deadline = deadlines.get(i);
+            long fired = firedAt.get((long) i);
+            assertTrue(fired >= deadline && fired < deadline + 10, "deadline " + deadline + " fired at " + fired);
+        }
+    }
+
+    @Test
+    public void testAdvanceOverLongGap() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+        wheel.add(5_000, "later");
+        wheel.add(40_000, "much later");
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(20_000, expired::add);
+        assertEquals(List.of("later"), expired);
+
+        wheel.advance(40_000, expired::add);
+        assertEquals(List.of("later", "much later"), expired);
+    }
+}